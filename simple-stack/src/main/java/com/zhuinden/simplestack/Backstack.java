@@ -15,7 +15,10 @@
  */
 package com.zhuinden.simplestack;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcelable;
 import android.util.SparseArray;
 import android.view.View;
@@ -26,12 +29,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -97,27 +105,42 @@ public class Backstack
 
     Object previousTopKeyWithAssociatedScope = null;
 
-    private final StateChanger managedStateChanger = new StateChanger() {
+    private final StateChanger managedStateChanger = new StateChanger.Preemptible() {
         @Override
         public void handleStateChange(@Nonnull final StateChange stateChange, @Nonnull final Callback completionCallback) {
             scopeManager.buildScopes(stateChange.getNewKeys()); // always create scopes before a state change occurs
             stateChanger.handleStateChange(stateChange, completionCallback);
         }
+
+        @Override
+        public void fastForward(@Nonnull StateChange stateChange) {
+            if(stateChanger instanceof StateChanger.Preemptible) {
+                ((StateChanger.Preemptible) stateChanger).fastForward(stateChange);
+            }
+        }
     };
 
     // fix #220: this cannot be inside StateChanger.Callback, to ensure subsequent `stateChangeComplete()` call doesn't trigger recursive activation dispatch, only once
     private final CompletionListener managedStateChangerCompletionListener = new CompletionListener() {
         @Override
         public void stateChangeCompleted(@Nonnull StateChange stateChange) {
+            if(isIncrementalStateClearStrategy) {
+                trackRemovedKeys(stateChange.previousKeys, stateChange.newKeys); // states are only cleared when there are no pending state changes
+            }
+
             if(!isStateChangePending()) {
                 if(isStateChangerAttached) { // ensure enqueue behavior during activation dispatch, #215
                     core.removeStateChanger();
                 }
 
-                stateClearStrategy.clearStatesNotIn(keyStateMap, stateChange);
+                clearStates(stateChange);
 
                 History<Object> newState = stateChange.getNewKeys();
 
+                if(!parcelledKeyCache.isEmpty()) {
+                    CollectionHelper.retainAll(parcelledKeyCache.keySet(), newState); // parcelled keys are kept only while the key is in the history
+                }
+
                 // activation/deactivation
                 Object newTopKeyWithAssociatedScope = null;
                 for(int i = 0, size = newState.size(); i < size; i++) {
@@ -183,6 +206,8 @@ public class Backstack
                 scopeManager.updateWillHandleAheadOfTimeBackEvent(
                     newTopKeyWithAssociatedScope); // we should handle back in the current active scope chain.
 
+                publishServiceSnapshot();
+
                 if(isStateChangerAttached) { // ensure enqueue behavior during activation dispatch, #215
                     core.setStateChanger(managedStateChanger, NavigationCore.REATTACH);
                 }
@@ -190,6 +215,51 @@ public class Backstack
         }
     };
 
+    private boolean isIncrementalStateClearStrategy = true;
+    private final Set<Object> removedKeysSinceLastStateClear = new LinkedHashSet<>();
+    private final Set<Object> keysWithStatesCreatedSinceLastStateClear = new LinkedHashSet<>();
+
+    private void trackRemovedKeys(List<Object> previousKeys, List<Object> newKeys) {
+        // keys are unique in a history, so only the keys after the common prefix can be added or removed
+        int commonPrefixSize = 0;
+        for(int size = Math.min(previousKeys.size(), newKeys.size()); commonPrefixSize < size; commonPrefixSize++) {
+            Object previousKey = previousKeys.get(commonPrefixSize);
+            if(previousKey != newKeys.get(commonPrefixSize) && !previousKey.equals(newKeys.get(commonPrefixSize))) {
+                break;
+            }
+        }
+        List<Object> removedCandidates = previousKeys.subList(commonPrefixSize, previousKeys.size());
+        List<Object> addedCandidates = newKeys.subList(commonPrefixSize, newKeys.size());
+        if(removedCandidates.isEmpty() && addedCandidates.isEmpty()) {
+            return;
+        }
+        Collection<Object> addedKeys = addedCandidates.size() > 8 ? new HashSet<>(addedCandidates) : addedCandidates;
+        for(Object addedKey : addedKeys) {
+            removedKeysSinceLastStateClear.remove(addedKey); // keys re-added by a queued state change keep their state
+        }
+        for(Object removedCandidate : removedCandidates) {
+            if(!addedKeys.contains(removedCandidate)) {
+                removedKeysSinceLastStateClear.add(removedCandidate);
+            }
+        }
+    }
+
+    private void clearStates(StateChange stateChange) {
+        if(isIncrementalStateClearStrategy) {
+            Set<Object> obsoleteKeys = new LinkedHashSet<>(removedKeysSinceLastStateClear);
+            removedKeysSinceLastStateClear.clear();
+            for(Object key : keysWithStatesCreatedSinceLastStateClear) {
+                if(!stateChange.newKeys.contains(key)) { // the state was created for a key that was never in the history, see #256
+                    obsoleteKeys.add(key);
+                }
+            }
+            keysWithStatesCreatedSinceLastStateClear.clear();
+            ((IncrementalStateClearStrategy) stateClearStrategy).clearStatesOf(keyStateMap, obsoleteKeys);
+        } else {
+            stateClearStrategy.clearStatesNotIn(keyStateMap, stateChange);
+        }
+    }
+
     private boolean willHandleAheadOfTimeBackEvent = false;
 
     private void updateWillHandleAheadOfTimeBackEvent(boolean willHandleAheadOfTimeBackEvent) {
@@ -221,7 +291,21 @@ public class Backstack
 
     private KeyFilter keyFilter = new DefaultKeyFilter();
     private KeyParceler keyParceler = new DefaultKeyParceler();
-    private StateClearStrategy stateClearStrategy = new DefaultStateClearStrategy();
+    private final Map<Object, Parcelable> parcelledKeyCache = new HashMap<>();
+    private final KeyParceler cachingKeyParceler = new KeyParceler() {
+        @Override
+        public Parcelable toParcelable(Object object) {
+            return Backstack.this.toParcelable(object);
+        }
+
+        @Override
+        public Object fromParcelable(Parcelable parcelable) {
+            return keyParceler.fromParcelable(parcelable);
+        }
+    };
+    private StateClearStrategy stateClearStrategy = new IncrementalStateClearStrategy();
+    private NavigationJournal navigationJournal = null;
+    private StateSizeProfiler stateSizeProfiler = null;
 
     private Backstack parentServices = null;
     private String parentScopeTag = null;
@@ -255,6 +339,7 @@ public class Backstack
 
         this.parentServices = parentServices;
         this.parentScopeTag = parentScopeTag;
+        this.serviceSnapshot = ServiceSnapshot.empty(parentServices, parentScopeTag);
     }
 
     /**
@@ -267,6 +352,91 @@ public class Backstack
         return parentServices;
     }
 
+    private static final Object NOT_FOUND = new Object();
+
+    private boolean isSharedServiceHierarchy = false;
+    private final Map<String, Object> sharedLookupCache = new HashMap<>();
+    private final Map<String, Map<String, Object>> sharedScopedLookupCache = new HashMap<>();
+    private long sharedLookupCacheVersion = -1L;
+
+    /**
+     * Enables the shared service hierarchy mode, where the services of this backstack and of the chain of its parent services set by {@link Backstack#setParentServices(Backstack, String)}
+     * are looked up in a single pass, instead of checking each backstack with {@link Backstack#canFindService(String)} before looking up the service.
+     * <p>
+     * The results of the lookups (including when a service is not found) are cached until the scopes of any backstack in the hierarchy change.
+     * <p>
+     * If used, this method must be called before {@link Backstack#setup(List)} .
+     *
+     * @param isSharedServiceHierarchy whether the shared service hierarchy mode is enabled
+     */
+    public void setSharedServiceHierarchy(boolean isSharedServiceHierarchy) {
+        if(core != null) {
+            throw new IllegalStateException("Shared service hierarchy should be set before calling `setup()`");
+        }
+        this.isSharedServiceHierarchy = isSharedServiceHierarchy;
+    }
+
+    /**
+     * Returns whether the shared service hierarchy mode is enabled.
+     *
+     * @return whether the shared service hierarchy mode is enabled
+     */
+    public boolean isSharedServiceHierarchy() {
+        return isSharedServiceHierarchy;
+    }
+
+    private boolean shouldLookupInSharedHierarchy() {
+        return isSharedServiceHierarchy && parentServices != null;
+    }
+
+    private long computeHierarchyVersion() {
+        // modification counts only increase, so any scope change in the hierarchy increases the version
+        long version = 0L;
+        for(Backstack backstack = this; backstack != null; backstack = backstack.parentServices) {
+            version = version * 31 + backstack.scopeManager.getModificationCount();
+        }
+        return version;
+    }
+
+    @Nullable
+    private Object lookupInSharedHierarchy(@Nullable String scopeTag, @Nonnull String serviceTag) {
+        long version = computeHierarchyVersion();
+        if(version != sharedLookupCacheVersion) {
+            sharedLookupCache.clear();
+            sharedScopedLookupCache.clear();
+            sharedLookupCacheVersion = version;
+        }
+
+        Map<String, Object> cache = sharedLookupCache;
+        if(scopeTag != null) {
+            cache = sharedScopedLookupCache.get(scopeTag);
+            if(cache == null) {
+                cache = new HashMap<>();
+                sharedScopedLookupCache.put(scopeTag, cache);
+            }
+        }
+
+        Object service = cache.get(serviceTag);
+        if(service == null) {
+            service = NOT_FOUND;
+            Backstack backstack = this;
+            String currentScopeTag = scopeTag;
+            while(backstack != null) {
+                Object foundService = currentScopeTag == null
+                    ? backstack.scopeManager.findService(serviceTag)
+                    : backstack.scopeManager.findServiceFromScope(currentScopeTag, serviceTag);
+                if(foundService != null) {
+                    service = foundService;
+                    break;
+                }
+                currentScopeTag = backstack.parentScopeTag;
+                backstack = backstack.parentServices;
+            }
+            cache.put(serviceTag, service);
+        }
+        return service == NOT_FOUND ? null : service;
+    }
+
     /**
      * Specifies the {@link BackHandlingModel}. This allows switching between back handling models.
      * <p>
@@ -324,7 +494,7 @@ public class Backstack
 
     /**
      * Specifies a custom {@link StateClearStrategy}, allowing a custom strategy for clearing the retained state of keys.
-     * The {@link DefaultStateClearStrategy} clears the {@link SavedState} for keys that are not found in the new state.
+     * The {@link IncrementalStateClearStrategy} (which is used by default) and the {@link DefaultStateClearStrategy} clear the {@link SavedState} for keys that are not found in the new state.
      * <p>
      * If used, this method must be called before {@link Backstack#setup(List)} .
      *
@@ -338,6 +508,84 @@ public class Backstack
             throw new IllegalArgumentException("The state clear strategy cannot be null!");
         }
         this.stateClearStrategy = stateClearStrategy;
+        this.isIncrementalStateClearStrategy = stateClearStrategy instanceof IncrementalStateClearStrategy;
+    }
+
+    /**
+     * Specifies a {@link NavigationJournal}, which records the history of each completed state change into a file.
+     * <p>
+     * The recorded history can be restored on cold start using {@link Backstack#restoreFromJournal()}.
+     * <p>
+     * If used, this method must be called before {@link Backstack#setup(List)} .
+     *
+     * @param navigationJournal The {@link NavigationJournal}, or null to disable it.
+     */
+    public void setNavigationJournal(@Nullable NavigationJournal navigationJournal) {
+        if(core != null) {
+            throw new IllegalStateException("Navigation journal should be set before calling `setup()`");
+        }
+        this.navigationJournal = navigationJournal;
+    }
+
+    /**
+     * Returns the currently set {@link NavigationJournal}.
+     *
+     * @return the navigation journal
+     */
+    @Nullable
+    public NavigationJournal getNavigationJournal() {
+        return navigationJournal;
+    }
+
+    /**
+     * Restores the history recorded by the {@link NavigationJournal}, if one is set and it contains a history.
+     * <p>
+     * This is meant to be called on cold start instead of {@link Backstack#fromBundle(StateBundle)}, which only works if the saved instance state was not lost.
+     * <p>
+     * This can only be called after {@link Backstack#setup(List)}, and before the initial state change.
+     *
+     * @return true if the history was restored from the journal
+     */
+    public boolean restoreFromJournal() {
+        checkBackstack("A backstack must be set up before it is restored!");
+
+        assertCorrectThread();
+
+        if(didRunInitialStateChange) {
+            throw new IllegalStateException("The history can only be restored from the journal before the initial state change!");
+        }
+
+        if(navigationJournal == null) {
+            return false;
+        }
+
+        List<Object> keys = navigationJournal.readHistory(keyParceler);
+        if(keys == null) {
+            return false;
+        }
+        keys = keyFilter.filterHistory(new ArrayList<>(keys));
+        if(keys == null || keys.isEmpty()) {
+            return false;
+        }
+        core.setInitialParameters(keys);
+        return true;
+    }
+
+    /**
+     * Specifies a {@link StateSizeProfiler}, which measures the parcelled size of the state each time {@link Backstack#toBundle()} is called.
+     * <p>
+     * This is meant for instrumentation and tests, and can be set at any time.
+     *
+     * @param stateSizeProfiler The {@link StateSizeProfiler}, or null to disable it.
+     */
+    public void setStateSizeProfiler(@Nullable StateSizeProfiler stateSizeProfiler) {
+        this.stateSizeProfiler = stateSizeProfiler;
+    }
+
+    void recordStateChange(@Nonnull StateChange stateChange) {
+        if(navigationJournal != null) {
+            navigationJournal.record(stateChange.newKeys, cachingKeyParceler);
+        }
     }
 
     /**
@@ -410,6 +658,72 @@ public class Backstack
         this.scopeManager.setGlobalServices(globalServiceFactory);
     }
 
+    /**
+     * Specifies the {@link Executor} used to create services added with {@link ServiceBinder#addServiceFactory(String, List, ServiceBinder.ServiceFactory)}.
+     * <p>
+     * Each service is created on the executor as soon as its dependencies are created, and the backstack waits for them before the scope is used.
+     * If not set, the services are created on the current thread.
+     * <p>
+     * The thread of the navigation (typically the main thread) is blocked until the services are created. Therefore, the executor must run its tasks on other threads:
+     * an executor that posts its tasks to the main thread would deadlock. A service is only waited for by the services that depend on it, so a slow service does not delay independent ones.
+     * <p>
+     * Must be called before the initial state change. Call {@link Backstack#canSetScopeProviders()} to see if it's allowed.
+     *
+     * @param serviceExecutor the executor, or null to create services on the current thread.
+     */
+    public void setServiceExecutor(@Nullable Executor serviceExecutor) {
+        if(!canSetScopeProviders()) {
+            throw new IllegalStateException("Service executor should be set before the initial state change!");
+        }
+        this.scopeManager.setServiceExecutor(serviceExecutor);
+    }
+
+    /**
+     * Specifies the {@link Executor} used to deliver the lifecycle callbacks of services that implement {@link ScopedServices.BackgroundRegistered}.
+     * <p>
+     * These callbacks are not synchronized with the thread of the backstack: state saving and back dispatch can reach the service while its
+     * callback is still running. If the executor rejects a callback, the exception is thrown to the caller and the callback is dropped.
+     * <p>
+     * Must be called before the initial state change. Call {@link Backstack#canSetScopeProviders()} to see if it's allowed.
+     *
+     * @param serviceCallbackExecutor the executor, or null to deliver the callbacks synchronously.
+     */
+    public void setServiceCallbackExecutor(@Nullable Executor serviceCallbackExecutor) {
+        if(!canSetScopeProviders()) {
+            throw new IllegalStateException("Service callback executor should be set before the initial state change!");
+        }
+        this.scopeManager.setServiceCallbackExecutor(serviceCallbackExecutor);
+    }
+
+    /**
+     * Enables keeping the scopes of recently exited keys, so that re-entering a key with the same scope tag adopts the existing services instead of re-creating them.
+     * <p>
+     * The services of an exited scope receive {@link ScopedServices.Activated#onServiceInactive()}, but {@link ScopedServices.Registered#onServiceUnregistered()}
+     * is only called once the scope is evicted: when more than the given number of scopes are kept, when the scope is older than the given age,
+     * on {@link Backstack#onTrimMemory(int)}, or when the scopes are finalized.
+     * <p>
+     * The age is checked with a task scheduled on the {@link Looper} of the current thread. If the thread has no looper, it is only checked on navigation.
+     * <p>
+     * The state of exited scopes is not persisted, in the same way as it is not persisted for destroyed scopes.
+     * <p>
+     * Must be called before the initial state change. Call {@link Backstack#canSetScopeProviders()} to see if it's allowed.
+     *
+     * @param maxScopes    the maximum number of exited scopes that are kept, 0 disables the cache
+     * @param maxAgeMillis  the time after which an exited scope is evicted
+     */
+    public void setExitedScopeCache(int maxScopes, long maxAgeMillis) {
+        if(!canSetScopeProviders()) {
+            throw new IllegalStateException("Exited scope cache should be set before the initial state change!");
+        }
+        if(maxScopes < 0) {
+            throw new IllegalArgumentException("The maximum number of exited scopes cannot be negative!");
+        }
+        if(maxAgeMillis < 0) {
+            throw new IllegalArgumentException("The maximum age of exited scopes cannot be negative!");
+        }
+        this.scopeManager.setExitedScopeCache(maxScopes, maxAgeMillis);
+    }
+
     NavigationCore core;
 
     Map<Object, SavedState> keyStateMap = new HashMap<>();
@@ -598,6 +912,51 @@ public class Backstack
         }
     }
 
+    /**
+     * Builds the scopes of the provided key and binds their services ahead of time, typically when it is likely that the key will be navigated to next.
+     * <p>
+     * The services are not registered nor activated, and they cannot be looked up. If the key is navigated to, then the scopes are adopted instead of being built again.
+     * Otherwise, they are discarded after the prewarm timeout (see {@link Backstack#setPrewarmTimeout(long)}), on {@link Backstack#onTrimMemory(int)},
+     * or on {@link Backstack#discardPrewarmedScopes()}. The timeout is scheduled on the {@link Looper} of the current thread; if the thread has no looper,
+     * expired scopes are only discarded on the next navigation.
+     * <p>
+     * Has no effect if the scopes already exist, or before the initial state change.
+     *
+     * @param key the key whose scopes should be built
+     */
+    public void prewarm(@Nonnull Object key) {
+        checkBackstack("A backstack must be set up before prewarming scopes.");
+        //noinspection ConstantConditions
+        if(key == null) {
+            throw new IllegalArgumentException("Key cannot be null!");
+        }
+
+        assertCorrectThread();
+
+        scopeManager.prewarmScopes(key);
+    }
+
+    /**
+     * Discards the scopes that were built with {@link Backstack#prewarm(Object)}, but were not adopted yet.
+     */
+    public void discardPrewarmedScopes() {
+        assertCorrectThread();
+
+        scopeManager.discardPrewarmedScopes();
+    }
+
+    /**
+     * Sets the time after which the scopes built with {@link Backstack#prewarm(Object)} are discarded if they were not adopted. The default is 5 seconds.
+     *
+     * @param timeoutMillis the timeout in milliseconds
+     */
+    public void setPrewarmTimeout(long timeoutMillis) {
+        if(timeoutMillis < 0) {
+            throw new IllegalArgumentException("The prewarm timeout cannot be negative!");
+        }
+        scopeManager.setPrewarmTimeout(timeoutMillis);
+    }
+
     /**
      * Typically called when Activity is finishing, and the remaining scopes should be destroyed for proper clean-up.
      * <p>
@@ -660,6 +1019,8 @@ public class Backstack
         scopeManager.finalizeScopes();
 
         previousTopKeyWithAssociatedScope = null; // this enables activation after finalization.
+
+        publishServiceSnapshot();
     }
 
     /**
@@ -720,6 +1081,31 @@ public class Backstack
         return scopeManager.hasScope(scopeTag);
     }
 
+    private volatile ServiceSnapshot serviceSnapshot = ServiceSnapshot.empty(null, null);
+
+    /**
+     * Returns an immutable snapshot of the services that are accessible from this backstack, including the parent services.
+     * <p>
+     * Unlike the other methods of the backstack, this can be called from any thread. The snapshot is replaced after each completed state change,
+     * when a service registered with a {@link Provider} is created, and when the scopes are finalized.
+     *
+     * @return the latest service snapshot
+     */
+    @Nonnull
+    public ServiceSnapshot getServiceSnapshot() {
+        return serviceSnapshot;
+    }
+
+    void publishServiceSnapshot() {
+        serviceSnapshot = scopeManager.createServiceSnapshot(parentServices, parentScopeTag);
+    }
+
+    void onServiceMaterialized() {
+        if(core != null && !core.isStateChangePending()) { // otherwise, the snapshot is published when the state change completes
+            publishServiceSnapshot();
+        }
+    }
+
     private boolean attemptCanFindInParentServicesIfSet(String serviceTag) {
         if(parentServices != null) {
             if(parentScopeTag != null) {
@@ -740,6 +1126,10 @@ public class Backstack
      * @return whether the service exists in any active scopes
      */
     public boolean canFindService(@Nonnull String serviceTag) {
+        if(shouldLookupInSharedHierarchy()) {
+            return lookupInSharedHierarchy(null, serviceTag) != null;
+        }
+
         boolean didFind = scopeManager.canFindService(serviceTag);
 
         if(didFind) {
@@ -758,6 +1148,10 @@ public class Backstack
      * @return whether the service exists in any scopes from the current scope or its parents
      */
     public boolean canFindFromScope(@Nonnull String scopeTag, @Nonnull String serviceTag) {
+        if(shouldLookupInSharedHierarchy()) {
+            return lookupInSharedHierarchy(scopeTag, serviceTag) != null;
+        }
+
         boolean didFind = scopeManager.canFindFromScope(scopeTag, serviceTag, ScopeLookupMode.ALL);
 
         if(didFind) {
@@ -777,6 +1171,10 @@ public class Backstack
      * @return whether the service exists in any scopes from the current scope or its parents
      */
     public boolean canFindFromScope(@Nonnull String scopeTag, @Nonnull String serviceTag, @Nonnull ScopeLookupMode lookupMode) {
+        if(lookupMode == ScopeLookupMode.ALL && shouldLookupInSharedHierarchy()) {
+            return lookupInSharedHierarchy(scopeTag, serviceTag) != null;
+        }
+
         boolean didFind = scopeManager.canFindFromScope(scopeTag, serviceTag, lookupMode);
 
         if(didFind) {
@@ -799,6 +1197,16 @@ public class Backstack
     public <T> T lookupService(@Nonnull String serviceTag) {
         if(parentServices == null) {
             return scopeManager.lookupService(serviceTag);
+        } else if(isSharedServiceHierarchy) {
+            Object service = lookupInSharedHierarchy(null, serviceTag);
+            if(service != null) {
+                //noinspection unchecked
+                return (T) service;
+            }
+
+            throw new IllegalStateException(
+                "Attempt to find service [" + serviceTag + "] in scope hierarchy failed. " + scopeManager.createErrorMessageForScopeLookup(
+                    serviceTag, null));
         } else {
             boolean didFind = scopeManager.canFindService(serviceTag);
             if(didFind) {
@@ -920,6 +1328,16 @@ public class Backstack
     public <T> T lookupFromScope(String scopeTag, String serviceTag, ScopeLookupMode lookupMode) {
         if(parentServices == null) {
             return scopeManager.lookupFromScope(scopeTag, serviceTag, lookupMode);
+        } else if(isSharedServiceHierarchy && lookupMode == ScopeLookupMode.ALL) {
+            Object service = lookupInSharedHierarchy(scopeTag, serviceTag);
+            if(service != null) {
+                //noinspection unchecked
+                return (T) service;
+            }
+
+            throw new IllegalStateException(
+                "Attempt to find service [" + serviceTag + "] in scope hierarchy failed. " + scopeManager.createErrorMessageForServiceLookupFromScope(
+                    scopeTag, serviceTag, null));
         } else {
             if(scopeManager.canFindFromScope(scopeTag, serviceTag, lookupMode)) {
                 return scopeManager.lookupFromScope(scopeTag, serviceTag, lookupMode);
@@ -954,6 +1372,9 @@ public class Backstack
         }
         if(!keyStateMap.containsKey(key)) {
             keyStateMap.put(key, SavedState.builder().setKey(key).build());
+            if(isIncrementalStateClearStrategy) {
+                keysWithStatesCreatedSinceLastStateClear.add(key);
+            }
         }
         return keyStateMap.get(key);
     }
@@ -962,6 +1383,17 @@ public class Backstack
 
     private final Map<String, Object> retainedObjects = new LinkedHashMap<>();
     private final StateBundle pendingRestoredRetainedObjectStates = new StateBundle();
+    private byte[] compactedRetainedObjectStates = null;
+
+    private void expandRetainedObjectStates() {
+        if(compactedRetainedObjectStates != null) {
+            StateBundle retainedObjectStates = stateCompactor.expandBundle(compactedRetainedObjectStates);
+            compactedRetainedObjectStates = null;
+            retainedObjectStates.putAll(pendingRestoredRetainedObjectStates);
+            pendingRestoredRetainedObjectStates.clear();
+            pendingRestoredRetainedObjectStates.putAll(retainedObjectStates);
+        }
+    }
 
     /**
      * Returns if a retained object is contained for a given tag.
@@ -1021,6 +1453,8 @@ public class Backstack
             throw new IllegalArgumentException("A retained object is already added with the object tag [" + objectTag + "]");
         }
 
+        expandRetainedObjectStates();
+
         if(pendingRestoredRetainedObjectStates.containsKey(objectTag)) {
             if(!(retainedObject instanceof Bundleable)) {
                 throw new IllegalStateException(
@@ -1050,11 +1484,63 @@ public class Backstack
 
         assertCorrectThread();
 
+        expandRetainedObjectStates();
         pendingRestoredRetainedObjectStates.remove(objectTag);
         //noinspection unchecked
         return (T) retainedObjects.remove(objectTag);
     }
 
+    // ----- memory trimming
+
+    StateCompactor stateCompactor = new StateCompactor.ParcelStateCompactor();
+
+    /**
+     * Sheds memory held by the backstack, in tiers based on the provided trim level.
+     * <p>
+     * - Scopes built with {@link Backstack#prewarm(Object)} that were not adopted yet are discarded, and exited scopes kept by
+     * {@link Backstack#setExitedScopeCache(int, long)} are evicted.
+     * <p>
+     * - Services that implement {@link ScopedServices.Trimmable} and are not active receive {@link ScopedServices.Trimmable#onTrimMemory(int)}.
+     * <p>
+     * - From {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}, the view hierarchy states of keys other than the top key are discarded, as their views are not alive.
+     * Their views are re-created without it, but their {@link SavedState#getBundle()} and the state of {@link Bundleable} views is kept.
+     * <p>
+     * - From {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL}, the restored states of retained objects that were not re-added yet are compacted into their marshalled form,
+     * which is expanded again when it is accessed. If the states cannot be marshalled, they are kept as they are.
+     *
+     * @param level the trim level, as received in {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void onTrimMemory(int level) {
+        checkBackstack("A backstack must be set up before memory is trimmed.");
+
+        assertCorrectThread();
+
+        scopeManager.discardPrewarmedScopes();
+        scopeManager.evictAllExitedScopes();
+        scopeManager.dispatchTrimMemory(level);
+
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            History<Object> history = getHistory();
+            Object topKey = history.isEmpty() ? null : history.top();
+            for(SavedState savedState : keyStateMap.values()) {
+                if(!savedState.getKey().equals(topKey)) {
+                    savedState.discardViewHierarchyState();
+                }
+            }
+        }
+
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            if(compactedRetainedObjectStates == null && !pendingRestoredRetainedObjectStates.isEmpty()) {
+                try {
+                    compactedRetainedObjectStates = stateCompactor.compact(pendingRestoredRetainedObjectStates);
+                    pendingRestoredRetainedObjectStates.clear();
+                } catch(RuntimeException e) {
+                    // the states contain a Binder or a file descriptor, so they are kept as they are
+                }
+            }
+        }
+    }
+
     // ----- viewstate persistence
 
     /**
@@ -1096,7 +1582,16 @@ public class Backstack
             throw new IllegalArgumentException("You cannot restore state into null view!");
         }
         Object newKey = KeyContextWrapper.getKey(view.getContext());
-        SavedState savedState = getSavedState(newKey);
+        if(newKey == null) {
+            throw new IllegalArgumentException("Key cannot be null!");
+        }
+        SavedState savedState = keyStateMap.get(newKey);
+        if(savedState == null) { // nothing to restore, so no empty saved state is created for it
+            if(view instanceof Bundleable) {
+                ((Bundleable) view).fromBundle(null);
+            }
+            return;
+        }
         view.restoreHierarchyState(savedState.getViewHierarchyState());
         if(view instanceof Bundleable) {
             ((Bundleable) view).fromBundle(savedState.getViewBundle());
@@ -1162,7 +1657,11 @@ public class Backstack
             List<Parcelable> parcelledKeys = stateBundle.getParcelableArrayList(getHistoryTag());
             if(parcelledKeys != null) {
                 for(Parcelable parcelledKey : parcelledKeys) {
-                    keys.add(keyParceler.fromParcelable(parcelledKey));
+                    Object key = keyParceler.fromParcelable(parcelledKey);
+                    keys.add(key);
+                    if(keyParceler instanceof KeyParceler.Cacheable) {
+                        parcelledKeyCache.put(key, parcelledKey);
+                    }
                 }
             }
             keys = keyFilter.filterHistory(new ArrayList<>(keys));
@@ -1192,6 +1691,7 @@ public class Backstack
 
             StateBundle retainedStates = stateBundle.getBundle(RETAINED_OBJECT_STATES_TAG);
             if(retainedStates != null) {
+                expandRetainedObjectStates();
                 pendingRestoredRetainedObjectStates.putAll(retainedStates);
 
                 for(Map.Entry<String, Object> retainedEntry : retainedObjects.entrySet()) {
@@ -1211,6 +1711,18 @@ public class Backstack
         }
     }
 
+    private Parcelable toParcelable(Object key) {
+        if(!(keyParceler instanceof KeyParceler.Cacheable)) {
+            return keyParceler.toParcelable(key);
+        }
+        Parcelable parcelable = parcelledKeyCache.get(key);
+        if(parcelable == null) {
+            parcelable = keyParceler.toParcelable(key);
+            parcelledKeyCache.put(key, parcelable);
+        }
+        return parcelable;
+    }
+
     private void assertCorrectThread() {
         if(Thread.currentThread().getId() != threadId) {
             throw new IllegalStateException(
@@ -1235,20 +1747,23 @@ public class Backstack
         assertCorrectThread();
 
         StateBundle stateBundle = new StateBundle();
+        History<Object> historyKeys = getHistory();
         ArrayList<Parcelable> history = new ArrayList<>();
-        for(Object key : getHistory()) {
-            history.add(keyParceler.toParcelable(key));
+        for(Object key : historyKeys) {
+            history.add(toParcelable(key));
         }
         stateBundle.putParcelableArrayList(getHistoryTag(), history);
 
+        List<Object> stateKeys = new ArrayList<>(keyStateMap.size());
         ArrayList<ParcelledState> parcelledStates = new ArrayList<>();
         for(SavedState savedState : keyStateMap.values()) {
             ParcelledState parcelledState = new ParcelledState();
-            parcelledState.parcelableKey = keyParceler.toParcelable(savedState.getKey());
+            parcelledState.parcelableKey = toParcelable(savedState.getKey());
             parcelledState.viewHierarchyState = savedState.getViewHierarchyState();
             parcelledState.bundle = savedState.getBundle();
             parcelledState.viewBundle = savedState.getViewBundle();
             parcelledStates.add(parcelledState);
+            stateKeys.add(savedState.getKey());
         }
         stateBundle.putParcelableArrayList(getStatesTag(), parcelledStates);
 
@@ -1267,6 +1782,10 @@ public class Backstack
 
         stateBundle.putParcelable(getRetainedObjectStatesTag(), retainedObjectStates);
 
+        if(stateSizeProfiler != null) {
+            stateSizeProfiler.profile(stateBundle, historyKeys, parcelledStates, stateKeys);
+        }
+
         return stateBundle;
     }
 
@@ -1461,6 +1980,24 @@ public class Backstack
         core.goUpChain(parentChain);
     }
 
+    /**
+     * Returns the keys in the history that explicitly belong to the provided scope, either as their {@link ScopeKey#getScopeTag()}
+     * or as one of their {@link ScopeKey.Child#getParentScopes()}.
+     * <p>
+     * The keys are in the order they appear in the history, from the root.
+     *
+     * @param scopeTag the scope tag
+     * @return the keys in the scope, or an empty list if there are none
+     */
+    @Nonnull
+    public List<Object> getKeysInScope(@Nonnull String scopeTag) {
+        //noinspection ConstantConditions
+        if(scopeTag == null) {
+            throw new NullPointerException("scopeTag must not be null!");
+        }
+        return Collections.unmodifiableList(new ArrayList<>(scopeManager.getKeysInScope(scopeTag)));
+    }
+
     /**
      * Exits the provided scope, removing all keys that exist that include the given scope.
      *
@@ -1505,7 +2042,7 @@ public class Backstack
         Object candidateKey = keys.get(0);
 
         for(Object key : keys) {
-            if(scopeManager.canFindScope(key, scopeTag, ScopeLookupMode.EXPLICIT)) {
+            if(scopeManager.isKeyInScope(key, scopeTag)) {
                 break;
             }
 
@@ -1551,7 +2088,7 @@ public class Backstack
         Object candidateKey = keys.get(0);
 
         for(Object key : keys) {
-            if(scopeManager.canFindScope(key, scopeTag, ScopeLookupMode.EXPLICIT)) {
+            if(scopeManager.isKeyInScope(key, scopeTag)) {
                 break;
             }
 
@@ -1560,7 +2097,7 @@ public class Backstack
 
         History.Builder builder = History.builderFrom(keys).removeUntil(candidateKey);
 
-        if(scopeManager.canFindScope(builder.get(0), scopeTag, ScopeLookupMode.EXPLICIT)) { // root had the scope
+        if(scopeManager.isKeyInScope(builder.get(0), scopeTag)) { // root had the scope
             builder.removeAt(0);
         }
 
@@ -1621,6 +2158,8 @@ public class Backstack
     public boolean goBack() {
         checkBackstack("A backstack must be set up before navigation.");
 
+        core.preemptStateChangeInProgress(); // if the state changer is preemptible, then back is not consumed by the state change in progress
+
         if(isStateChangePending()) {
             return true;
         }
@@ -1763,6 +2302,136 @@ public class Backstack
         return core.getInitialKeys();
     }
 
+    private static class QueuedNavigationCommand {
+        final String coalescingTag;
+        final NavigationCommand command;
+
+        QueuedNavigationCommand(@Nullable String coalescingTag, @Nonnull NavigationCommand command) {
+            this.coalescingTag = coalescingTag;
+            this.command = command;
+        }
+    }
+
+    private final Queue<QueuedNavigationCommand> navigationCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isNavigationCommandDrainScheduled = new AtomicBoolean(false);
+    private volatile Executor navigationCommandExecutor = null;
+
+    private final Runnable navigationCommandDrain = new Runnable() {
+        @Override
+        public void run() {
+            drainNavigationCommands();
+        }
+    };
+
+    /**
+     * Specifies the {@link Executor} that runs the commands submitted with {@link Backstack#post(NavigationCommand)}.
+     * <p>
+     * The executor must run the commands on the thread where the backstack was created.
+     * If not set, the commands are posted to the main thread with a {@link Handler}, so a backstack that was not created on the main thread
+     * must set an executor before calling {@link Backstack#post(NavigationCommand)}.
+     *
+     * @param navigationCommandExecutor the executor
+     */
+    public void setNavigationCommandExecutor(@Nonnull Executor navigationCommandExecutor) {
+        //noinspection ConstantConditions
+        if(navigationCommandExecutor == null) {
+            throw new NullPointerException("Navigation command executor cannot be null!");
+        }
+        this.navigationCommandExecutor = navigationCommandExecutor;
+    }
+
+    /**
+     * Submits a navigation command that will be executed on the thread where the backstack was created. Can be called from any thread.
+     * <p>
+     * Commands submitted before the queue is drained are executed together in a single batch, in the order they were submitted.
+     * If a command throws, the remaining commands of the batch are discarded.
+     *
+     * @param command the command
+     */
+    public void post(@Nonnull NavigationCommand command) {
+        post(null, command);
+    }
+
+    /**
+     * Submits a navigation command that will be executed on the thread where the backstack was created. Can be called from any thread.
+     * <p>
+     * If multiple commands with the same coalescing tag are executed in the same batch, then only the last one of them is executed.
+     *
+     * @param coalescingTag the coalescing tag, or null if the command should not be coalesced
+     * @param command       the command
+     */
+    public void post(@Nullable String coalescingTag, @Nonnull NavigationCommand command) {
+        //noinspection ConstantConditions
+        if(command == null) {
+            throw new NullPointerException("Navigation command cannot be null!");
+        }
+        if(navigationCommandExecutor == null && Looper.getMainLooper().getThread().getId() != threadId) {
+            throw new IllegalStateException(
+                "The backstack was not created on the main thread, so a navigation command executor should be set before calling `post()`.");
+        }
+        navigationCommands.add(new QueuedNavigationCommand(coalescingTag, command));
+
+        if(isNavigationCommandDrainScheduled.compareAndSet(false, true)) {
+            Executor executor = navigationCommandExecutor;
+            if(executor == null) {
+                executor = new Executor() {
+                    private final Handler handler = new Handler(Looper.getMainLooper());
+
+                    @Override
+                    public void execute(@Nonnull Runnable runnable) {
+                        handler.post(runnable);
+                    }
+                };
+                navigationCommandExecutor = executor;
+            }
+            executor.execute(navigationCommandDrain);
+        }
+    }
+
+    private void drainNavigationCommands() {
+        isNavigationCommandDrainScheduled.set(false); // commands posted while the batch executes are drained in the next batch
+
+        assertCorrectThread(); // the flag is reset first, so that a misconfigured executor does not stop later drains from being scheduled
+
+        List<QueuedNavigationCommand> batch = new ArrayList<>();
+        QueuedNavigationCommand queuedCommand;
+        while((queuedCommand = navigationCommands.poll()) != null) {
+            batch.add(queuedCommand);
+        }
+
+        Map<String, QueuedNavigationCommand> lastCommandsByTag = new HashMap<>();
+        for(QueuedNavigationCommand command : batch) {
+            if(command.coalescingTag != null) {
+                lastCommandsByTag.put(command.coalescingTag, command);
+            }
+        }
+
+        for(QueuedNavigationCommand command : batch) {
+            if(command.coalescingTag != null && lastCommandsByTag.get(command.coalescingTag) != command) {
+                continue; // coalesced into a later command of the same batch
+            }
+            command.command.execute(this);
+        }
+    }
+
+    /**
+     * Returns whether the {@link SavedState} of the key is going to be cleared once the queued {@link StateChange}s complete.
+     * <p>
+     * This is only known when the {@link IncrementalStateClearStrategy} or the {@link DefaultStateClearStrategy} is used, which clear the state of keys that are not in the new history.
+     * With a custom {@link StateClearStrategy}, this always returns false.
+     *
+     * @param key the key
+     * @return true if the state of the key is going to be cleared.
+     */
+    public boolean isStateClearedAfterPendingStateChanges(@Nonnull Object key) {
+        if(key == null) {
+            throw new IllegalArgumentException("Key cannot be null!");
+        }
+        checkBackstack("A backstack must be set up before navigation.");
+        return (stateClearStrategy instanceof IncrementalStateClearStrategy || stateClearStrategy.getClass() == DefaultStateClearStrategy.class)
+                && !core.isInActiveHistory(key);
+    }
+
     /**
      * Returns whether there is at least one queued {@link StateChange}.
      *
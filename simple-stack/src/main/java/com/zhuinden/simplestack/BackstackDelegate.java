@@ -18,7 +18,9 @@ package com.zhuinden.simplestack;
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.os.Bundle;
 import android.view.View;
 
@@ -26,6 +28,7 @@ import com.zhuinden.statebundle.StateBundle;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -100,7 +103,7 @@ public class BackstackDelegate {
 
     /**
      * Specifies a custom {@link Backstack.StateClearStrategy}, allowing a custom way of retaining saved state.
-     * The {@link DefaultStateClearStrategy} clears saved state for keys not found in the new state.
+     * The {@link IncrementalStateClearStrategy} (which is used by default) clears saved state for keys not found in the new state.
      *
      * If used, this method must be called before {@link BackstackDelegate#onCreate(Bundle, Object, List)}.
      *
@@ -199,6 +202,57 @@ public class BackstackDelegate {
         this.stateChangeCompletionListeners.add(stateChangeCompletionListener);
     }
 
+    /**
+     * Specifies a {@link NavigationJournal}, which allows restoring the history on cold start even if the saved instance state was lost.
+     *
+     * If used, this method must be called before {@link BackstackDelegate#onCreate(Bundle, Object, List)}.
+     *
+     * @param navigationJournal the {@link NavigationJournal}.
+     */
+    public void setNavigationJournal(@Nonnull NavigationJournal navigationJournal) {
+        if(backstack != null && backstack.isInitialized()) {
+            throw new IllegalStateException("If set, navigation journal must be set before calling `onCreate()`");
+        }
+        if(navigationJournal == null) {
+            throw new IllegalArgumentException("Specified navigation journal should not be null!");
+        }
+        this.navigationJournal = navigationJournal;
+    }
+
+    /**
+     * Specifies the {@link Executor} used to create services added with {@link ServiceBinder#addServiceFactory(String, List, ServiceBinder.ServiceFactory)}.
+     *
+     * If used, this method must be called before {@link BackstackDelegate#onCreate(Bundle, Object, List)}.
+     *
+     * @param serviceExecutor the {@link Executor}.
+     */
+    public void setServiceExecutor(@Nonnull Executor serviceExecutor) {
+        if(backstack != null && backstack.isInitialized()) {
+            throw new IllegalStateException("If set, service executor must be set before calling `onCreate()`");
+        }
+        if(serviceExecutor == null) {
+            throw new IllegalArgumentException("Specified service executor should not be null!");
+        }
+        this.serviceExecutor = serviceExecutor;
+    }
+
+    /**
+     * Specifies the {@link Executor} used to deliver the lifecycle callbacks of services that implement {@link ScopedServices.BackgroundRegistered}.
+     *
+     * If used, this method must be called before {@link BackstackDelegate#onCreate(Bundle, Object, List)}.
+     *
+     * @param serviceCallbackExecutor the {@link Executor}.
+     */
+    public void setServiceCallbackExecutor(@Nonnull Executor serviceCallbackExecutor) {
+        if(backstack != null && backstack.isInitialized()) {
+            throw new IllegalStateException("If set, service callback executor must be set before calling `onCreate()`");
+        }
+        if(serviceCallbackExecutor == null) {
+            throw new IllegalArgumentException("Specified service callback executor should not be null!");
+        }
+        this.serviceCallbackExecutor = serviceCallbackExecutor;
+    }
+
     private static final String HISTORY = "simplestack.HISTORY";
 
     private Activity activity;
@@ -211,7 +265,10 @@ public class BackstackDelegate {
     private ScopedServices scopedServices = null;
     private GlobalServices globalServices = null;
     private GlobalServices.Factory globalServiceFactory = null;
-    private Backstack.StateClearStrategy stateClearStrategy = new DefaultStateClearStrategy();
+    private Backstack.StateClearStrategy stateClearStrategy = new IncrementalStateClearStrategy();
+    private NavigationJournal navigationJournal = null;
+    private Executor serviceExecutor = null;
+    private Executor serviceCallbackExecutor = null;
     private List<Backstack.CompletionListener> stateChangeCompletionListeners = new LinkedList<>();
 
     /**
@@ -266,7 +323,8 @@ public class BackstackDelegate {
      * - {@link BackstackDelegate#onPostResume()}
      * - {@link BackstackDelegate#onPause()}
      * - {@link BackstackDelegate#onSaveInstanceState(Bundle)}
-     * - {@link BackstackDelegate#onDestroy()}.
+     * - {@link BackstackDelegate#onDestroy()}
+     * - {@link BackstackDelegate#onTrimMemory(int)}.
      *
      * This method can only be called after {@link BackstackDelegate#onCreate(Bundle, Object, List)}.
      *
@@ -281,6 +339,23 @@ public class BackstackDelegate {
         }
         @SuppressWarnings("unused") Backstack backstack = getBackstack();
         final Application application = activity.getApplication();
+        final ComponentCallbacks2 componentCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                BackstackDelegate.this.onTrimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                // do nothing
+            }
+
+            @Override
+            public void onLowMemory() {
+                // do nothing
+            }
+        };
+        application.registerComponentCallbacks(componentCallbacks);
         application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
             @Override
             public void onActivityCreated(Activity a, Bundle savedInstanceState) {
@@ -326,6 +401,7 @@ public class BackstackDelegate {
             public void onActivityDestroyed(Activity a) {
                 if(activity == a) {
                     onDestroy();
+                    application.unregisterComponentCallbacks(componentCallbacks);
                     application.unregisterActivityLifecycleCallbacks(this);
                 }
             }
@@ -356,6 +432,7 @@ public class BackstackDelegate {
             backstack.setKeyFilter(keyFilter);
             backstack.setKeyParceler(keyParceler);
             backstack.setStateClearStrategy(stateClearStrategy);
+            backstack.setNavigationJournal(navigationJournal);
             if(scopedServices != null) {
                 backstack.setScopedServices(scopedServices);
             }
@@ -365,12 +442,16 @@ public class BackstackDelegate {
             if(globalServiceFactory != null) {
                 backstack.setGlobalServices(globalServiceFactory);
             }
+            backstack.setServiceExecutor(serviceExecutor);
+            backstack.setServiceCallbackExecutor(serviceCallbackExecutor);
             backstack.setup(initialKeys);
             for(Backstack.CompletionListener completionListener : stateChangeCompletionListeners) {
                 backstack.addStateChangeCompletionListener(completionListener);
             }
             if(savedInstanceState != null) {
                 backstack.fromBundle(savedInstanceState.<StateBundle>getParcelable(getHistoryTag()));
+            } else {
+                backstack.restoreFromJournal();
             }
         }
         backstack.setStateChanger(stateChanger);
@@ -459,10 +540,23 @@ public class BackstackDelegate {
         //noinspection ConstantConditions
         if(activity == null || (activity != null && activity.isFinishing())) {
             getBackstack().finalizeScopes();
+            if(navigationJournal != null) {
+                navigationJournal.clear();
+            }
         }
         activity = null;
     }
 
+    /**
+     * The onTrimMemory() delegate for the Activity.
+     * The call is delegated to {@link Backstack#onTrimMemory(int)}.
+     *
+     * @param level the trim level.
+     */
+    public void onTrimMemory(int level) {
+        getBackstack().onTrimMemory(level);
+    }
+
     // ----- viewstate persistence
 
     /**
@@ -2,6 +2,7 @@ package com.zhuinden.simplestack;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -15,9 +16,10 @@ class CollectionHelper {
 
     public static boolean retainAll(Set<?> mutableSet, Collection<?> collection) {
         final ArrayList<?> arrayList = new ArrayList<>(mutableSet);
+        final Collection<?> lookup = collection instanceof Set ? collection : new HashSet<>(collection); // avoid linear `contains()` per item
         boolean modified = false;
         for(Object item : arrayList) {
-            if(!collection.contains(item)) {
+            if(!lookup.contains(item)) {
                 mutableSet.remove(item);
                 modified = true;
             }
@@ -15,10 +15,15 @@
  */
 package com.zhuinden.simplestack;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Used to describe the global services registered to the global scope.
@@ -67,6 +72,8 @@ public class GlobalServices {
     /**
      * Returns a set of entries with the contained service tags and services.
      *
+     * Services added with a {@link Provider} are only included once they were created.
+     *
      * @return the entry set
      */
     @Nonnull
@@ -84,6 +91,18 @@ public class GlobalServices {
         return new Builder();
     }
 
+    private static final class ServiceFactoryRegistration {
+        private final String serviceTag;
+        private final List<String> dependencies;
+        private final ServiceBinder.ServiceFactory<?> serviceFactory;
+
+        ServiceFactoryRegistration(String serviceTag, List<String> dependencies, ServiceBinder.ServiceFactory<?> serviceFactory) {
+            this.serviceTag = serviceTag;
+            this.dependencies = dependencies;
+            this.serviceFactory = serviceFactory;
+        }
+    }
+
     /**
      * The builder for the global scope.
      */
@@ -91,8 +110,21 @@ public class GlobalServices {
         private Builder() {
         }
 
+        // holds the place of a service factory in the scope, so that its service keeps the registration order. Replaced by a new task on each build()
+        private static final Provider<Object> SERVICE_FACTORY_PLACEHOLDER = new Provider<Object>() {
+            @Nonnull
+            @Override
+            public Object get() {
+                throw new IllegalStateException("A service factory can only be used after the global services are built!");
+            }
+        };
+
         private final ScopeNode scope = new ScopeNode();
 
+        private final Map<String, ServiceFactoryRegistration> serviceFactoryRegistrations = new LinkedHashMap<>();
+
+        private Executor initializationExecutor = null;
+
         /**
          * Adds a service to the global scope.
          *
@@ -103,6 +135,68 @@ public class GlobalServices {
         @Nonnull
         public Builder addService(@Nonnull String serviceTag, @Nonnull Object service) {
             scope.addService(serviceTag, service);
+            serviceFactoryRegistrations.remove(serviceTag);
+            return this;
+        }
+
+        /**
+         * Adds a service to the global scope that is created by the provider when it is first looked up.
+         *
+         * @param serviceTag the service tag
+         * @param provider   the provider that creates the service
+         * @return the builder
+         */
+        @Nonnull
+        public Builder addProvider(@Nonnull String serviceTag, @Nonnull Provider<?> provider) {
+            scope.addProvider(serviceTag, provider);
+            serviceFactoryRegistrations.remove(serviceTag);
+            return this;
+        }
+
+        /**
+         * Adds a service to the global scope that is created from the services it depends on.
+         * <p>
+         * The dependencies must be services or service factories of the global scope.
+         * <p>
+         * If an executor is set with {@link Builder#setInitializationExecutor(Executor)}, then the services start being created on the executor
+         * when {@link Builder#build()} is called, each service as soon as its dependencies are created. Otherwise, the service is created when it is
+         * first looked up. Looking up a service that is not created yet creates it (or waits for it) on the current thread.
+         * <p>
+         * Similarly to {@link Builder#addProvider(String, Provider)}, the service is registered when it is first looked up.
+         *
+         * @param serviceTag     the service tag
+         * @param dependencies   the tags of the services that the service depends on
+         * @param serviceFactory the factory that creates the service
+         * @return the builder
+         */
+        @Nonnull
+        public Builder addServiceFactory(@Nonnull String serviceTag, @Nonnull List<String> dependencies, @Nonnull ServiceBinder.ServiceFactory<?> serviceFactory) {
+            //noinspection ConstantConditions
+            if(serviceTag == null) {
+                throw new IllegalArgumentException("Service tag cannot be null!");
+            }
+            //noinspection ConstantConditions
+            if(dependencies == null) {
+                throw new IllegalArgumentException("dependencies cannot be null!");
+            }
+            //noinspection ConstantConditions
+            if(serviceFactory == null) {
+                throw new IllegalArgumentException("serviceFactory cannot be null!");
+            }
+            scope.addProvider(serviceTag, SERVICE_FACTORY_PLACEHOLDER);
+            serviceFactoryRegistrations.put(serviceTag, new ServiceFactoryRegistration(serviceTag, new ArrayList<>(dependencies), serviceFactory));
+            return this;
+        }
+
+        /**
+         * Sets the executor used to create the services added with {@link Builder#addServiceFactory(String, List, ServiceBinder.ServiceFactory)} in parallel.
+         *
+         * @param initializationExecutor the executor, or null to create the services when they are first looked up
+         * @return the builder
+         */
+        @Nonnull
+        public Builder setInitializationExecutor(@Nullable Executor initializationExecutor) {
+            this.initializationExecutor = initializationExecutor;
             return this;
         }
 
@@ -126,7 +220,38 @@ public class GlobalServices {
          */
         @Nonnull
         public GlobalServices build() {
-            return new GlobalServices(new ScopeNode(scope));
+            ScopeNode scopeNode = new ScopeNode(scope);
+            if(serviceFactoryRegistrations.isEmpty()) {
+                return new GlobalServices(scopeNode);
+            }
+
+            ServiceFactoryGraph graph = new ServiceFactoryGraph();
+            for(ServiceFactoryRegistration registration : serviceFactoryRegistrations.values()) {
+                graph.addNode(registration.serviceTag, registration.dependencies, registration.serviceFactory);
+            }
+
+            for(ServiceFactoryGraph.Node node : graph.getNodes()) {
+                for(String dependency : node.dependencies) {
+                    if(graph.hasNode(dependency)) {
+                        continue;
+                    }
+                    if(scope.hasService(dependency) && scope.getPendingServiceTags().contains(dependency)) {
+                        throw new IllegalArgumentException("The global service [" + node.serviceTag + "] depends on [" + dependency + "], which is added with a provider. Use a service factory instead.");
+                    } else if(scope.hasService(dependency)) {
+                        node.addServiceDependency(dependency, scope.getService(dependency));
+                    } else {
+                        throw new IllegalArgumentException("The global service [" + node.serviceTag + "] depends on [" + dependency + "], but it is not a global service!");
+                    }
+                }
+            }
+
+            graph.linkAndOrderByDependencies("of the global scope");
+
+            for(ServiceFactoryGraph.Node node : graph.getNodes()) {
+                scopeNode.addProvider(node.serviceTag, node); // replaces the placeholder, so the service keeps its position
+            }
+            graph.start(initializationExecutor); // nodes with dependencies are started when their dependencies are done
+            return new GlobalServices(scopeNode);
         }
     }
 
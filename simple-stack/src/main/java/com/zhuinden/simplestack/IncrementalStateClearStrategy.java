@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A strategy that clears the state for all keys that are not found in the new state, like the {@link DefaultStateClearStrategy}.
+ * <p>
+ * Instead of checking each retained state against the new history, the {@link Backstack} tracks the keys that left the history, and the keys whose state was created while they were not in the history. Only the states of these keys are cleared.
+ * <p>
+ * This is the strategy used by the {@link Backstack} by default. A subclass of {@link DefaultStateClearStrategy} is always called with the complete map instead.
+ */
+public final class IncrementalStateClearStrategy
+        implements Backstack.StateClearStrategy {
+    @Override
+    public void clearStatesNotIn(@Nonnull Map<Object, SavedState> keyStateMap, @Nonnull StateChange stateChange) {
+        CollectionHelper.retainAll(keyStateMap.keySet(), stateChange.getNewKeys()); // see #256
+    }
+
+    /**
+     * Clears the states of the keys that are no longer in the history.
+     *
+     * @param keyStateMap  the map that contains the keys and their corresponding retained saved state.
+     * @param obsoleteKeys the keys that are not in the new history, but might still have a state.
+     */
+    void clearStatesOf(@Nonnull Map<Object, SavedState> keyStateMap, @Nonnull Set<Object> obsoleteKeys) {
+        for(Object obsoleteKey : obsoleteKeys) {
+            keyStateMap.remove(obsoleteKey);
+        }
+    }
+}
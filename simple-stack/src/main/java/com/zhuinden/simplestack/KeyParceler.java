@@ -21,6 +21,17 @@ import android.os.Parcelable;
  * An interface to allow using any key in the backstack, as long as it is possible to persist and restore it as a Parcelable.
  */
 public interface KeyParceler {
+    /**
+     * A marker interface for a {@link KeyParceler} whose keys are immutable, so the Parcelable created for a key can be reused.
+     * <p>
+     * If the key parceler implements this interface, then the {@link Backstack} caches the result of {@link KeyParceler#toParcelable(Object)} for each key,
+     * and only invalidates it when the key is no longer in the history. Repeated calls to {@link Backstack#toBundle()} then do not convert the same key again.
+     * <p>
+     * The created Parcelable must not be modified after it was returned.
+     */
+    interface Cacheable {
+    }
+
     /**
      * Transforms the input parameter into a Parcelable.
      *
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.zhuinden.statebundle.StateBundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Manages multiple {@link Backstack}s identified by a string, such as the tabs of a bottom navigation, where only the selected stack has the {@link StateChanger}.
+ *
+ * The backstack of a stack is created when it is first accessed. Inactive stacks can be trimmed to their persisted state with {@link #trimInactiveStacks()},
+ * and are re-created from it when accessed again.
+ *
+ * The global services set with {@link #setGlobalServices(GlobalServices)} are registered once, and are shared by all stacks as their parent services,
+ * using {@link Backstack#setSharedServiceHierarchy(boolean)}.
+ */
+public class Multistack
+        implements Bundleable {
+    /**
+     * Configures the backstack of a stack when it is created, before {@link Backstack#setup(List)} is called.
+     */
+    public interface BackstackConfigurer {
+        /**
+         * Configures the backstack, for example with {@link Backstack#setScopedServices(ScopedServices)}.
+         *
+         * @param identifier the identifier of the stack
+         * @param backstack  the backstack
+         */
+        void configure(@Nonnull String identifier, @Nonnull Backstack backstack);
+    }
+
+    static final class GlobalScopeKey
+            implements Parcelable {
+        GlobalScopeKey() {
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GlobalScopeKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return GlobalScopeKey.class.hashCode();
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+        }
+
+        public static final Creator<GlobalScopeKey> CREATOR = new Creator<GlobalScopeKey>() {
+            @Override
+            public GlobalScopeKey createFromParcel(Parcel in) {
+                return new GlobalScopeKey();
+            }
+
+            @Override
+            public GlobalScopeKey[] newArray(int size) {
+                return new GlobalScopeKey[size];
+            }
+        };
+    }
+
+    private static final StateChanger NO_OP_STATE_CHANGER = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private final BackstackConfigurer backstackConfigurer;
+
+    private final Map<String, List<?>> initialKeysByIdentifier = new LinkedHashMap<>();
+    private final Map<String, Backstack> backstacks = new LinkedHashMap<>();
+    private final Map<String, StateBundle> persistedStates = new HashMap<>();
+
+    private Backstack globalServicesBackstack;
+    private StateBundle persistedGlobalServicesState;
+
+    private String selectedIdentifier;
+    private StateChanger stateChanger;
+    private boolean isStateChangerDetached = false;
+
+    /**
+     * Creates a multistack.
+     */
+    public Multistack() {
+        this(null);
+    }
+
+    /**
+     * Creates a multistack, where each backstack is configured with the {@link BackstackConfigurer} when it is created.
+     *
+     * @param backstackConfigurer the backstack configurer
+     */
+    public Multistack(@Nullable BackstackConfigurer backstackConfigurer) {
+        this.backstackConfigurer = backstackConfigurer;
+    }
+
+    /**
+     * Sets the global services shared by all stacks. They are registered once, and looked up as the parent services of each backstack.
+     * <p>
+     * Must be called before any backstack is created.
+     *
+     * @param globalServices the global services
+     */
+    public void setGlobalServices(@Nonnull GlobalServices globalServices) {
+        if(globalServices == null) {
+            throw new IllegalArgumentException("Global services cannot be null!");
+        }
+        if(!backstacks.isEmpty() || globalServicesBackstack != null) {
+            throw new IllegalStateException("Global services should be set before any backstack is created!");
+        }
+        globalServicesBackstack = new Backstack();
+        globalServicesBackstack.setGlobalServices(globalServices);
+        globalServicesBackstack.setup(Collections.singletonList(new GlobalScopeKey()));
+    }
+
+    /**
+     * Adds a stack. The first added stack is selected by default.
+     *
+     * @param identifier  the identifier of the stack
+     * @param initialKeys the initial keys of the stack
+     */
+    public void add(@Nonnull String identifier, @Nonnull List<?> initialKeys) {
+        if(identifier == null) {
+            throw new IllegalArgumentException("Identifier cannot be null!");
+        }
+        if(initialKeys == null || initialKeys.isEmpty()) {
+            throw new IllegalArgumentException("Initial keys cannot be null or empty!");
+        }
+        if(initialKeysByIdentifier.containsKey(identifier)) {
+            throw new IllegalArgumentException("The identifier [" + identifier + "] is already registered to the multistack");
+        }
+        initialKeysByIdentifier.put(identifier, new ArrayList<>(initialKeys));
+        if(selectedIdentifier == null) {
+            selectedIdentifier = identifier;
+        }
+    }
+
+    /**
+     * Returns if a stack is registered with the given identifier.
+     *
+     * @param identifier the identifier
+     * @return if the stack exists
+     */
+    public boolean has(@Nonnull String identifier) {
+        return initialKeysByIdentifier.containsKey(identifier);
+    }
+
+    /**
+     * Returns if the backstack of the stack is currently created.
+     *
+     * @param identifier the identifier
+     * @return if the backstack is created
+     */
+    public boolean isCreated(@Nonnull String identifier) {
+        return backstacks.containsKey(identifier);
+    }
+
+    /**
+     * Returns the backstack of the stack, creating it if needed.
+     *
+     * @param identifier the identifier
+     * @return the backstack
+     */
+    @Nonnull
+    public Backstack get(@Nonnull String identifier) {
+        Backstack backstack = backstacks.get(identifier);
+        if(backstack != null) {
+            return backstack;
+        }
+        List<?> initialKeys = initialKeysByIdentifier.get(identifier);
+        if(initialKeys == null) {
+            throw new IllegalArgumentException("You cannot specify a stack [" + identifier + "] that does not exist!");
+        }
+        if(globalServicesBackstack != null && !globalServicesBackstack.hasStateChanger()) {
+            if(persistedGlobalServicesState != null) {
+                globalServicesBackstack.fromBundle(persistedGlobalServicesState);
+                persistedGlobalServicesState = null;
+            }
+            globalServicesBackstack.setStateChanger(NO_OP_STATE_CHANGER); // builds the global scope
+        }
+        backstack = new Backstack();
+        if(backstackConfigurer != null) {
+            backstackConfigurer.configure(identifier, backstack);
+        }
+        if(globalServicesBackstack != null) {
+            backstack.setParentServices(globalServicesBackstack);
+            backstack.setSharedServiceHierarchy(true);
+        }
+        backstack.setup(initialKeys);
+        backstack.fromBundle(persistedStates.remove(identifier));
+        backstacks.put(identifier, backstack);
+        return backstack;
+    }
+
+    /**
+     * Returns the identifier of the selected stack.
+     *
+     * @return the selected identifier
+     */
+    @Nonnull
+    public String getSelectedIdentifier() {
+        checkStacks();
+        return selectedIdentifier;
+    }
+
+    /**
+     * Returns the backstack of the selected stack.
+     *
+     * @return the selected backstack
+     */
+    @Nonnull
+    public Backstack getSelectedStack() {
+        checkStacks();
+        return get(selectedIdentifier);
+    }
+
+    /**
+     * Selects the stack. The state changer is detached from the previously selected backstack, and set to the backstack of the new stack.
+     *
+     * @param identifier the identifier
+     */
+    public void setSelectedStack(@Nonnull String identifier) {
+        if(!initialKeysByIdentifier.containsKey(identifier)) {
+            throw new IllegalArgumentException("You cannot specify a stack [" + identifier + "] that does not exist!");
+        }
+        if(identifier.equals(selectedIdentifier)) {
+            return;
+        }
+        Backstack previousBackstack = backstacks.get(selectedIdentifier);
+        if(previousBackstack != null) {
+            previousBackstack.detachStateChanger();
+        }
+        selectedIdentifier = identifier;
+        if(stateChanger != null) {
+            attachStateChanger();
+        }
+    }
+
+    /**
+     * Sets the state changer of the selected backstack. The backstacks of the other stacks have no state changer.
+     *
+     * @param stateChanger the state changer
+     */
+    public void setStateChanger(@Nullable StateChanger stateChanger) {
+        this.stateChanger = stateChanger;
+        if(stateChanger != null) {
+            attachStateChanger();
+        } else {
+            Backstack selectedBackstack = backstacks.get(selectedIdentifier);
+            if(selectedBackstack != null) {
+                selectedBackstack.removeStateChanger();
+            }
+        }
+    }
+
+    private void attachStateChanger() {
+        Backstack selectedBackstack = getSelectedStack();
+        selectedBackstack.setStateChanger(stateChanger);
+        if(isStateChangerDetached) {
+            selectedBackstack.detachStateChanger();
+        }
+    }
+
+    /**
+     * Detaches the state changer of the selected backstack, typically in onPause().
+     */
+    public void detachStateChanger() {
+        isStateChangerDetached = true;
+        Backstack selectedBackstack = backstacks.get(selectedIdentifier);
+        if(selectedBackstack != null) {
+            selectedBackstack.detachStateChanger();
+        }
+    }
+
+    /**
+     * Reattaches the state changer of the selected backstack, typically in onResume().
+     */
+    public void reattachStateChanger() {
+        isStateChangerDetached = false;
+        Backstack selectedBackstack = backstacks.get(selectedIdentifier);
+        if(selectedBackstack != null) {
+            selectedBackstack.reattachStateChanger();
+        }
+    }
+
+    /**
+     * Executes the pending state changes of the created backstacks.
+     */
+    public void executePendingStateChange() {
+        for(Backstack backstack : backstacks.values()) {
+            backstack.executePendingStateChange();
+        }
+    }
+
+    /**
+     * Trims the backstacks of the stacks that are not selected and have no pending state change to their persisted state.
+     * Their scopes are finalized, and the backstacks are re-created from their persisted state when they are accessed again.
+     */
+    public void trimInactiveStacks() {
+        for(Map.Entry<String, Backstack> entry : new ArrayList<>(backstacks.entrySet())) {
+            String identifier = entry.getKey();
+            Backstack backstack = entry.getValue();
+            if(identifier.equals(selectedIdentifier) || backstack.isStateChangePending()) {
+                continue;
+            }
+            persistedStates.put(identifier, backstack.toBundle());
+            backstack.finalizeScopes();
+            backstacks.remove(identifier);
+        }
+    }
+
+    /**
+     * Finalizes the scopes of all created backstacks, and the global services. Typically called when the Activity is finishing.
+     */
+    public void finalizeScopes() {
+        for(Backstack backstack : backstacks.values()) {
+            backstack.finalizeScopes();
+        }
+        if(globalServicesBackstack != null) {
+            globalServicesBackstack.finalizeScopes();
+        }
+    }
+
+    private void checkStacks() {
+        if(selectedIdentifier == null) {
+            throw new IllegalStateException("At least one stack must be added to the multistack!");
+        }
+    }
+
+    @Nonnull
+    @Override
+    public StateBundle toBundle() {
+        StateBundle stateBundle = new StateBundle();
+        stateBundle.putString("multistack_selectedStack", selectedIdentifier);
+        for(String identifier : initialKeysByIdentifier.keySet()) {
+            Backstack backstack = backstacks.get(identifier);
+            StateBundle backstackState = backstack != null ? backstack.toBundle() : persistedStates.get(identifier);
+            if(backstackState != null) {
+                stateBundle.putBundle("multistack_identifier_" + identifier, backstackState);
+            }
+        }
+        if(globalServicesBackstack != null) {
+            StateBundle globalServicesState = globalServicesBackstack.hasStateChanger() ? globalServicesBackstack.toBundle() : persistedGlobalServicesState;
+            if(globalServicesState != null) {
+                stateBundle.putBundle("multistack_globalServices", globalServicesState);
+            }
+        }
+        return stateBundle;
+    }
+
+    /**
+     * Restores the multistack from its persisted state. Must be called before the state changer is set.
+     *
+     * @param bundle the state bundle obtained via {@link #toBundle()}
+     */
+    @Override
+    public void fromBundle(@Nullable StateBundle bundle) {
+        if(bundle == null) {
+            return;
+        }
+        String restoredSelectedIdentifier = bundle.getString("multistack_selectedStack");
+        if(restoredSelectedIdentifier != null && initialKeysByIdentifier.containsKey(restoredSelectedIdentifier)) {
+            selectedIdentifier = restoredSelectedIdentifier;
+        }
+        for(String identifier : initialKeysByIdentifier.keySet()) {
+            StateBundle backstackState = bundle.getBundle("multistack_identifier_" + identifier);
+            if(backstackState == null) {
+                continue;
+            }
+            Backstack backstack = backstacks.get(identifier);
+            if(backstack != null) {
+                backstack.fromBundle(backstackState);
+            } else {
+                persistedStates.put(identifier, backstackState);
+            }
+        }
+        persistedGlobalServicesState = bundle.getBundle("multistack_globalServices");
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A navigation action that can be submitted from any thread with {@link Backstack#post(NavigationCommand)}.
+ *
+ * The command is executed later on the thread that owns the backstack, so it can call any method of the backstack.
+ */
+public interface NavigationCommand {
+    /**
+     * Executes the command.
+     *
+     * @param backstack the backstack the command was posted to
+     */
+    void execute(@Nonnull Backstack backstack);
+}
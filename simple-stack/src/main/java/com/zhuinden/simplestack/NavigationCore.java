@@ -487,6 +487,8 @@ class NavigationCore {
     public boolean goBack() {
         assertCorrectThread();
 
+        preemptStateChangeInProgress();
+
         if(isStateChangePending()) {
             return true;
         }
@@ -539,6 +541,8 @@ class NavigationCore {
         checkNewHistory(newHistory);
         assertCorrectThread();
 
+        preemptStateChangeInProgress();
+
         if(!queuedStateChanges.isEmpty()) {
             PendingStateChange pendingLast = queuedStateChanges.peekLast();
             if(pendingLast != null && pendingLast.isTerminal && !isForceEnqueued) {
@@ -653,6 +657,13 @@ class NavigationCore {
         return !queuedStateChanges.isEmpty();
     }
 
+    // the history once all queued state changes are completed
+    boolean isInActiveHistory(Object key) {
+        assertCorrectThread();
+
+        return selectActiveHistory().contains(key);
+    }
+
     private void enqueueStateChange(List<?> newHistory, int direction, boolean initialization, boolean isTerminal, boolean isForceEnqueued) {
         PendingStateChange pendingStateChange = new PendingStateChange(newHistory,
                                                                        direction,
@@ -717,6 +728,7 @@ class NavigationCore {
                 }
             }
         };
+        pendingStateChange.stateChange = stateChange;
         pendingStateChange.completionCallback = completionCallback;
         stateChanger.handleStateChange(stateChange, completionCallback);
     }
@@ -730,6 +742,9 @@ class NavigationCore {
 
         PendingStateChange pendingStateChange = queuedStateChanges.removeFirst();
         pendingStateChange.setStatus(PendingStateChange.Status.COMPLETED);
+        if(backstack != null) {
+            backstack.recordStateChange(stateChange);
+        }
         notifyCompletionListeners(stateChange);
 
         beginStateChangeIfPossible();
@@ -848,6 +863,28 @@ class NavigationCore {
         }
     }
 
+    // preemption
+
+    private boolean isPreempting = false;
+
+    void preemptStateChangeInProgress() {
+        assertCorrectThread();
+
+        if(isPreempting || !(stateChanger instanceof StateChanger.Preemptible) || queuedStateChanges.isEmpty()) {
+            return;
+        }
+        PendingStateChange pendingStateChange = queuedStateChanges.getFirst();
+        if(pendingStateChange.getStatus() != PendingStateChange.Status.IN_PROGRESS || pendingStateChange.didForceExecute) {
+            return;
+        }
+        isPreempting = true; // navigation from the completion listeners of the fast-forwarded state change is enqueued as usual
+        try {
+            ((StateChanger.Preemptible) stateChanger).fastForward(pendingStateChange.stateChange);
+        } finally {
+            isPreempting = false;
+        }
+    }
+
     // force execute
 
     /**
@@ -0,0 +1,501 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An append-only journal of completed state changes, persisted into a file.
+ * <p>
+ * The Bundle written in onSaveInstanceState() is lost on a crash or when the task is removed, but the journal is written as state changes complete.
+ * This allows rebuilding the history on cold start with {@link Backstack#restoreFromJournal()}.
+ * <p>
+ * Each completed state change is appended as a delta against the previously recorded history (the number of retained keys, and the parcelled keys that were added).
+ * Once the number of deltas reaches the compaction threshold, the file is rewritten as a single snapshot of the current history.
+ * <p>
+ * The file should be in app-private storage, for example `new File(context.getFilesDir(), "navigation.journal")`.
+ * <p>
+ * The keys are parcelled and encoded on the thread that completes the state change, but the file is written on a single background thread (or the provided executor).
+ * <p>
+ * If recording or writing the journal fails, the file is deleted and the journal stops recording, so that a stale history is never restored.
+ */
+public final class NavigationJournal {
+    /**
+     * Converts the parcelled keys into bytes, and back.
+     * <p>
+     * The default codec uses {@link Parcel#marshall()}. A custom codec can be used to write the keys in a more compact form.
+     */
+    public interface Codec {
+        /**
+         * Encodes the parcelled key.
+         *
+         * @param parcelable the parcelled key
+         * @return the bytes
+         */
+        @Nonnull
+        byte[] encode(@Nonnull Parcelable parcelable);
+
+        /**
+         * Decodes the parcelled key.
+         *
+         * @param bytes the bytes
+         * @return the parcelled key
+         */
+        @Nonnull
+        Parcelable decode(@Nonnull byte[] bytes);
+    }
+
+    private static class ParcelCodec
+            implements Codec {
+        @Nonnull
+        @Override
+        public byte[] encode(@Nonnull Parcelable parcelable) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeParcelable(parcelable, 0);
+                return parcel.marshall();
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Parcelable decode(@Nonnull byte[] bytes) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.unmarshall(bytes, 0, bytes.length);
+                parcel.setDataPosition(0);
+                Parcelable parcelable = parcel.readParcelable(NavigationJournal.class.getClassLoader());
+                if(parcelable == null) {
+                    throw new IllegalStateException("The journal contained a null key.");
+                }
+                return parcelable;
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    private static final int MAGIC = 0x534A524E;
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_SNAPSHOT = 1;
+    private static final byte RECORD_DELTA = 2;
+
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 32;
+
+    private static final long WRITER_KEEP_ALIVE_SECONDS = 10L;
+
+    private static Executor createWriterExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1,
+                1,
+                WRITER_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@Nonnull Runnable runnable) {
+                        Thread thread = new Thread(runnable, "NavigationJournal");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final File file;
+    private final int compactionThreshold;
+    private final Codec codec;
+    private final Executor writerExecutor;
+
+    // accessed only by the writer executor
+    private DataOutputStream outputStream;
+
+    // accessed only by the thread that completes the state changes
+    private List<Object> recordedKeys;
+    private int deltasSinceSnapshot = 0;
+
+    private volatile boolean isDisabled = false;
+
+    /**
+     * Creates a journal that writes into the provided file, compacting it after every 32 deltas.
+     *
+     * @param file the file, which should be in app-private storage
+     */
+    public NavigationJournal(@Nonnull File file) {
+        this(file, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Creates a journal that writes into the provided file.
+     *
+     * @param file                the file, which should be in app-private storage
+     * @param compactionThreshold the number of deltas after which the file is rewritten as a snapshot
+     */
+    public NavigationJournal(@Nonnull File file, int compactionThreshold) {
+        this(file, compactionThreshold, new ParcelCodec());
+    }
+
+    /**
+     * Creates a journal that writes into the provided file.
+     *
+     * @param file                the file, which should be in app-private storage
+     * @param compactionThreshold the number of deltas after which the file is rewritten as a snapshot
+     * @param codec               the codec used to convert the parcelled keys into bytes
+     */
+    public NavigationJournal(@Nonnull File file, int compactionThreshold, @Nonnull Codec codec) {
+        this(file, compactionThreshold, codec, createWriterExecutor());
+    }
+
+    /**
+     * Creates a journal that writes into the provided file.
+     * <p>
+     * The executor must run the writes one at a time, in the order they were submitted.
+     *
+     * @param file                the file, which should be in app-private storage
+     * @param compactionThreshold the number of deltas after which the file is rewritten as a snapshot
+     * @param codec               the codec used to convert the parcelled keys into bytes
+     * @param writerExecutor      the serial executor that writes the file
+     */
+    public NavigationJournal(@Nonnull File file, int compactionThreshold, @Nonnull Codec codec, @Nonnull Executor writerExecutor) {
+        //noinspection ConstantConditions
+        if(file == null) {
+            throw new NullPointerException("file cannot be null!");
+        }
+        if(compactionThreshold <= 0) {
+            throw new IllegalArgumentException("The compaction threshold must be at least 1!");
+        }
+        //noinspection ConstantConditions
+        if(codec == null) {
+            throw new NullPointerException("codec cannot be null!");
+        }
+        //noinspection ConstantConditions
+        if(writerExecutor == null) {
+            throw new NullPointerException("writerExecutor cannot be null!");
+        }
+        this.file = file;
+        this.compactionThreshold = compactionThreshold;
+        this.codec = codec;
+        this.writerExecutor = writerExecutor;
+    }
+
+    /**
+     * Returns the file of the journal.
+     *
+     * @return the file
+     */
+    @Nonnull
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of deltas after which the file is rewritten as a snapshot.
+     *
+     * @return the compaction threshold
+     */
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Deletes the journal, typically when the Activity is finishing and the history should no longer be restored.
+     * <p>
+     * Recording continues with a new snapshot on the next completed state change.
+     */
+    public void clear() {
+        recordedKeys = null;
+        deltasSinceSnapshot = 0;
+        write(new Runnable() {
+            @Override
+            public void run() {
+                deleteFile();
+            }
+        });
+    }
+
+    /**
+     * Reads the history stored in the journal.
+     * <p>
+     * If the journal is corrupt or its keys can no longer be restored (for example, after a key class was renamed in an update), it is deleted.
+     *
+     * @param keyParceler the key parceler
+     * @return the history, or null if there is no journal or it could not be read
+     */
+    @Nullable
+    List<Object> readHistory(@Nonnull KeyParceler keyParceler) {
+        if(!file.exists()) {
+            return null;
+        }
+        DataInputStream inputStream = null;
+        boolean isCorrupt = false;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                return null;
+            }
+            long remainingLength = file.length() - 8;
+            List<Parcelable> history = new ArrayList<>();
+            while(true) {
+                int recordType = inputStream.read();
+                if(recordType == -1) {
+                    break;
+                }
+                try {
+                    List<Parcelable> newHistory;
+                    remainingLength -= 1;
+                    if(recordType == RECORD_SNAPSHOT) {
+                        newHistory = new ArrayList<>();
+                    } else if(recordType == RECORD_DELTA) {
+                        int retainedCount = inputStream.readInt();
+                        remainingLength -= 4;
+                        if(retainedCount < 0 || retainedCount > history.size()) {
+                            return null;
+                        }
+                        newHistory = new ArrayList<>(history.subList(0, retainedCount));
+                    } else {
+                        return null;
+                    }
+                    int addedCount = inputStream.readInt();
+                    remainingLength -= 4;
+                    if(addedCount < 0) {
+                        isCorrupt = true;
+                        return null;
+                    }
+                    for(int i = 0; i < addedCount; i++) {
+                        int length = inputStream.readInt();
+                        remainingLength -= 4;
+                        if(length < 0) {
+                            isCorrupt = true;
+                            return null;
+                        }
+                        if(length > remainingLength) {
+                            throw new EOFException(); // the length is checked before allocating, so that a corrupt length cannot cause an OOM
+                        }
+                        byte[] bytes = new byte[length];
+                        inputStream.readFully(bytes);
+                        remainingLength -= length;
+                        newHistory.add(codec.decode(bytes));
+                    }
+                    history = newHistory;
+                } catch(EOFException e) {
+                    break; // the last record was not completely written, so the previous history is used
+                }
+            }
+            List<Object> keys = new ArrayList<>(history.size());
+            for(Parcelable parcelable : history) {
+                keys.add(keyParceler.fromParcelable(parcelable));
+            }
+            return keys;
+        } catch(IOException e) {
+            return null;
+        } catch(RuntimeException e) { // thrown by the codec or the key parceler
+            isCorrupt = true;
+            return null;
+        } finally {
+            if(inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch(IOException e) {
+                    // ignored
+                }
+            }
+            if(isCorrupt) {
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Records the new history of a completed state change.
+     * <p>
+     * The keys are encoded on the current thread, and the file is written by the writer executor.
+     *
+     * @param newKeys     the new history
+     * @param keyParceler the key parceler
+     */
+    void record(@Nonnull List<?> newKeys, @Nonnull KeyParceler keyParceler) {
+        if(isDisabled) {
+            return;
+        }
+        try {
+            if(recordedKeys == null || deltasSinceSnapshot >= compactionThreshold) {
+                final byte[][] encodedKeys = encodeKeys(newKeys, 0, keyParceler);
+                write(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeSnapshot(encodedKeys);
+                    }
+                });
+                deltasSinceSnapshot = 0;
+            } else {
+                final int retainedCount = countRetainedKeys(newKeys);
+                final byte[][] encodedKeys = encodeKeys(newKeys, retainedCount, keyParceler);
+                write(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeDelta(retainedCount, encodedKeys);
+                    }
+                });
+                deltasSinceSnapshot++;
+            }
+            recordedKeys = new ArrayList<Object>(newKeys);
+        } catch(RuntimeException e) { // thrown by the codec or the key parceler
+            disable();
+        }
+    }
+
+    private int countRetainedKeys(List<?> newKeys) {
+        int retainedCount = 0;
+        for(int i = 0, size = Math.min(recordedKeys.size(), newKeys.size()); i < size; i++) {
+            if(!recordedKeys.get(i).equals(newKeys.get(i))) {
+                break;
+            }
+            retainedCount++;
+        }
+        return retainedCount;
+    }
+
+    private byte[][] encodeKeys(List<?> keys, int fromIndex, KeyParceler keyParceler) {
+        byte[][] encodedKeys = new byte[keys.size() - fromIndex][];
+        for(int i = fromIndex, size = keys.size(); i < size; i++) {
+            encodedKeys[i - fromIndex] = codec.encode(keyParceler.toParcelable(keys.get(i)));
+        }
+        return encodedKeys;
+    }
+
+    private void write(Runnable write) {
+        try {
+            writerExecutor.execute(write);
+        } catch(RejectedExecutionException e) {
+            isDisabled = true;
+            recordedKeys = null;
+            //noinspection ResultOfMethodCallIgnored
+            file.delete(); // best effort, as the writer no longer accepts the deletion
+        }
+    }
+
+    private void disable() {
+        isDisabled = true;
+        clear();
+    }
+
+    // called by the writer executor
+    private void writeSnapshot(byte[][] encodedKeys) {
+        if(isDisabled) {
+            return;
+        }
+        try {
+            closeQuietly();
+            File compactedFile = new File(file.getPath() + ".tmp");
+            DataOutputStream snapshotStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile)));
+            try {
+                snapshotStream.writeInt(MAGIC);
+                snapshotStream.writeInt(VERSION);
+                snapshotStream.writeByte(RECORD_SNAPSHOT);
+                writeKeys(snapshotStream, encodedKeys);
+            } finally {
+                snapshotStream.close();
+            }
+            if(!compactedFile.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                compactedFile.delete();
+                throw new IOException("Could not replace the journal with its compacted snapshot.");
+            }
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } catch(IOException e) {
+            onWriteFailed();
+        } catch(RuntimeException e) {
+            onWriteFailed();
+        }
+    }
+
+    // called by the writer executor
+    private void writeDelta(int retainedCount, byte[][] encodedKeys) {
+        if(isDisabled) {
+            return;
+        }
+        try {
+            if(outputStream == null) {
+                throw new IOException("The journal has no snapshot to append to.");
+            }
+            outputStream.writeByte(RECORD_DELTA);
+            outputStream.writeInt(retainedCount);
+            writeKeys(outputStream, encodedKeys);
+            outputStream.flush();
+        } catch(IOException e) {
+            onWriteFailed();
+        } catch(RuntimeException e) {
+            onWriteFailed();
+        }
+    }
+
+    private void writeKeys(DataOutputStream outputStream, byte[][] encodedKeys) throws IOException {
+        outputStream.writeInt(encodedKeys.length);
+        for(byte[] bytes : encodedKeys) {
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+        }
+    }
+
+    // called by the writer executor
+    private void onWriteFailed() {
+        isDisabled = true;
+        deleteFile();
+    }
+
+    // called by the writer executor
+    private void deleteFile() {
+        closeQuietly();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private void closeQuietly() {
+        if(outputStream != null) {
+            try {
+                outputStream.close();
+            } catch(IOException e) {
+                // ignored
+            }
+            outputStream = null;
+        }
+    }
+}
@@ -35,6 +35,7 @@ class PendingStateChange {
 
     private Status status = Status.ENQUEUED;
 
+    StateChange stateChange;
     StateChanger.Callback completionCallback;
     boolean didForceExecute = false;
 
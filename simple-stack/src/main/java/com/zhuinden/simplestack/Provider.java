@@ -0,0 +1,35 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Creates a service lazily, when it is first looked up.
+ *
+ * Can be registered with {@link ServiceBinder#addProvider(String, Provider)} or {@link GlobalServices.Builder#addProvider(String, Provider)}.
+ *
+ * @param <T> the type of the service
+ */
+public interface Provider<T> {
+    /**
+     * Creates the service. Called at most once per registration.
+     *
+     * @return the service
+     */
+    @Nonnull
+    T get();
+}
@@ -51,6 +51,10 @@ public class SavedState {
         this.viewHierarchyState = viewHierarchyState;
     }
 
+    void discardViewHierarchyState() {
+        this.viewHierarchyState = new SparseArray<>();
+    }
+
     @Nullable
     public StateBundle getBundle() {
         return bundle;
@@ -15,12 +15,18 @@
  */
 package com.zhuinden.simplestack;
 
+import android.os.Handler;
+import android.os.Looper;
+
 import com.zhuinden.statebundle.StateBundle;
 
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -29,6 +35,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -279,10 +288,13 @@ class ScopeManager {
         }
 
         public LinkedHashSet<String> findScopesForScopeTag(@Nonnull String scopeTag, boolean explicitOnly) {
+            return findScopesForScopeTag(new ArrayList<>(scopeRegistrations.keySet()), scopeTag, explicitOnly);
+        }
+
+        static LinkedHashSet<String> findScopesForScopeTag(@Nonnull List<ScopeRegistration> registrations, @Nonnull String scopeTag, boolean explicitOnly) {
             LinkedHashSet<String> scopeTags = new LinkedHashSet<>();
 
             int indexInRegistrations = -1;
-            List<ScopeRegistration> registrations = new ArrayList<>(scopeRegistrations.keySet());
             for(int i = registrations.size() - 1; i >= 0; i--) {
                 ScopeRegistration registration = registrations.get(i);
                 if(scopeTag.equals(registration.scopeTag)) {
@@ -401,9 +413,68 @@ class ScopeManager {
 
     private final LinkedHashSet<Object> trackedKeys = new LinkedHashSet<>();
 
+    private static class ScopeMembershipIndex {
+        private final Map<String, LinkedHashSet<Object>> keysByScopeTag = new HashMap<>();
+        private final Map<Object, Set<String>> scopeTagsByKey = new HashMap<>();
+
+        void addKeys(List<Object> keys) {
+            for(Object key : keys) {
+                if(scopeTagsByKey.containsKey(key)) {
+                    continue;
+                }
+                Set<String> scopeTags = new LinkedHashSet<>();
+                if(key instanceof ScopeKey.Child) {
+                    ScopeKey.Child child = (ScopeKey.Child) key;
+                    checkParentScopes(child);
+                    scopeTags.addAll(child.getParentScopes());
+                }
+                if(key instanceof ScopeKey) {
+                    scopeTags.add(((ScopeKey) key).getScopeTag());
+                }
+                if(scopeTags.isEmpty()) {
+                    continue;
+                }
+                scopeTagsByKey.put(key, scopeTags);
+                for(String scopeTag : scopeTags) {
+                    LinkedHashSet<Object> scopeKeys = keysByScopeTag.get(scopeTag);
+                    if(scopeKeys == null) {
+                        scopeKeys = new LinkedHashSet<>();
+                        keysByScopeTag.put(scopeTag, scopeKeys);
+                    }
+                    scopeKeys.add(key);
+                }
+            }
+        }
+
+        void setKeys(List<Object> keys) {
+            clear();
+            addKeys(keys); // rebuilt so that the keys of each scope follow the order of the history
+        }
+
+        void clear() {
+            keysByScopeTag.clear();
+            scopeTagsByKey.clear();
+        }
+
+        boolean isKeyInScope(Object key, String scopeTag) {
+            Set<String> scopeTags = scopeTagsByKey.get(key);
+            return scopeTags != null && scopeTags.contains(scopeTag);
+        }
+
+        @Nonnull
+        Set<Object> getKeysInScope(String scopeTag) {
+            LinkedHashSet<Object> scopeKeys = keysByScopeTag.get(scopeTag);
+            return scopeKeys == null ? Collections.emptySet() : scopeKeys;
+        }
+    }
+
+    private final ScopeMembershipIndex scopeMembershipIndex = new ScopeMembershipIndex();
+
     private final IdentityHashMap<Object, Set<String>> scopeEnteredServices = new IdentityHashMap<>();
     private final IdentityHashMap<Object, Set<String>> scopeActivatedServices = new IdentityHashMap<>();
 
+    private final Set<String> activeScopeTags = new HashSet<>();
+
     private final IdentityHashMap<Object, Integer> untrackEventInvocationTracker = new IdentityHashMap<>(); // call unregister/inactivated only once!
 
     private boolean isGlobalScopePendingActivation = true;
@@ -430,6 +501,8 @@ class ScopeManager {
     private GlobalServices globalServices = EMPTY_GLOBAL_SERVICES;
     private GlobalServices.Factory globalServiceFactory = null;
     private ScopedServices scopedServices = new AssertingScopedServices();
+    private Executor serviceExecutor = null;
+    private SerialExecutor serviceCallbackExecutor = null;
 
     ScopeManager() {
     }
@@ -450,6 +523,62 @@ class ScopeManager {
         this.scopedServices = scopedServices;
     }
 
+    void setServiceExecutor(Executor serviceExecutor) {
+        this.serviceExecutor = serviceExecutor;
+    }
+
+    void setServiceCallbackExecutor(@Nullable Executor serviceCallbackExecutor) {
+        this.serviceCallbackExecutor = serviceCallbackExecutor == null ? null : new SerialExecutor(serviceCallbackExecutor);
+    }
+
+    static class SerialExecutor
+        implements Executor {
+        private final Executor executor;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private Runnable activeTask;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(@Nonnull final Runnable runnable) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if(activeTask == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            activeTask = tasks.poll();
+            if(activeTask != null) {
+                try {
+                    executor.execute(activeTask);
+                } catch(RuntimeException e) { // for example, RejectedExecutionException
+                    activeTask = null; // the rejected task is dropped, the next call to execute() schedules the remaining tasks
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void dispatchServiceCallback(Object service, Runnable callback) {
+        if(serviceCallbackExecutor != null && service instanceof ScopedServices.BackgroundRegistered) {
+            serviceCallbackExecutor.execute(callback);
+        } else {
+            callback.run();
+        }
+    }
+
     void setGlobalServices(GlobalServices globalServices) {
         this.globalServices = globalServices;
     }
@@ -475,6 +604,7 @@ class ScopeManager {
             ScopeNode scope = globalServices.getScope();
             scopes.put(globalScopeRegistration,
                        new ScopeRegistrations.ScopeInternals(scope, new AheadOfTimeBackCallbackRegistry()));
+            modificationCount++;
 
             restoreAndNotifyServices(GLOBAL_SCOPE_TAG, scope);
         }
@@ -486,20 +616,23 @@ class ScopeManager {
             throw new IllegalArgumentException("Scope tag provided by scope key cannot be null!");
         }
         if(!scopes.containsKey(scopeTag)) {
-            ScopeRegistrations.ScopeInternals scopeInternals = new ScopeRegistrations.ScopeInternals(
+            ScopeRegistrations.ScopeInternals exitedScope = isDummyScope ? null : takeExitedScope(scopeTag);
+            ScopeRegistrations.ScopeInternals prewarmedScope = isDummyScope || exitedScope != null ? null : takePrewarmedScope(scopeTag);
+            ScopeRegistrations.ScopeInternals reusedScope = exitedScope != null ? exitedScope : prewarmedScope;
+            ScopeRegistrations.ScopeInternals scopeInternals = reusedScope != null ? reusedScope : new ScopeRegistrations.ScopeInternals(
                 new ScopeNode(),
                 new AheadOfTimeBackCallbackRegistry()
             );
             scopes.putKey(key, scopeTag, scopeInternals, isExplicitParent, false, isDummyScope);
+            modificationCount++;
 
             scopeInternals.aheadOfTimeBackCallbackRegistry.addEnabledChangedListener(innerEnabledChangedListener);
 
             if(!isDummyScope) {
-                scopedServices.bindServices(new ServiceBinder(this,
-                                                              key,
-                                                              scopeTag,
-                                                              scopeInternals.scopeNode,
-                                                              scopeInternals.aheadOfTimeBackCallbackRegistry));
+                if(reusedScope == null) {
+                    bindServices(key, scopeTag, scopeInternals);
+                    modificationCount++; // the services were added to the scope
+                }
 
                 for(Map.Entry<String, Object> entry : scopeInternals.scopeNode.services()) {
                     if(entry.getValue() == backstack) {
@@ -513,29 +646,290 @@ class ScopeManager {
         }
     }
 
-    private void restoreAndNotifyServices(String scopeTag, ScopeNode scope) {
+    private void bindServices(Object key, String scopeTag, ScopeRegistrations.ScopeInternals scopeInternals) {
+        ServiceBinder serviceBinder = new ServiceBinder(this,
+                                                        key,
+                                                        scopeTag,
+                                                        scopeInternals.scopeNode,
+                                                        scopeInternals.aheadOfTimeBackCallbackRegistry);
+        scopedServices.bindServices(serviceBinder);
+        serviceBinder.createServices(serviceExecutor); // joined before the state changer is called
+    }
+
+    // prewarming
+
+    private static class PrewarmedScope {
+        private final ScopeRegistrations.ScopeInternals scopeInternals;
+        private final long prewarmedAtNanos;
+
+        PrewarmedScope(ScopeRegistrations.ScopeInternals scopeInternals, long prewarmedAtNanos) {
+            this.scopeInternals = scopeInternals;
+            this.prewarmedAtNanos = prewarmedAtNanos;
+        }
+    }
+
+    private final Map<String, PrewarmedScope> prewarmedScopes = new LinkedHashMap<>();
+
+    private long prewarmTimeoutMillis = 5000L;
+
+    void setPrewarmTimeout(long prewarmTimeoutMillis) {
+        this.prewarmTimeoutMillis = prewarmTimeoutMillis;
+    }
+
+    void prewarmScopes(Object key) {
+        if(!isInitialized || isFinalized) {
+            return; // the global scope is not available to the services yet
+        }
+
+        discardExpiredPrewarmedScopes();
+
+        if(key instanceof ScopeKey.Child) {
+            ScopeKey.Child child = (ScopeKey.Child) key;
+            checkParentScopes(child);
+            for(String parent : child.getParentScopes()) {
+                prewarmScope(key, parent);
+            }
+        }
+        if(key instanceof ScopeKey) {
+            prewarmScope(key, ((ScopeKey) key).getScopeTag());
+        }
+        scheduleExpiry();
+    }
+
+    private void prewarmScope(Object key, String scopeTag) {
+        //noinspection ConstantConditions
+        if(scopeTag == null) {
+            throw new IllegalArgumentException("Scope tag provided by scope key cannot be null!");
+        }
+        if(scopes.containsKey(scopeTag) || prewarmedScopes.containsKey(scopeTag) || exitedScopes.containsKey(scopeTag)) {
+            return;
+        }
+
+        ScopeRegistrations.ScopeInternals scopeInternals = new ScopeRegistrations.ScopeInternals(
+            new ScopeNode(),
+            new AheadOfTimeBackCallbackRegistry()
+        );
+        bindServices(key, scopeTag, scopeInternals); // services are only registered when the scope is adopted
+        prewarmedScopes.put(scopeTag, new PrewarmedScope(scopeInternals, System.nanoTime()));
+    }
+
+    private boolean isPrewarmedScopeExpired(PrewarmedScope prewarmedScope) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - prewarmedScope.prewarmedAtNanos) >= prewarmTimeoutMillis;
+    }
+
+    private void discardExpiredPrewarmedScopes() {
+        Iterator<PrewarmedScope> iterator = prewarmedScopes.values().iterator();
+        while(iterator.hasNext()) {
+            if(isPrewarmedScopeExpired(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Nullable
+    private ScopeRegistrations.ScopeInternals takePrewarmedScope(String scopeTag) {
+        PrewarmedScope prewarmedScope = prewarmedScopes.remove(scopeTag);
+        if(prewarmedScope == null || isPrewarmedScopeExpired(prewarmedScope)) {
+            return null;
+        }
+        return prewarmedScope.scopeInternals;
+    }
+
+    boolean isScopePrewarmed(String scopeTag) {
+        return prewarmedScopes.containsKey(scopeTag);
+    }
+
+    void discardPrewarmedScopes() {
+        prewarmedScopes.clear(); // the services were never registered, so there is nothing to notify
+        scheduleExpiry();
+    }
+
+    // expiry
+
+    private Handler expiryHandler = null;
+
+    private final Runnable expiryCallback = new Runnable() {
+        @Override
+        public void run() {
+            discardExpiredPrewarmedScopes();
+            if(!exitedScopes.isEmpty()) {
+                evictExitedScopes();
+            }
+            scheduleExpiry();
+        }
+    };
+
+    private long getMillisUntilNextExpiry() {
+        long now = System.nanoTime();
+        long millisUntilNextExpiry = Long.MAX_VALUE;
+        for(PrewarmedScope prewarmedScope : prewarmedScopes.values()) {
+            millisUntilNextExpiry = Math.min(millisUntilNextExpiry, prewarmTimeoutMillis - TimeUnit.NANOSECONDS.toMillis(now - prewarmedScope.prewarmedAtNanos));
+        }
+        if(maxExitedScopeAgeMillis != Long.MAX_VALUE) {
+            for(ExitedScope exitedScope : exitedScopes.values()) {
+                millisUntilNextExpiry = Math.min(millisUntilNextExpiry, maxExitedScopeAgeMillis - TimeUnit.NANOSECONDS.toMillis(now - exitedScope.exitedAtNanos));
+            }
+        }
+        return millisUntilNextExpiry;
+    }
+
+    // expired scopes are discarded or evicted on the looper of the backstack's thread, or on the next navigation if the thread has no looper
+    private void scheduleExpiry() {
+        if(expiryHandler != null) {
+            expiryHandler.removeCallbacks(expiryCallback);
+        }
+        long millisUntilNextExpiry = getMillisUntilNextExpiry();
+        if(millisUntilNextExpiry == Long.MAX_VALUE || isFinalized) {
+            return;
+        }
+        if(expiryHandler == null) {
+            Looper looper = Looper.myLooper();
+            if(looper == null) {
+                return;
+            }
+            expiryHandler = new Handler(looper);
+        }
+        expiryHandler.postDelayed(expiryCallback, Math.max(millisUntilNextExpiry, 0L));
+    }
+
+    // exited scope cache
+
+    private static class ExitedScope {
+        private final ScopeRegistrations.ScopeInternals scopeInternals;
+        private final long exitedAtNanos;
+
+        ExitedScope(ScopeRegistrations.ScopeInternals scopeInternals, long exitedAtNanos) {
+            this.scopeInternals = scopeInternals;
+            this.exitedAtNanos = exitedAtNanos;
+        }
+    }
+
+    private final LinkedHashMap<String, ExitedScope> exitedScopes = new LinkedHashMap<>(); // least recently exited first
+
+    private int maxExitedScopes = 0;
+    private long maxExitedScopeAgeMillis = Long.MAX_VALUE;
+
+    void setExitedScopeCache(int maxExitedScopes, long maxExitedScopeAgeMillis) {
+        this.maxExitedScopes = maxExitedScopes;
+        this.maxExitedScopeAgeMillis = maxExitedScopeAgeMillis;
+    }
+
+    private void exitScope(String scopeTag) {
+        if(maxExitedScopes <= 0 || GLOBAL_SCOPE_TAG.equals(scopeTag) || !scopes.containsKey(scopeTag)) {
+            destroyScope(scopeTag);
+            return;
+        }
+
+        ScopeRegistrations.ScopeInternals scopeInternals = scopes.remove(scopeTag);
+        modificationCount++;
+        //noinspection ConstantConditions
+        scopeInternals.aheadOfTimeBackCallbackRegistry.removeEnabledChangedListener(innerEnabledChangedListener);
+
+        // the services stay registered until the scope is evicted
+        exitedScopes.put(scopeTag, new ExitedScope(scopeInternals, System.nanoTime()));
+    }
+
+    private boolean isExitedScopeExpired(ExitedScope exitedScope) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - exitedScope.exitedAtNanos) >= maxExitedScopeAgeMillis;
+    }
+
+    private void evictExitedScopes() {
+        List<String> evictedScopeTags = new ArrayList<>();
+        int remaining = exitedScopes.size();
+        for(Map.Entry<String, ExitedScope> entry : exitedScopes.entrySet()) {
+            if(remaining > maxExitedScopes || isExitedScopeExpired(entry.getValue())) {
+                evictedScopeTags.add(entry.getKey());
+                remaining--;
+            }
+        }
+        Collections.reverse(evictedScopeTags);
+        for(String scopeTag : evictedScopeTags) {
+            evictExitedScope(scopeTag);
+        }
+    }
+
+    private void evictExitedScope(String scopeTag) {
+        ExitedScope exitedScope = exitedScopes.remove(scopeTag);
+        if(exitedScope != null) {
+            destroyServicesAndRemoveState(scopeTag, exitedScope.scopeInternals.scopeNode);
+        }
+    }
+
+    void evictAllExitedScopes() {
+        List<String> scopeTags = new ArrayList<>(exitedScopes.keySet());
+        Collections.reverse(scopeTags);
+        for(String scopeTag : scopeTags) {
+            evictExitedScope(scopeTag);
+        }
+        scheduleExpiry();
+    }
+
+    @Nullable
+    private ScopeRegistrations.ScopeInternals takeExitedScope(String scopeTag) {
+        ExitedScope exitedScope = exitedScopes.get(scopeTag);
+        if(exitedScope == null) {
+            return null;
+        }
+        if(isExitedScopeExpired(exitedScope)) {
+            evictExitedScope(scopeTag);
+            return null;
+        }
+        exitedScopes.remove(scopeTag);
+        return exitedScope.scopeInternals;
+    }
+
+    boolean isScopeExited(String scopeTag) {
+        return exitedScopes.containsKey(scopeTag);
+    }
+
+    private void restoreAndNotifyServices(final String scopeTag, ScopeNode scope) {
         for(Map.Entry<String, Object> serviceEntry : scope.services()) {
-            String serviceTag = serviceEntry.getKey();
-            Object service = serviceEntry.getValue();
+            restoreAndNotifyService(scopeTag, serviceEntry.getKey(), serviceEntry.getValue());
+        }
 
-            if(isServiceNotRegistered(service)) {
-                if(rootBundle.containsKey(scopeTag)) {
-                    if(service instanceof Bundleable) {
-                        StateBundle scopeBundle = rootBundle.getBundle(scopeTag);
-                        if(scopeBundle != null && scopeBundle.containsKey(serviceTag)) {
-                            ((Bundleable) service).fromBundle(scopeBundle.getBundle(serviceTag));
-                        }
-                    }
+        scope.setMaterializationListener(new ScopeNode.MaterializationListener() {
+            @Override
+            public void onServiceMaterialized(@Nonnull String serviceTag, @Nonnull Object service) {
+                if(service == backstack) {
+                    throw new IllegalArgumentException(
+                        "The root backstack should not be added as a service, as it would cause a circular save-state loop. Adding it as an alias would work, but should typically not be necessary because of `serviceBinder.getBackstack()`.");
                 }
 
-                if(service instanceof ScopedServices.Registered) {
-                    ((ScopedServices.Registered) service).onServiceRegistered();
+                restoreAndNotifyService(scopeTag, serviceTag, service);
+
+                if(activeScopeTags.contains(scopeTag)) {
+                    notifyServiceActivation(scopeTag, service);
                 }
+
+                backstack.onServiceMaterialized();
             }
+        });
+    }
 
-            if(isServiceNotTrackedInScope(scopeEnteredServices, service, scopeTag)) {
-                trackServiceInScope(scopeEnteredServices, service, scopeTag);
+    private void restoreAndNotifyService(String scopeTag, String serviceTag, Object service) {
+        if(isServiceNotRegistered(service)) {
+            if(rootBundle.containsKey(scopeTag)) {
+                if(service instanceof Bundleable) {
+                    StateBundle scopeBundle = rootBundle.getBundle(scopeTag);
+                    if(scopeBundle != null && scopeBundle.containsKey(serviceTag)) {
+                        ((Bundleable) service).fromBundle(scopeBundle.getBundle(serviceTag));
+                    }
+                }
             }
+
+            if(service instanceof ScopedServices.Registered) {
+                final ScopedServices.Registered registered = (ScopedServices.Registered) service;
+                dispatchServiceCallback(service, new Runnable() {
+                    @Override
+                    public void run() {
+                        registered.onServiceRegistered();
+                    }
+                });
+            }
+        }
+
+        if(isServiceNotTrackedInScope(scopeEnteredServices, service, scopeTag)) {
+            trackServiceInScope(scopeEnteredServices, service, scopeTag);
         }
     }
 
@@ -663,13 +1057,25 @@ class ScopeManager {
         return isFinalized;
     }
 
+    private int modificationCount = 0; // incremented after each change to the scopes, so that lookups made by service callbacks see the change
+
+    int getModificationCount() {
+        return modificationCount;
+    }
+
     void finalizeScopes() {
         this.isFinalized = true;
+        modificationCount++; // the global services are no longer found
+
+        discardPrewarmedScopes();
+        evictAllExitedScopes();
+        scopeMembershipIndex.clear();
 
         // this logic is actually mostly inside Backstack for some reason
         destroyScope(GLOBAL_SCOPE_TAG);
 
         this.isInitialized = false;
+        modificationCount++;
     }
 
     private IdentityHashMap<Object, String> dummyScopeTags = new IdentityHashMap<>();
@@ -684,8 +1090,10 @@ class ScopeManager {
             buildGlobalScope();
         }
         isInitialized = true;
+        modificationCount++;
 
         trackedKeys.addAll(newKeys);
+        scopeMembershipIndex.addKeys(newKeys);
 
         for(Object key : newKeys) {
             if(key instanceof ScopeKey.Child) {
@@ -734,11 +1142,17 @@ class ScopeManager {
         Collections.reverse(activeScopes);
         for(String activeScope : activeScopes) {
             if(!currentScopes.contains(activeScope)) {
-                destroyScope(activeScope);
+                exitScope(activeScope);
             }
         }
 
+        if(!exitedScopes.isEmpty()) {
+            evictExitedScopes();
+            scheduleExpiry();
+        }
+
         CollectionHelper.retainAll(trackedKeys, newKeys); // see #256
+        scopeMembershipIndex.setKeys(newKeys);
         CollectionHelper.retainAll(dummyScopeTags.keySet(), newKeys); // see #256
 
         for(String currentScope : currentScopes) {
@@ -746,11 +1160,13 @@ class ScopeManager {
                 scopes.reorderToEnd(currentScope);
             }
         }
+        modificationCount++; // the lookup order of the scopes has changed
     }
 
     void destroyScope(String scopeTag) {
         if(scopes.containsKey(scopeTag)) {
             ScopeRegistrations.ScopeInternals scopeInternals = scopes.remove(scopeTag);
+            modificationCount++;
             // noinspection ConstantConditions
             destroyServicesAndRemoveState(scopeTag, scopeInternals.scopeNode);
 
@@ -759,6 +1175,9 @@ class ScopeManager {
     }
 
     private void destroyServicesAndRemoveState(String scopeTag, ScopeNode scopeNode) {
+        scopeNode.setMaterializationListener(null);
+        activeScopeTags.remove(scopeTag);
+
         Set<Map.Entry<String, Object>> services = scopeNode.services();
         List<Object> previousServices = new ArrayList<>(services.size());
         for(Map.Entry<String, Object> entry : services) {
@@ -776,7 +1195,13 @@ class ScopeManager {
             if(isServiceNotRegistered(service)) {
                 if(service instanceof ScopedServices.Registered && !untrackEventInvocationTracker.containsKey(service)) {
                     untrackEventInvocationTracker.put(service, 1);
-                    ((ScopedServices.Registered) service).onServiceUnregistered();
+                    final ScopedServices.Registered registered = (ScopedServices.Registered) service;
+                    dispatchServiceCallback(service, new Runnable() {
+                        @Override
+                        public void run() {
+                            registered.onServiceUnregistered();
+                        }
+                    });
                 }
             }
         }
@@ -817,20 +1242,32 @@ class ScopeManager {
     }
 
     private void notifyScopeActivation(@Nonnull String newScopeTag, @Nonnull ScopeNode newScope) {
+        activeScopeTags.add(newScopeTag);
+
         for(Map.Entry<String, Object> entry : newScope.services()) {
-            Object service = entry.getValue();
+            notifyServiceActivation(newScopeTag, entry.getValue());
+        }
+    }
 
-            if(isServiceNotActivated(service) && service instanceof ScopedServices.Activated) {
-                ((ScopedServices.Activated) service).onServiceActive();
-            }
+    private void notifyServiceActivation(@Nonnull String newScopeTag, @Nonnull Object service) {
+        if(isServiceNotActivated(service) && service instanceof ScopedServices.Activated) {
+            final ScopedServices.Activated activated = (ScopedServices.Activated) service;
+            dispatchServiceCallback(service, new Runnable() {
+                @Override
+                public void run() {
+                    activated.onServiceActive();
+                }
+            });
+        }
 
-            if(isServiceNotTrackedInScope(scopeActivatedServices, service, newScopeTag)) {
-                trackServiceInScope(scopeActivatedServices, service, newScopeTag);
-            }
+        if(isServiceNotTrackedInScope(scopeActivatedServices, service, newScopeTag)) {
+            trackServiceInScope(scopeActivatedServices, service, newScopeTag);
         }
     }
 
     private void notifyScopeDeactivation(String previousScopeTag, ScopeNode previousScope) {
+        activeScopeTags.remove(previousScopeTag);
+
         Set<Map.Entry<String, Object>> services = previousScope.services();
         List<Object> previousServices = new ArrayList<>(services.size());
         for(Map.Entry<String, Object> entry : services) {
@@ -850,13 +1287,34 @@ class ScopeManager {
                 && !untrackEventInvocationTracker.containsKey(service)
             ) {
                 untrackEventInvocationTracker.put(service, 1);
-                ((ScopedServices.Activated) service).onServiceInactive();
+                final ScopedServices.Activated activated = (ScopedServices.Activated) service;
+                dispatchServiceCallback(service, new Runnable() {
+                    @Override
+                    public void run() {
+                        activated.onServiceInactive();
+                    }
+                });
             }
         }
 
         untrackEventInvocationTracker.clear(); // #213
     }
 
+    void dispatchTrimMemory(int level) {
+        IdentityHashMap<Object, Boolean> trimmedServices = new IdentityHashMap<>();
+        for(Map.Entry<String, ScopeRegistrations.ScopeInternals> scopeSet : scopes.entrySet()) {
+            for(Map.Entry<String, Object> serviceEntry : scopeSet.getValue().scopeNode.services()) {
+                Object service = serviceEntry.getValue();
+                if(service instanceof ScopedServices.Trimmable
+                    && isServiceNotActivated(service)
+                    && !trimmedServices.containsKey(service)) {
+                    trimmedServices.put(service, true);
+                    ((ScopedServices.Trimmable) service).onTrimMemory(level);
+                }
+            }
+        }
+    }
+
     StateBundle saveStates() {
         StateBundle rootBundle = new StateBundle();
         for(Map.Entry<String, ScopeRegistrations.ScopeInternals> scopeSet : scopes.entrySet()) {
@@ -872,6 +1330,15 @@ class ScopeManager {
                     scopeBundle.putBundle(serviceTag, ((Bundleable) service).toBundle());
                 }
             }
+
+            StateBundle restoredScopeBundle = this.rootBundle.getBundle(scopeKey);
+            if(restoredScopeBundle != null) {
+                for(String pendingServiceTag : services.getPendingServiceTags()) { // not created yet, so keep the restored state
+                    if(restoredScopeBundle.containsKey(pendingServiceTag)) {
+                        scopeBundle.putBundle(pendingServiceTag, restoredScopeBundle.getBundle(pendingServiceTag));
+                    }
+                }
+            }
             rootBundle.putBundle(scopeKey, scopeBundle);
         }
         return rootBundle;
@@ -977,6 +1444,17 @@ class ScopeManager {
         return activeScopes.contains(scopeTag);
     }
 
+    boolean isKeyInScope(Object key, String scopeTag) {
+        checkScopeTag(scopeTag);
+        return scopeMembershipIndex.isKeyInScope(key, scopeTag);
+    }
+
+    @Nonnull
+    Set<Object> getKeysInScope(String scopeTag) {
+        checkScopeTag(scopeTag);
+        return scopeMembershipIndex.getKeysInScope(scopeTag);
+    }
+
     boolean canFindFromScopeExplicit(String scopeTag, String identifier) {
         if(!isInitialized) {
             return false;
@@ -1086,6 +1564,51 @@ class ScopeManager {
         return false;
     }
 
+    @Nullable
+    Object findService(@Nonnull String identifier) {
+        checkServiceTag(identifier);
+
+        if(!isInitialized) {
+            return null;
+        }
+
+        for(String scope : scopes.getScopeTagsInTraversalOrder()) {
+            ScopeRegistrations.ScopeInternals scopeInternals = scopes.get(scope);
+            if(scopeInternals != null && scopeInternals.scopeNode.hasService(identifier)) {
+                return scopeInternals.scopeNode.getService(identifier);
+            }
+        }
+
+        if(!isFinalized && globalServices.hasService(identifier)) {
+            return globalServices.getService(identifier);
+        }
+
+        return null;
+    }
+
+    @Nullable
+    Object findServiceFromScope(@Nonnull String scopeTag, @Nonnull String identifier) {
+        checkScopeTag(scopeTag);
+        checkServiceTag(identifier);
+
+        if(!isInitialized) {
+            return null;
+        }
+
+        for(String scope : scopes.findScopesForScopeTag(scopeTag, false)) {
+            ScopeRegistrations.ScopeInternals scopeInternals = scopes.get(scope);
+            if(scopeInternals != null && scopeInternals.scopeNode.hasService(identifier)) {
+                return scopeInternals.scopeNode.getService(identifier);
+            }
+        }
+
+        if(!isFinalized && globalServices.hasService(identifier)) {
+            return globalServices.getService(identifier);
+        }
+
+        return null;
+    }
+
     @Nonnull
     <T> T lookupService(@Nonnull String identifier) {
         checkServiceTag(identifier);
@@ -1108,6 +1631,48 @@ class ScopeManager {
         throw new IllegalStateException(createErrorMessageForScopeLookup(identifier, activeScopes));
     }
 
+    @Nonnull
+    ServiceSnapshot createServiceSnapshot(@Nullable Backstack parentServices, @Nullable String parentScopeTag) {
+        if(!isInitialized) {
+            return ServiceSnapshot.empty(parentServices, parentScopeTag);
+        }
+
+        // only the registrations are copied here, the merged services and the scope chains are computed by the snapshot when first read
+        Map<String, Map<String, Object>> scopedServices = new HashMap<>(scopes.scopeRegistrations.size());
+        for(Map.Entry<ScopeRegistration, ScopeRegistrations.ScopeInternals> entry : scopes.scopeRegistrations.entrySet()) {
+            if(!entry.getKey().isDummyScope) {
+                scopedServices.put(entry.getKey().scopeTag, entry.getValue().scopeNode.getSnapshotServices());
+            }
+        }
+
+        return new ServiceSnapshot(scopes.getScopeTagsInTraversalOrder(),
+                                   scopedServices,
+                                   new SnapshotScopeChains(new ArrayList<>(scopes.scopeRegistrations.keySet())),
+                                   parentServices,
+                                   parentScopeTag);
+    }
+
+    private static class SnapshotScopeChains
+            implements ServiceSnapshot.ScopeChains {
+        private final List<ScopeRegistration> registrations; // registrations are not modified once created
+        private final Map<String, List<String>> scopeChains = new ConcurrentHashMap<>();
+
+        SnapshotScopeChains(List<ScopeRegistration> registrations) {
+            this.registrations = registrations;
+        }
+
+        @Nonnull
+        @Override
+        public List<String> get(@Nonnull String scopeTag) {
+            List<String> scopeChain = scopeChains.get(scopeTag);
+            if(scopeChain == null) {
+                scopeChain = Collections.unmodifiableList(new ArrayList<>(ScopeRegistrations.findScopesForScopeTag(registrations, scopeTag, false)));
+                scopeChains.put(scopeTag, scopeChain);
+            }
+            return scopeChain;
+        }
+    }
+
     String createErrorMessageForScopeLookup(String serviceTag, List<String> activeScopes) {
         List<String> as = activeScopes == null ? scopes.getScopeTagsInTraversalOrder() : activeScopes;
 
@@ -16,16 +16,41 @@
 package com.zhuinden.simplestack;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
 
 class ScopeNode {
+    interface MaterializationListener {
+        void onServiceMaterialized(@Nonnull String serviceTag, @Nonnull Object service);
+    }
+
+    // kept in the service map in place of the service, so that the registration order is preserved
+    private static final class PendingService {
+        private final Provider<?> provider;
+
+        private boolean isMaterializing = false;
+
+        PendingService(Provider<?> provider) {
+            this.provider = provider;
+        }
+    }
+
     private final Map<String, Object> services = new LinkedHashMap<>();
     private final Map<String, Object> aliases = new LinkedHashMap<>();
 
+    private final Set<Map.Entry<String, Object>> servicesView = Collections.unmodifiableSet(services.entrySet());
+    private Set<Map.Entry<String, Object>> materializedServicesView = null; // cleared when the services change
+    private Map<String, Object> snapshotServices = null; // cleared when the services or aliases change
+
+    private int pendingServiceCount = 0;
+
+    private MaterializationListener materializationListener;
+
     ScopeNode() {
     }
 
@@ -34,8 +59,19 @@ class ScopeNode {
         if(services == null) {
             throw new IllegalArgumentException("services cannot be null!");
         }
-        this.services.putAll(services.services);
+        for(Map.Entry<String, Object> entry : services.services.entrySet()) {
+            Object service = entry.getValue();
+            if(service instanceof PendingService) {
+                service = new PendingService(((PendingService) service).provider); // each copy creates its own instance
+            }
+            this.services.put(entry.getKey(), service);
+        }
         this.aliases.putAll(services.aliases);
+        this.pendingServiceCount = services.pendingServiceCount;
+    }
+
+    void setMaterializationListener(MaterializationListener materializationListener) {
+        this.materializationListener = materializationListener;
     }
 
     public boolean isEmpty() {
@@ -46,7 +82,45 @@ class ScopeNode {
         checkServiceTag(serviceTag);
         checkService(service);
 
-        this.services.put(serviceTag, service);
+        Object previous = this.services.put(serviceTag, service);
+        if(previous instanceof PendingService) {
+            pendingServiceCount--;
+        }
+        materializedServicesView = null;
+        snapshotServices = null;
+    }
+
+    public void addProvider(@Nonnull String serviceTag, @Nonnull Provider<?> provider) {
+        checkServiceTag(serviceTag);
+        //noinspection ConstantConditions
+        if(provider == null) {
+            throw new IllegalArgumentException("provider cannot be null!");
+        }
+
+        Object previous = this.services.put(serviceTag, new PendingService(provider));
+        if(!(previous instanceof PendingService)) {
+            pendingServiceCount++;
+        }
+        materializedServicesView = null;
+        snapshotServices = null;
+    }
+
+    public boolean hasPendingProvider(@Nonnull String serviceTag, @Nonnull Provider<?> provider) {
+        Object service = services.get(serviceTag);
+        return service instanceof PendingService && ((PendingService) service).provider == provider;
+    }
+
+    public Set<String> getPendingServiceTags() {
+        if(pendingServiceCount == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> pendingServiceTags = new LinkedHashSet<>();
+        for(Map.Entry<String, Object> entry : services.entrySet()) {
+            if(entry.getValue() instanceof PendingService) {
+                pendingServiceTags.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(pendingServiceTags);
     }
 
     public boolean hasService(@Nonnull String serviceTag) {
@@ -69,17 +143,51 @@ class ScopeNode {
         checkService(service);
 
         this.aliases.put(alias, service);
+        snapshotServices = null;
     }
 
+    /**
+     * Returns the services that were already created. Services registered with a {@link Provider} are only included once they're looked up.
+     */
     public Set<Map.Entry<String, Object>> services() {
-        return Collections.unmodifiableSet(services.entrySet());
+        if(pendingServiceCount == 0) {
+            return servicesView;
+        }
+        if(materializedServicesView == null) {
+            Map<String, Object> materializedServices = new LinkedHashMap<>();
+            for(Map.Entry<String, Object> entry : services.entrySet()) {
+                if(!(entry.getValue() instanceof PendingService)) {
+                    materializedServices.put(entry.getKey(), entry.getValue());
+                }
+            }
+            materializedServicesView = Collections.unmodifiableSet(materializedServices.entrySet());
+        }
+        return materializedServicesView;
+    }
+
+    /**
+     * Returns an immutable copy of the services and aliases for a {@link ServiceSnapshot}. Services that were not created yet are mapped to {@link ServiceSnapshot#NOT_CREATED}.
+     */
+    Map<String, Object> getSnapshotServices() {
+        if(snapshotServices == null) {
+            Map<String, Object> services = new HashMap<>(aliases);
+            for(Map.Entry<String, Object> entry : this.services.entrySet()) { // services shadow aliases, like in getService()
+                services.put(entry.getKey(), entry.getValue() instanceof PendingService ? ServiceSnapshot.NOT_CREATED : entry.getValue());
+            }
+            snapshotServices = Collections.unmodifiableMap(services);
+        }
+        return snapshotServices;
     }
 
     public <T> T getService(@Nonnull String serviceTag) {
         checkServiceTag(serviceTag);
         if(services.containsKey(serviceTag)) {
+            Object service = services.get(serviceTag);
+            if(service instanceof PendingService) {
+                service = materialize(serviceTag, (PendingService) service);
+            }
             //noinspection unchecked
-            return (T) services.get(serviceTag);
+            return (T) service;
         }
 
         checkAlias(serviceTag);
@@ -90,6 +198,39 @@ class ScopeNode {
         throw new IllegalArgumentException("Scope does not contain [" + serviceTag + "]");
     }
 
+    private Object materialize(String serviceTag, PendingService pendingService) {
+        if(pendingService.isMaterializing) {
+            throw new IllegalStateException("The provider of service [" + serviceTag + "] attempted to look up the service it is creating!");
+        }
+
+        Object service;
+        pendingService.isMaterializing = true;
+        try {
+            service = pendingService.provider.get();
+        } finally {
+            pendingService.isMaterializing = false;
+        }
+
+        //noinspection ConstantConditions
+        if(service == null) {
+            throw new IllegalStateException("The provider of service [" + serviceTag + "] returned null!");
+        }
+
+        if(services.get(serviceTag) != pendingService) {
+            return service; // the registration was replaced while the service was being created
+        }
+
+        services.put(serviceTag, service);
+        pendingServiceCount--;
+        materializedServicesView = null;
+        snapshotServices = null;
+
+        if(materializationListener != null) {
+            materializationListener.onServiceMaterialized(serviceTag, service);
+        }
+        return service;
+    }
+
     private static void checkServiceTag(@Nonnull String serviceTag) {
         //noinspection ConstantConditions
         if(serviceTag == null) {
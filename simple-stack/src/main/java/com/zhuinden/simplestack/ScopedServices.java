@@ -61,6 +61,20 @@ public interface ScopedServices {
         void onServiceUnregistered();
     }
 
+    /**
+     * When a service implements {@link BackgroundRegistered}, then its {@link Registered} and {@link Activated} callbacks are delivered on the executor
+     * set with {@link Backstack#setServiceCallbackExecutor(java.util.concurrent.Executor)}, instead of during the state change.
+     * <p>
+     * The callbacks of these services are executed one at a time, in the order they were dispatched, so unregistration always happens after a pending
+     * registration has finished. If no executor is set, the callbacks are delivered synchronously.
+     * <p>
+     * The callbacks can run at the same time as the rest of the app on the thread of the backstack. {@link Bundleable#toBundle()} and
+     * {@link HandlesBack#onBackEvent()} can be called on that thread while {@link Registered#onServiceRegistered()} is still running,
+     * so the state they share with the callbacks must be synchronized by the service.
+     */
+    public static interface BackgroundRegistered {
+    }
+
     /**
      * When a service implements {@link HandlesBack}, then it will receive a callback when back is being dispatched across the active scope chain.
      * <p>
@@ -77,6 +91,20 @@ public interface ScopedServices {
         boolean onBackEvent();
     }
 
+    /**
+     * When a service implements {@link Trimmable}, then it will receive a callback when {@link Backstack#onTrimMemory(int)} is called while the service is not active.
+     * <p>
+     * The service is expected to release data that it can re-create later (for example, from its {@link Bundleable} state) when its scope becomes active again.
+     */
+    public static interface Trimmable {
+        /**
+         * Called when memory should be trimmed, and the service is not in the active scope chain.
+         *
+         * @param level the trim level, as received in {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+         */
+        void onTrimMemory(int level);
+    }
+
     /**
      * Used to configure the services that belong to given scopes.
      *
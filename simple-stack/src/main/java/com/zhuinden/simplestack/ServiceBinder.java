@@ -15,7 +15,16 @@
  */
 package com.zhuinden.simplestack;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * The {@link ServiceBinder} allows binding services to a given scope, when that scope is created for the first time.
@@ -23,6 +32,85 @@ import javax.annotation.Nonnull;
  * Please note that the service binder is only called when the scope is created, but not called if the scope already exists.
  */
 public class ServiceBinder {
+    /**
+     * Creates a service from the services it depends on.
+     * <p>
+     * If an executor is set with {@link Backstack#setServiceExecutor(Executor)}, then this is called on that executor, so it must not access the backstack.
+     *
+     * @param <T> the type of the service
+     */
+    public interface ServiceFactory<T> {
+        /**
+         * Creates the service.
+         *
+         * @param dependencies the services that were declared as dependencies
+         * @return the service
+         */
+        @Nonnull
+        T create(@Nonnull Dependencies dependencies);
+    }
+
+    /**
+     * The services that a {@link ServiceFactory} declared as its dependencies.
+     */
+    public static final class Dependencies {
+        private final Map<String, Object> services;
+
+        Dependencies(Map<String, Object> services) {
+            this.services = services;
+        }
+
+        /**
+         * Returns the dependency with the given service tag. Throws if it was not declared as a dependency.
+         *
+         * @param serviceTag the service tag
+         * @param <T>        the type of the service
+         * @return the service
+         */
+        @Nonnull
+        public <T> T get(@Nonnull String serviceTag) {
+            if(!services.containsKey(serviceTag)) {
+                throw new IllegalArgumentException("The service [" + serviceTag + "] was not declared as a dependency!");
+            }
+            //noinspection unchecked
+            return (T) services.get(serviceTag);
+        }
+    }
+
+    private final class ServiceFactoryRegistration
+            implements Provider<Object> {
+        private final String serviceTag;
+        private final List<String> dependencies;
+        private final ServiceFactory<?> serviceFactory;
+
+        ServiceFactoryRegistration(String serviceTag, List<String> dependencies, ServiceFactory<?> serviceFactory) {
+            this.serviceTag = serviceTag;
+            this.dependencies = dependencies;
+            this.serviceFactory = serviceFactory;
+        }
+
+        @Nonnull
+        @Override
+        public Object get() { // the service was looked up before the scope finished building
+            Map<String, Object> services = new HashMap<>();
+            for(String dependency : dependencies) {
+                services.put(dependency, scope.getService(dependency));
+            }
+            return create(services);
+        }
+
+        Object create(Map<String, Object> services) {
+            Object service = serviceFactory.create(new Dependencies(Collections.unmodifiableMap(services)));
+            //noinspection ConstantConditions
+            if(service == null) {
+                throw new IllegalStateException("The service factory of [" + serviceTag + "] returned null!");
+            }
+            return service;
+        }
+    }
+
+    private final List<ServiceFactoryRegistration> serviceFactoryRegistrations = new ArrayList<>();
+
     private final ScopeManager scopeManager;
 
     private final Backstack backstack;
@@ -89,6 +177,44 @@ public class ServiceBinder {
         scope.addService(serviceTag, service);
     }
 
+    /**
+     * Adds a service to the scope that is created by the provider when it is first looked up.
+     *
+     * The restored state, {@link ScopedServices.Registered} and {@link ScopedServices.Activated} callbacks are applied to the service when it is created.
+     *
+     * @param serviceTag the tag of the service
+     * @param provider   the provider that creates the service
+     */
+    public void addProvider(@Nonnull String serviceTag, @Nonnull Provider<?> provider) {
+        scope.addProvider(serviceTag, provider);
+    }
+
+    /**
+     * Adds a service to the scope that is created by the factory from the services it depends on.
+     * <p>
+     * The dependencies must be services of this scope. Each service is created on the executor set with {@link Backstack#setServiceExecutor(Executor)}
+     * as soon as its dependencies are created, and all of them are created before the scope is used.
+     * <p>
+     * The services are registered in the order they were added, regardless of the order they were created in.
+     *
+     * @param serviceTag     the tag of the service
+     * @param dependencies   the tags of the services that the service depends on
+     * @param serviceFactory the factory that creates the service
+     */
+    public void addServiceFactory(@Nonnull String serviceTag, @Nonnull List<String> dependencies, @Nonnull ServiceFactory<?> serviceFactory) {
+        //noinspection ConstantConditions
+        if(dependencies == null) {
+            throw new IllegalArgumentException("dependencies cannot be null!");
+        }
+        //noinspection ConstantConditions
+        if(serviceFactory == null) {
+            throw new IllegalArgumentException("serviceFactory cannot be null!");
+        }
+        ServiceFactoryRegistration registration = new ServiceFactoryRegistration(serviceTag, new ArrayList<>(dependencies), serviceFactory);
+        scope.addProvider(serviceTag, registration);
+        serviceFactoryRegistrations.add(registration);
+    }
+
     /**
      * Returns whether the service with given service tag is in the local scope.
      *
@@ -178,4 +304,67 @@ public class ServiceBinder {
     public Backstack getBackstack() {
         return backstack;
     }
+
+    void createServices(@Nullable Executor executor) {
+        List<ServiceFactoryRegistration> registrations = new ArrayList<>();
+        for(ServiceFactoryRegistration registration : serviceFactoryRegistrations) {
+            if(scope.hasPendingProvider(registration.serviceTag, registration)) { // not created or replaced yet
+                registrations.add(registration);
+            }
+        }
+        serviceFactoryRegistrations.clear();
+
+        if(registrations.isEmpty()) {
+            return;
+        }
+
+        ServiceFactoryGraph graph = new ServiceFactoryGraph();
+        for(ServiceFactoryRegistration registration : registrations) {
+            graph.addNode(registration.serviceTag, registration.dependencies, registration.serviceFactory);
+        }
+        for(ServiceFactoryGraph.Node node : graph.getNodes()) {
+            for(String dependency : node.dependencies) {
+                if(!graph.hasNode(dependency)) {
+                    if(!scope.hasService(dependency)) {
+                        throw new IllegalArgumentException("The service [" + node.serviceTag + "] depends on [" + dependency + "], but it is not bound in scope [" + scopeTag + "]!");
+                    }
+                    node.addServiceDependency(dependency, scope.getService(dependency));
+                }
+            }
+        }
+
+        List<ServiceFactoryGraph.Node> orderedNodes = graph.linkAndOrderByDependencies("in scope [" + scopeTag + "]");
+        graph.start(executor);
+        if(executor == null) {
+            for(ServiceFactoryGraph.Node node : orderedNodes) {
+                node.run();
+            }
+        }
+
+        Map<String, Object> createdServices = new HashMap<>();
+        Throwable failure = null;
+        for(ServiceFactoryGraph.Node node : orderedNodes) { // dependencies come first, so the first failure is the original one
+            try {
+                createdServices.put(node.serviceTag, node.getUninterruptibly());
+            } catch(ExecutionException e) {
+                if(failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if(failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if(failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if(failure != null) {
+            throw new IllegalStateException("Services of scope [" + scopeTag + "] could not be created!", failure);
+        }
+
+        for(ServiceFactoryRegistration registration : registrations) {
+            scope.addService(registration.serviceTag, createdServices.get(registration.serviceTag)); // keeps the original registration order
+        }
+    }
 }
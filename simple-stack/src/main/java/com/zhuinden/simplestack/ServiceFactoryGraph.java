@@ -0,0 +1,241 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Creates the services added with a {@link ServiceBinder.ServiceFactory}, each one as soon as the services it depends on are created.
+ * <p>
+ * Used by both the {@link ServiceBinder} and the {@link GlobalServices.Builder}.
+ */
+final class ServiceFactoryGraph {
+    static final class Node
+            implements Callable<Object>, Provider<Object> {
+        final String serviceTag;
+        final List<String> dependencies;
+        private final ServiceBinder.ServiceFactory<?> serviceFactory;
+
+        private final Map<String, Object> serviceDependencies = new HashMap<>(); // only read while the nodes run
+        private final Map<String, Node> nodeDependencies = new HashMap<>();
+        private final List<Node> dependents = new ArrayList<>();
+        private final AtomicInteger pendingDependencyCount = new AtomicInteger();
+
+        private Executor executor;
+
+        private final FutureTask<Object> futureTask = new FutureTask<Object>(this) {
+            @Override
+            protected void done() {
+                for(Node dependent : dependents) {
+                    if(dependent.pendingDependencyCount.decrementAndGet() == 0) {
+                        dependent.submit();
+                    }
+                }
+            }
+        };
+
+        Node(String serviceTag, List<String> dependencies, ServiceBinder.ServiceFactory<?> serviceFactory) {
+            this.serviceTag = serviceTag;
+            this.dependencies = dependencies;
+            this.serviceFactory = serviceFactory;
+        }
+
+        void addServiceDependency(String dependency, Object service) {
+            serviceDependencies.put(dependency, service);
+        }
+
+        private void submit() {
+            if(executor == null) {
+                return; // created on the current thread
+            }
+            try {
+                executor.execute(futureTask);
+            } catch(RejectedExecutionException e) {
+                futureTask.run(); // otherwise, it would never be created
+            }
+        }
+
+        @Override
+        public Object call() {
+            Map<String, Object> services = new LinkedHashMap<>();
+            for(String dependency : dependencies) {
+                Node node = nodeDependencies.get(dependency);
+                services.put(dependency, node != null ? node.await() : serviceDependencies.get(dependency));
+            }
+            Object service = serviceFactory.create(new ServiceBinder.Dependencies(Collections.unmodifiableMap(services)));
+            //noinspection ConstantConditions
+            if(service == null) {
+                throw new IllegalStateException("The service factory of [" + serviceTag + "] returned null!");
+            }
+            return service;
+        }
+
+        @Nonnull
+        @Override
+        public Object get() { // the service was looked up
+            return await();
+        }
+
+        /**
+         * Returns the service. If it has not started being created yet, it is created on the current thread, otherwise this waits for it.
+         *
+         * @return the service
+         */
+        Object await() {
+            run();
+            try {
+                return getUninterruptibly();
+            } catch(ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if(cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("The service [" + serviceTag + "] could not be created!", cause);
+            }
+        }
+
+        /**
+         * Creates the service on the current thread, unless it has already started being created.
+         */
+        void run() {
+            futureTask.run(); // does nothing if it has already started
+        }
+
+        Object getUninterruptibly()
+                throws ExecutionException {
+            boolean isInterrupted = false;
+            try {
+                while(true) {
+                    try {
+                        return futureTask.get();
+                    } catch(InterruptedException e) {
+                        isInterrupted = true; // the service must be available after the lookup
+                    }
+                }
+            } finally {
+                if(isInterrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    @Nonnull
+    Node addNode(@Nonnull String serviceTag, @Nonnull List<String> dependencies, @Nonnull ServiceBinder.ServiceFactory<?> serviceFactory) {
+        Node node = new Node(serviceTag, dependencies, serviceFactory);
+        nodes.put(serviceTag, node);
+        return node;
+    }
+
+    boolean hasNode(@Nonnull String serviceTag) {
+        return nodes.containsKey(serviceTag);
+    }
+
+    @Nonnull
+    Collection<Node> getNodes() {
+        return nodes.values();
+    }
+
+    /**
+     * Links the nodes to the nodes they depend on, and orders them so that dependencies come first.
+     *
+     * @param scopeDescription the scope of the services, used in the error message
+     * @return the ordered nodes
+     * @throws IllegalStateException if the services have circular dependencies
+     */
+    @Nonnull
+    List<Node> linkAndOrderByDependencies(@Nonnull String scopeDescription) {
+        for(Node node : nodes.values()) {
+            for(String dependency : node.dependencies) {
+                Node dependencyNode = nodes.get(dependency);
+                if(dependencyNode != null) {
+                    node.nodeDependencies.put(dependency, dependencyNode);
+                    dependencyNode.dependents.add(node);
+                }
+            }
+        }
+
+        Map<Node, Integer> pendingDependencyCounts = new HashMap<>();
+        List<Node> readyNodes = new ArrayList<>();
+        for(Node node : nodes.values()) {
+            pendingDependencyCounts.put(node, node.nodeDependencies.size());
+            if(node.nodeDependencies.isEmpty()) {
+                readyNodes.add(node);
+            }
+        }
+        List<Node> orderedNodes = new ArrayList<>(nodes.size());
+        for(int i = 0; i < readyNodes.size(); i++) {
+            Node node = readyNodes.get(i);
+            orderedNodes.add(node);
+            for(Node dependent : node.dependents) {
+                int pendingDependencyCount = pendingDependencyCounts.get(dependent) - 1;
+                pendingDependencyCounts.put(dependent, pendingDependencyCount);
+                if(pendingDependencyCount == 0) {
+                    readyNodes.add(dependent);
+                }
+            }
+        }
+        if(orderedNodes.size() != nodes.size()) {
+            List<String> serviceTags = new ArrayList<>();
+            for(Node node : nodes.values()) {
+                if(pendingDependencyCounts.get(node) > 0) {
+                    serviceTags.add(node.serviceTag);
+                }
+            }
+            throw new IllegalStateException("The services " + serviceTags + " " + scopeDescription + " have circular dependencies!");
+        }
+        return orderedNodes;
+    }
+
+    /**
+     * Starts creating the services on the executor. The nodes must already be linked.
+     * <p>
+     * If the executor rejects a node, then its service is created on the current thread.
+     *
+     * @param executor the executor, or null to create each service when it is awaited
+     */
+    void start(@Nullable Executor executor) {
+        for(Node node : nodes.values()) {
+            node.executor = executor;
+            node.pendingDependencyCount.set(node.nodeDependencies.size());
+        }
+        for(Node node : nodes.values()) {
+            if(node.nodeDependencies.isEmpty()) {
+                node.submit(); // the dependents are submitted as soon as their dependencies are created
+            }
+        }
+    }
+}
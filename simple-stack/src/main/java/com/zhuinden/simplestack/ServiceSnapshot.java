@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable view of the services that were accessible from a {@link Backstack} when a state change completed.
+ *
+ * Unlike the {@link Backstack}, a snapshot can be read from any thread. The latest snapshot is available from {@link Backstack#getServiceSnapshot()}.
+ *
+ * Services registered with a {@link Provider} are only included once they have been created.
+ */
+public final class ServiceSnapshot {
+    static final Object NOT_CREATED = new Object(); // marks a service whose provider was not invoked yet, it still shadows services in parent scopes
+
+    interface ScopeChains {
+        /**
+         * Returns the scopes accessible from the given scope, starting from the scope itself. Must be safe to call from any thread.
+         */
+        @Nonnull
+        List<String> get(@Nonnull String scopeTag);
+    }
+
+    private static final ScopeChains NO_SCOPE_CHAINS = new ScopeChains() {
+        @Nonnull
+        @Override
+        public List<String> get(@Nonnull String scopeTag) {
+            return Collections.emptyList();
+        }
+    };
+
+    private final List<String> scopeTags;
+    private final Map<String, Map<String, Object>> scopedServices;
+    private final ScopeChains scopeChains;
+    private final Backstack parentServices;
+    private final String parentScopeTag;
+
+    private volatile Map<String, Object> accessibleServices = null; // merged on first lookup
+
+    ServiceSnapshot(@Nonnull List<String> scopeTags,
+                    @Nonnull Map<String, Map<String, Object>> scopedServices,
+                    @Nonnull ScopeChains scopeChains,
+                    @Nullable Backstack parentServices,
+                    @Nullable String parentScopeTag) {
+        this.scopeTags = Collections.unmodifiableList(scopeTags);
+        this.scopedServices = scopedServices;
+        this.scopeChains = scopeChains;
+        this.parentServices = parentServices;
+        this.parentScopeTag = parentScopeTag;
+    }
+
+    static ServiceSnapshot empty(@Nullable Backstack parentServices, @Nullable String parentScopeTag) {
+        return new ServiceSnapshot(Collections.<String>emptyList(),
+                                   Collections.<String, Map<String, Object>>emptyMap(),
+                                   NO_SCOPE_CHAINS,
+                                   parentServices,
+                                   parentScopeTag);
+    }
+
+    /**
+     * Returns the scope tags that existed when the snapshot was taken, in the order they are traversed by {@link ServiceSnapshot#lookupService(String)}.
+     *
+     * @return the scope tags
+     */
+    @Nonnull
+    public List<String> getScopeTags() {
+        return scopeTags;
+    }
+
+    /**
+     * Returns if the given scope contains a service with the provided service tag.
+     *
+     * @param scopeTag   the scope tag
+     * @param serviceTag the service tag
+     * @return whether the service exists in the scope
+     */
+    public boolean hasService(@Nonnull String scopeTag, @Nonnull String serviceTag) {
+        checkScopeTag(scopeTag);
+        checkServiceTag(serviceTag);
+        Map<String, Object> services = scopedServices.get(scopeTag);
+        return services != null && services.containsKey(serviceTag) && services.get(serviceTag) != NOT_CREATED;
+    }
+
+    /**
+     * Returns the service from the given scope. Throws if not found.
+     *
+     * @param scopeTag   the scope tag
+     * @param serviceTag the service tag
+     * @param <T>        the type of the service
+     * @return the service
+     * @throws IllegalStateException if the service doesn't exist in the scope
+     */
+    @Nonnull
+    public <T> T getService(@Nonnull String scopeTag, @Nonnull String serviceTag) {
+        checkScopeTag(scopeTag);
+        checkServiceTag(serviceTag);
+        Map<String, Object> services = scopedServices.get(scopeTag);
+        if(services == null || !services.containsKey(serviceTag) || services.get(serviceTag) == NOT_CREATED) {
+            throw new IllegalStateException("The service [" + serviceTag + "] does not exist in scope [" + scopeTag + "]!");
+        }
+        //noinspection unchecked
+        return (T) services.get(serviceTag);
+    }
+
+    /**
+     * Returns whether the service exists in any of the scopes, or in the parent services.
+     *
+     * @param serviceTag the service tag
+     * @return whether the service can be found
+     */
+    public boolean canFindService(@Nonnull String serviceTag) {
+        checkServiceTag(serviceTag);
+        return getAccessibleServices().containsKey(serviceTag) || findInParentServices(serviceTag) != null;
+    }
+
+    /**
+     * Looks up the service in all scopes, starting from the last added scope, and then in the parent services. Throws if not found.
+     *
+     * @param serviceTag the service tag
+     * @param <T>        the type of the service
+     * @return the service
+     * @throws IllegalStateException if the service doesn't exist in any scope
+     */
+    @Nonnull
+    public <T> T lookupService(@Nonnull String serviceTag) {
+        checkServiceTag(serviceTag);
+        Object service = getAccessibleServices().get(serviceTag);
+        if(service != null) {
+            //noinspection unchecked
+            return (T) service;
+        }
+        service = findInParentServices(serviceTag);
+        if(service != null) {
+            //noinspection unchecked
+            return (T) service;
+        }
+        throw new IllegalStateException("The service [" + serviceTag + "] does not exist in any accessible scopes, the nearest scopes are " + scopeTags + "!");
+    }
+
+    /**
+     * Returns whether the service exists in the provided scope or its parents, or in the parent services.
+     *
+     * @param scopeTag   the scope tag to look up from
+     * @param serviceTag the service tag
+     * @return whether the service can be found
+     */
+    public boolean canFindFromScope(@Nonnull String scopeTag, @Nonnull String serviceTag) {
+        checkScopeTag(scopeTag);
+        checkServiceTag(serviceTag);
+        return findFromScope(scopeTag, serviceTag) != null || findInParentServices(serviceTag) != null;
+    }
+
+    /**
+     * Looks up the service in the provided scope and its parents, starting from the provided scope, and then in the parent services. Throws if not found.
+     *
+     * @param scopeTag   the scope tag to look up from
+     * @param serviceTag the service tag
+     * @param <T>        the type of the service
+     * @return the service
+     * @throws IllegalStateException if the service doesn't exist in any of the scopes
+     */
+    @Nonnull
+    public <T> T lookupFromScope(@Nonnull String scopeTag, @Nonnull String serviceTag) {
+        checkScopeTag(scopeTag);
+        checkServiceTag(serviceTag);
+        Object service = findFromScope(scopeTag, serviceTag);
+        if(service != null) {
+            //noinspection unchecked
+            return (T) service;
+        }
+        service = findInParentServices(serviceTag);
+        if(service != null) {
+            //noinspection unchecked
+            return (T) service;
+        }
+        throw new IllegalStateException("The service [" + serviceTag + "] does not exist in any scope that is accessible from [" + scopeTag + "]!");
+    }
+
+    private Map<String, Object> getAccessibleServices() {
+        Map<String, Object> accessibleServices = this.accessibleServices;
+        if(accessibleServices == null) { // merging twice on concurrent reads gives the same result
+            accessibleServices = new HashMap<>();
+            for(int i = 0, size = scopeTags.size(); i < size; i++) {
+                Map<String, Object> services = scopedServices.get(scopeTags.get(i));
+                if(services == null) {
+                    continue;
+                }
+                for(Map.Entry<String, Object> entry : services.entrySet()) {
+                    if(!accessibleServices.containsKey(entry.getKey())) { // the first scope in traversal order wins
+                        accessibleServices.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+
+            Iterator<Object> accessibleServiceIterator = accessibleServices.values().iterator();
+            while(accessibleServiceIterator.hasNext()) {
+                if(accessibleServiceIterator.next() == NOT_CREATED) {
+                    accessibleServiceIterator.remove();
+                }
+            }
+            this.accessibleServices = accessibleServices;
+        }
+        return accessibleServices;
+    }
+
+    @Nullable
+    private Object findFromScope(String scopeTag, String serviceTag) {
+        List<String> scopeChain = scopeChains.get(scopeTag);
+        for(int i = 0, size = scopeChain.size(); i < size; i++) {
+            Map<String, Object> services = scopedServices.get(scopeChain.get(i));
+            if(services != null && services.containsKey(serviceTag)) {
+                Object service = services.get(serviceTag);
+                return service == NOT_CREATED ? null : service;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private Object findInParentServices(String serviceTag) {
+        if(parentServices == null) {
+            return null;
+        }
+        ServiceSnapshot parentSnapshot = parentServices.getServiceSnapshot(); // read once, so that both checks see the same snapshot
+        if(parentScopeTag != null) {
+            return parentSnapshot.canFindFromScope(parentScopeTag, serviceTag) ? parentSnapshot.lookupFromScope(parentScopeTag, serviceTag) : null;
+        } else {
+            return parentSnapshot.canFindService(serviceTag) ? parentSnapshot.lookupService(serviceTag) : null;
+        }
+    }
+
+    private static void checkScopeTag(@Nonnull String scopeTag) {
+        //noinspection ConstantConditions
+        if(scopeTag == null) {
+            throw new IllegalArgumentException("Scope tag cannot be null!");
+        }
+    }
+
+    private static void checkServiceTag(@Nonnull String serviceTag) {
+        //noinspection ConstantConditions
+        if(serviceTag == null) {
+            throw new IllegalArgumentException("Service tag cannot be null!");
+        }
+    }
+}
@@ -20,9 +20,29 @@ import javax.annotation.Nonnull;
 /**
  * The StateChanger handles the {@link StateChange}s that occur within the {@link Backstack}.
  *
- * {@link StateChange} cannot be cancelled, a {@link StateChange} set during an active {@link StateChange} gets enqueued.
+ * A {@link StateChange} set during an active {@link StateChange} gets enqueued. If the state changer implements {@link Preemptible}, then
+ * the active {@link StateChange} is fast-forwarded first.
  */
 public interface StateChanger {
+    /**
+     * A state changer that can finish the {@link StateChange} in progress immediately.
+     *
+     * When a navigation operation (including {@link Backstack#goBack()}) happens while a state change is in progress, {@link Preemptible#fastForward(StateChange)}
+     * is called before the operation is enqueued. The state changer should jump to the end state of its transition, and call {@link Callback#stateChangeComplete()}
+     * before returning, so that the next state change can start immediately.
+     *
+     * If the callback is not called by the time the method returns, then the operation is enqueued as usual.
+     */
+    interface Preemptible
+        extends StateChanger {
+        /**
+         * Called when the state change in progress should be finished immediately.
+         *
+         * @param stateChange the state change in progress
+         */
+        void fastForward(@Nonnull StateChange stateChange);
+    }
+
     /**
      * When the {@link StateChange} is complete, then the callback must be called.
      *
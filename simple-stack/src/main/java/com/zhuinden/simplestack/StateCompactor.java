@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.os.Parcel;
+
+import com.zhuinden.statebundle.StateBundle;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Used by {@link Backstack#onTrimMemory(int)} to replace the restored states of retained objects with their marshalled form,
+ * which is expanded again the next time it is accessed.
+ * <p>
+ * Compacting throws a RuntimeException if the state cannot be marshalled (for example, if it contains a Binder or a file descriptor).
+ */
+interface StateCompactor {
+    @Nonnull
+    byte[] compact(@Nonnull StateBundle bundle);
+
+    @Nonnull
+    StateBundle expandBundle(@Nonnull byte[] bytes);
+
+    /**
+     * The default compactor, which marshals the state using {@link Parcel}.
+     */
+    static final class ParcelStateCompactor
+            implements StateCompactor {
+        @Nonnull
+        @Override
+        public byte[] compact(@Nonnull StateBundle bundle) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeParcelable(bundle, 0);
+                return parcel.marshall();
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        @Nonnull
+        @Override
+        public StateBundle expandBundle(@Nonnull byte[] bytes) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.unmarshall(bytes, 0, bytes.length);
+                parcel.setDataPosition(0);
+                StateBundle bundle = parcel.readParcelable(StateCompactor.class.getClassLoader());
+                return bundle != null ? bundle : new StateBundle();
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.SparseArray;
+
+import com.zhuinden.statebundle.StateBundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Measures the parcelled size of the state written by {@link Backstack#toBundle()}, and reports it through a {@link Callback}.
+ * <p>
+ * The size is measured for each history key, for each part of each {@link SavedState}, for each scope and service, and for each retained object.
+ * <p>
+ * Optionally, a budget can be set for the total size and for each entry. When it is exceeded, the report is either only marked as over budget ({@link BudgetPolicy#WARN}),
+ * or a {@link StateBudgetExceededException} is thrown ({@link BudgetPolicy#FAIL}).
+ * <p>
+ * The default {@link Measurer} writes into a {@link Parcel}, so on the JVM it should be used with Robolectric. A custom {@link Measurer} can be used otherwise.
+ * <p>
+ * Should be created using {@link StateSizeProfiler#builder()}, and set with {@link Backstack#setStateSizeProfiler(StateSizeProfiler)}.
+ */
+public final class StateSizeProfiler {
+    /**
+     * The type of the measured state.
+     */
+    public enum EntryType {
+        HISTORY_KEY,
+        VIEW_HIERARCHY_STATE,
+        BUNDLE,
+        VIEW_BUNDLE,
+        SCOPE,
+        SERVICE,
+        RETAINED_OBJECT
+    }
+
+    /**
+     * The budget policy determines what happens when the budget is exceeded.
+     */
+    public enum BudgetPolicy {
+        /**
+         * The report is marked as over budget, and passed to the callback.
+         */
+        WARN,
+        /**
+         * The report is passed to the callback, then {@link StateBudgetExceededException} is thrown.
+         */
+        FAIL
+    }
+
+    /**
+     * Measures the parcelled size of the state.
+     */
+    public interface Measurer {
+        /**
+         * Returns the size of the parcelable in bytes.
+         *
+         * @param parcelable the parcelable
+         * @return the size in bytes
+         */
+        int measure(@Nonnull Parcelable parcelable);
+
+        /**
+         * Returns the size of the view hierarchy state in bytes.
+         *
+         * @param viewHierarchyState the view hierarchy state
+         * @return the size in bytes
+         */
+        int measure(@Nonnull SparseArray<Parcelable> viewHierarchyState);
+    }
+
+    /**
+     * The callback that receives the {@link Report} after each {@link Backstack#toBundle()}.
+     */
+    public interface Callback {
+        /**
+         * Called after the state was measured.
+         *
+         * @param report the report
+         */
+        void onStateMeasured(@Nonnull Report report);
+    }
+
+    /**
+     * A measured piece of state.
+     */
+    public static final class Entry {
+        private final EntryType type;
+        private final Object key;
+        private final String scopeTag;
+        private final String tag;
+        private final int size;
+
+        Entry(EntryType type, Object key, String scopeTag, String tag, int size) {
+            this.type = type;
+            this.key = key;
+            this.scopeTag = scopeTag;
+            this.tag = tag;
+            this.size = size;
+        }
+
+        /**
+         * Returns the type of the state.
+         *
+         * @return the type
+         */
+        @Nonnull
+        public EntryType getType() {
+            return type;
+        }
+
+        /**
+         * Returns the key the state belongs to, for history keys and saved states.
+         *
+         * @return the key
+         */
+        @Nullable
+        public Object getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the scope tag, for scopes and services.
+         *
+         * @return the scope tag
+         */
+        @Nullable
+        public String getScopeTag() {
+            return scopeTag;
+        }
+
+        /**
+         * Returns the service tag for services, or the object tag for retained objects.
+         *
+         * @return the tag
+         */
+        @Nullable
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * Returns the parcelled size in bytes.
+         *
+         * @return the size
+         */
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{type=" + type + ", key=" + key + ", scopeTag=" + scopeTag + ", tag=" + tag + ", size=" + size + "}";
+        }
+    }
+
+    /**
+     * The result of measuring the state.
+     */
+    public static final class Report {
+        private final List<Entry> entries;
+        private final List<Entry> entriesOverBudget;
+        private final int totalSize;
+        private final boolean isTotalOverBudget;
+
+        Report(List<Entry> entries, List<Entry> entriesOverBudget, int totalSize, boolean isTotalOverBudget) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.entriesOverBudget = Collections.unmodifiableList(entriesOverBudget);
+            this.totalSize = totalSize;
+            this.isTotalOverBudget = isTotalOverBudget;
+        }
+
+        /**
+         * Returns the measured entries.
+         *
+         * @return the entries
+         */
+        @Nonnull
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * Returns the entries that exceed the entry budget.
+         *
+         * @return the entries over budget
+         */
+        @Nonnull
+        public List<Entry> getEntriesOverBudget() {
+            return entriesOverBudget;
+        }
+
+        /**
+         * Returns the parcelled size of the whole state bundle.
+         *
+         * @return the total size
+         */
+        public int getTotalSize() {
+            return totalSize;
+        }
+
+        /**
+         * Returns if either the total size or any of the entries exceed the budget.
+         *
+         * @return if the budget is exceeded
+         */
+        public boolean isOverBudget() {
+            return isTotalOverBudget || !entriesOverBudget.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Report{totalSize=" + totalSize + ", isOverBudget=" + isOverBudget() + ", entriesOverBudget=" + entriesOverBudget + ", entries=" + entries + "}";
+        }
+    }
+
+    private static class ParcelMeasurer
+            implements Measurer {
+        @Override
+        public int measure(@Nonnull Parcelable parcelable) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeParcelable(parcelable, 0);
+                return parcel.dataSize();
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        @Override
+        public int measure(@Nonnull SparseArray<Parcelable> viewHierarchyState) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                //noinspection unchecked
+                parcel.writeSparseArray((SparseArray) viewHierarchyState);
+                return parcel.dataSize();
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    /**
+     * Thrown when the budget is exceeded with {@link BudgetPolicy#FAIL}.
+     */
+    public static class StateBudgetExceededException
+            extends IllegalStateException {
+        private final Report report;
+
+        StateBudgetExceededException(Report report) {
+            super("The saved state exceeded the configured budget: " + report);
+            this.report = report;
+        }
+
+        /**
+         * Returns the report that exceeded the budget.
+         *
+         * @return the report
+         */
+        @Nonnull
+        public Report getReport() {
+            return report;
+        }
+
+        static final long serialVersionUID = -3278462387462348L;
+    }
+
+    private final Callback callback;
+    private final Measurer measurer;
+    private final int totalBudget;
+    private final int entryBudget;
+    private final BudgetPolicy budgetPolicy;
+
+    private StateSizeProfiler(Callback callback, Measurer measurer, int totalBudget, int entryBudget, BudgetPolicy budgetPolicy) {
+        this.callback = callback;
+        this.measurer = measurer;
+        this.totalBudget = totalBudget;
+        this.entryBudget = entryBudget;
+        this.budgetPolicy = budgetPolicy;
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @return the builder
+     */
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The builder for the {@link StateSizeProfiler}.
+     */
+    public static class Builder {
+        private Callback callback;
+        private Measurer measurer = new ParcelMeasurer();
+        private int totalBudget = Integer.MAX_VALUE;
+        private int entryBudget = Integer.MAX_VALUE;
+        private BudgetPolicy budgetPolicy = BudgetPolicy.WARN;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the callback that receives the reports.
+         *
+         * @param callback the callback
+         * @return the builder
+         */
+        @Nonnull
+        public Builder setCallback(@Nonnull Callback callback) {
+            //noinspection ConstantConditions
+            if(callback == null) {
+                throw new IllegalArgumentException("The callback cannot be null!");
+            }
+            this.callback = callback;
+            return this;
+        }
+
+        /**
+         * Sets the measurer. By default, the size is measured by writing into a {@link Parcel}.
+         *
+         * @param measurer the measurer
+         * @return the builder
+         */
+        @Nonnull
+        public Builder setMeasurer(@Nonnull Measurer measurer) {
+            //noinspection ConstantConditions
+            if(measurer == null) {
+                throw new IllegalArgumentException("The measurer cannot be null!");
+            }
+            this.measurer = measurer;
+            return this;
+        }
+
+        /**
+         * Sets the budget for the size of the whole state bundle.
+         *
+         * @param totalBudget the total budget in bytes
+         * @return the builder
+         */
+        @Nonnull
+        public Builder setTotalBudget(int totalBudget) {
+            if(totalBudget <= 0) {
+                throw new IllegalArgumentException("The total budget must be positive!");
+            }
+            this.totalBudget = totalBudget;
+            return this;
+        }
+
+        /**
+         * Sets the budget for the size of each measured entry.
+         *
+         * @param entryBudget the entry budget in bytes
+         * @return the builder
+         */
+        @Nonnull
+        public Builder setEntryBudget(int entryBudget) {
+            if(entryBudget <= 0) {
+                throw new IllegalArgumentException("The entry budget must be positive!");
+            }
+            this.entryBudget = entryBudget;
+            return this;
+        }
+
+        /**
+         * Sets what happens when the budget is exceeded. The default is {@link BudgetPolicy#WARN}.
+         *
+         * @param budgetPolicy the budget policy
+         * @return the builder
+         */
+        @Nonnull
+        public Builder setBudgetPolicy(@Nonnull BudgetPolicy budgetPolicy) {
+            //noinspection ConstantConditions
+            if(budgetPolicy == null) {
+                throw new IllegalArgumentException("The budget policy cannot be null!");
+            }
+            this.budgetPolicy = budgetPolicy;
+            return this;
+        }
+
+        /**
+         * Creates the {@link StateSizeProfiler}.
+         *
+         * @return the state size profiler
+         */
+        @Nonnull
+        public StateSizeProfiler build() {
+            if(callback == null) {
+                throw new IllegalStateException("The callback must be set!");
+            }
+            return new StateSizeProfiler(callback, measurer, totalBudget, entryBudget, budgetPolicy);
+        }
+    }
+
+    void profile(@Nonnull StateBundle stateBundle, @Nonnull List<Object> historyKeys, @Nonnull List<ParcelledState> parcelledStates, @Nonnull List<Object> stateKeys) {
+        List<Entry> entries = new ArrayList<>();
+
+        List<Parcelable> parcelledKeys = stateBundle.getParcelableArrayList(Backstack.getHistoryTag());
+        if(parcelledKeys != null) {
+            for(int i = 0, size = parcelledKeys.size(); i < size; i++) {
+                entries.add(new Entry(EntryType.HISTORY_KEY, historyKeys.get(i), null, null, measurer.measure(parcelledKeys.get(i))));
+            }
+        }
+
+        for(int i = 0, size = parcelledStates.size(); i < size; i++) {
+            ParcelledState parcelledState = parcelledStates.get(i);
+            Object key = stateKeys.get(i);
+            if(parcelledState.viewHierarchyState != null) {
+                entries.add(new Entry(EntryType.VIEW_HIERARCHY_STATE, key, null, null, measurer.measure(parcelledState.viewHierarchyState)));
+            }
+            if(parcelledState.bundle != null) {
+                entries.add(new Entry(EntryType.BUNDLE, key, null, null, measurer.measure(parcelledState.bundle)));
+            }
+            if(parcelledState.viewBundle != null) {
+                entries.add(new Entry(EntryType.VIEW_BUNDLE, key, null, null, measurer.measure(parcelledState.viewBundle)));
+            }
+        }
+
+        StateBundle scopes = stateBundle.getBundle(Backstack.getScopesTag());
+        if(scopes != null) {
+            for(String scopeTag : scopes.keySet()) {
+                StateBundle scope = scopes.getBundle(scopeTag);
+                if(scope == null || scope.isEmpty()) {
+                    continue;
+                }
+                entries.add(new Entry(EntryType.SCOPE, null, scopeTag, null, measurer.measure(scope)));
+                for(String serviceTag : scope.keySet()) {
+                    StateBundle service = scope.getBundle(serviceTag);
+                    if(service != null) {
+                        entries.add(new Entry(EntryType.SERVICE, null, scopeTag, serviceTag, measurer.measure(service)));
+                    }
+                }
+            }
+        }
+
+        StateBundle retainedObjects = stateBundle.getBundle(Backstack.getRetainedObjectStatesTag());
+        if(retainedObjects != null) {
+            for(String objectTag : retainedObjects.keySet()) {
+                StateBundle retainedObject = retainedObjects.getBundle(objectTag);
+                if(retainedObject != null) {
+                    entries.add(new Entry(EntryType.RETAINED_OBJECT, null, null, objectTag, measurer.measure(retainedObject)));
+                }
+            }
+        }
+
+        List<Entry> entriesOverBudget = new ArrayList<>();
+        for(Entry entry : entries) {
+            if(entry.getSize() > entryBudget) {
+                entriesOverBudget.add(entry);
+            }
+        }
+
+        int totalSize = measurer.measure(stateBundle);
+        Report report = new Report(entries, entriesOverBudget, totalSize, totalSize > totalBudget);
+        callback.onStateMeasured(report);
+
+        if(report.isOverBudget() && budgetPolicy == BudgetPolicy.FAIL) {
+            throw new StateBudgetExceededException(report);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.zhuinden.simplestack.StateChange;
+
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link DefaultStateChanger.LayoutInflationStrategy} that inflates the layout of the {@link DefaultViewKey} on a background thread,
+ * and provides the inflated view on the main thread.
+ *
+ * Each inflation uses its own clone of the {@link LayoutInflater} of the provided context, because a layout inflater is not thread-safe.
+ * The container is not accessed on the background thread: the layout is inflated into a detached {@link FrameLayout}, so only the size and the margins
+ * of the root view are kept, and the container converts them when the view is added. Layouts whose root view needs the layout parameters of
+ * a specific container (such as a weight) should be inflated on the main thread.
+ *
+ * Layouts that cannot be inflated off the main thread can be excluded with a {@link SynchronousInflationPredicate}.
+ * If the background inflation fails, then the layout is inflated again on the main thread.
+ *
+ * Inflations that are still running when {@link #cancelPendingInflations()} is called are not delivered.
+ */
+public class AsyncLayoutInflationStrategy
+        implements DefaultStateChanger.LayoutInflationStrategy {
+    /**
+     * Determines whether the layout of a given key must be inflated on the main thread.
+     */
+    public interface SynchronousInflationPredicate {
+        /**
+         * Returns whether the layout of the key must be inflated on the main thread.
+         *
+         * @param key the key
+         * @return true if the layout must be inflated synchronously
+         */
+        boolean shouldInflateSynchronously(@Nonnull Object key);
+    }
+
+    /**
+     * Receives the time it took to inflate a layout.
+     */
+    public interface InflationListener {
+        /**
+         * Called on the main thread when the layout of the key is inflated.
+         *
+         * @param key                    the key
+         * @param inflationTimeNanos     the time spent on inflation
+         * @param inflatedAsynchronously whether the layout was inflated on the background thread
+         */
+        void onLayoutInflated(@Nonnull Object key, long inflationTimeNanos, boolean inflatedAsynchronously);
+    }
+
+    private final Executor backgroundExecutor;
+    private final SynchronousInflationPredicate synchronousInflationPredicate;
+    private final InflationListener inflationListener;
+
+    private Handler mainThreadHandler;
+
+    private int generation = 0; // only accessed on the main thread
+
+    /**
+     * Creates an async layout inflation strategy that inflates every layout on the background executor.
+     *
+     * @param backgroundExecutor the executor used for layout inflation
+     */
+    public AsyncLayoutInflationStrategy(@Nonnull Executor backgroundExecutor) {
+        this(backgroundExecutor, null, null);
+    }
+
+    /**
+     * Creates an async layout inflation strategy.
+     *
+     * @param backgroundExecutor            the executor used for layout inflation
+     * @param synchronousInflationPredicate the predicate for layouts that must be inflated on the main thread, or null
+     * @param inflationListener             the listener that receives the inflation timings, or null
+     */
+    public AsyncLayoutInflationStrategy(@Nonnull Executor backgroundExecutor, @Nullable SynchronousInflationPredicate synchronousInflationPredicate, @Nullable InflationListener inflationListener) {
+        if(backgroundExecutor == null) {
+            throw new NullPointerException("Background executor cannot be null!");
+        }
+        this.backgroundExecutor = backgroundExecutor;
+        this.synchronousInflationPredicate = synchronousInflationPredicate;
+        this.inflationListener = inflationListener;
+    }
+
+    @Override
+    public void inflateLayout(@Nonnull StateChange stateChange, @Nonnull final Object key, @Nonnull final Context context, @Nonnull final ViewGroup container, @Nonnull final Callback callback) {
+        final int layout = ((DefaultViewKey) key).layout();
+        if(synchronousInflationPredicate != null && synchronousInflationPredicate.shouldInflateSynchronously(key)) {
+            inflateSynchronously(key, layout, context, container, callback);
+            return;
+        }
+        if(mainThreadHandler == null) {
+            mainThreadHandler = new Handler(Looper.getMainLooper());
+        }
+        final LayoutInflater layoutInflater = LayoutInflater.from(context).cloneInContext(context);
+        final int requestGeneration = generation;
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = System.nanoTime();
+                View view;
+                try {
+                    view = layoutInflater.inflate(layout, new FrameLayout(context), false); // the container belongs to the main thread
+                } catch(RuntimeException e) { // the layout cannot be inflated off the main thread
+                    view = null;
+                }
+                final View newView = view;
+                final long inflationTime = System.nanoTime() - startTime;
+                mainThreadHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(requestGeneration != generation) {
+                            return; // cancelled while it was inflating
+                        }
+                        if(newView == null) {
+                            inflateSynchronously(key, layout, context, container, callback);
+                            return;
+                        }
+                        if(inflationListener != null) {
+                            inflationListener.onLayoutInflated(key, inflationTime, true);
+                        }
+                        callback.layoutInflationComplete(newView);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Discards the results of the inflations that are still running on the background executor. Their callbacks are never called.
+     * <p>
+     * Must be called on the main thread, for example when the container is destroyed.
+     */
+    public void cancelPendingInflations() {
+        generation++;
+    }
+
+    private void inflateSynchronously(@Nonnull Object key, int layout, @Nonnull Context context, @Nonnull ViewGroup container, @Nonnull Callback callback) {
+        long startTime = System.nanoTime();
+        View newView = LayoutInflater.from(context).inflate(layout, container, false);
+        if(inflationListener != null) {
+            inflationListener.onLayoutInflated(key, System.nanoTime() - startTime, false);
+        }
+        callback.layoutInflationComplete(newView);
+    }
+}
@@ -20,14 +20,8 @@ import android.app.Fragment;
 import android.os.Bundle;
 import android.view.ViewGroup;
 
-import com.zhuinden.simplestack.BackHandlingModel;
 import com.zhuinden.simplestack.Backstack;
-import com.zhuinden.simplestack.GlobalServices;
-import com.zhuinden.simplestack.KeyFilter;
-import com.zhuinden.simplestack.KeyParceler;
-import com.zhuinden.simplestack.ScopedServices;
 import com.zhuinden.simplestack.StateChanger;
-import com.zhuinden.statebundle.StateBundle;
 
 import java.util.Collections;
 import java.util.List;
@@ -43,15 +37,8 @@ public final class BackstackHost
         setRetainInstance(true);
     }
 
+    Navigator.Installer installer;
     StateChanger stateChanger;
-    BackHandlingModel backHandlingModel;
-    KeyFilter keyFilter;
-    KeyParceler keyParceler;
-    Backstack.StateClearStrategy stateClearStrategy;
-    ScopedServices scopedServices;
-    GlobalServices globalServices;
-    GlobalServices.Factory globalServiceFactory;
-    List<Backstack.CompletionListener> stateChangeCompletionListeners;
 
     boolean shouldPersistContainerChild;
 
@@ -70,27 +57,7 @@ public final class BackstackHost
 
     Backstack initialize(boolean isInitializeDeferred) {
         if(backstack == null) {
-            backstack = new Backstack();
-            backstack.setBackHandlingModel(backHandlingModel);
-            backstack.setKeyFilter(keyFilter);
-            backstack.setKeyParceler(keyParceler);
-            backstack.setStateClearStrategy(stateClearStrategy);
-            if(scopedServices != null) {
-                backstack.setScopedServices(scopedServices);
-            }
-            if(globalServices != null) {
-                backstack.setGlobalServices(globalServices);
-            }
-            if(globalServiceFactory != null) {
-                backstack.setGlobalServices(globalServiceFactory);
-            }
-            backstack.setup(initialKeys);
-            for(Backstack.CompletionListener completionListener : stateChangeCompletionListeners) {
-                backstack.addStateChangeCompletionListener(completionListener);
-            }
-            if(savedInstanceState != null) {
-                backstack.fromBundle(savedInstanceState.<StateBundle>getParcelable("NAVIGATOR_STATE_BUNDLE"));
-            }
+            backstack = installer.createBackstack(initialKeys, savedInstanceState);
         }
         if(!isInitializeDeferred) {
             backstack.setStateChanger(stateChanger);
@@ -119,10 +86,24 @@ public final class BackstackHost
         super.onPause();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if(backstack != null) {
+            backstack.onTrimMemory(level);
+        }
+        if(stateChanger instanceof DefaultStateChanger) {
+            ((DefaultStateChanger) stateChanger).onTrimMemory(level);
+        }
+    }
+
     @Override
     public void onDestroyView() {
         backstack.executePendingStateChange();
 
+        if(stateChanger instanceof DefaultStateChanger) {
+            ((DefaultStateChanger) stateChanger).clearViewCache(); // the views belong to the destroyed container
+        }
         stateChanger = null;
         container = null;
         super.onDestroyView();
@@ -132,6 +113,9 @@ public final class BackstackHost
     public void onDestroy() {
         super.onDestroy();
         backstack.finalizeScopes();
+        if(installer != null && installer.navigationJournal != null) {
+            installer.navigationJournal.clear(); // the activity is finishing, so the history should not be restored
+        }
     }
 
     public Backstack getBackstack() {
@@ -15,14 +15,27 @@
  */
 package com.zhuinden.simplestack.navigator;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 
 import com.zhuinden.simplestack.StateChange;
 import com.zhuinden.simplestack.StateChanger;
 import com.zhuinden.simplestack.navigator.changehandlers.FadeViewChangeHandler;
+import com.zhuinden.simplestack.navigator.changehandlers.InterruptibleAnimatorViewChangeHandler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -35,7 +48,7 @@ import javax.annotation.Nullable;
  * But if {@link LayoutInflationStrategy} and {@link GetViewChangeHandlerStrategy} are re-defined, then this is no longer necessary.
  */
 public final class DefaultStateChanger
-        implements StateChanger {
+        implements StateChanger.Preemptible {
     private static class NoOpStateChanger
             implements StateChanger {
         @Override
@@ -272,6 +285,51 @@ public final class DefaultStateChanger
     private GetPreviousViewStrategy getPreviousViewStrategy;
     private ContextCreationStrategy contextCreationStrategy;
 
+    private final int viewCacheSize;
+    private final LinkedHashMap<Object, View> viewCache = new LinkedHashMap<>(); // least recently left first
+
+    private static class PrefetchedView {
+        final View view;
+        final boolean isStateRestored;
+        final long prefetchedAt;
+
+        PrefetchedView(View view, boolean isStateRestored, long prefetchedAt) {
+            this.view = view;
+            this.isStateRestored = isStateRestored;
+            this.prefetchedAt = prefetchedAt;
+        }
+    }
+
+    private final long prefetchTimeToLiveMillis;
+    private final LinkedHashMap<Object, Boolean> pendingPrefetches = new LinkedHashMap<>(); // key -> should restore state
+    private final Map<Object, Boolean> inflatingPrefetches = new HashMap<>();
+    private final Map<Object, PrefetchedView> prefetchedViews = new HashMap<>();
+    private boolean isPrefetchIdleHandlerAdded = false;
+
+    private StateChange lastStateChange;
+
+    private final ViewChangeMetrics viewChangeMetrics;
+    private long frameIntervalNanos = -1L;
+    private ViewChangeMetricsTracker lastMetricsTracker;
+
+    private boolean isExternalStateChangeInProgress = false;
+    private ViewChangeHandler runningViewChangeHandler;
+
+    private final MessageQueue.IdleHandler prefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            discardExpiredPrefetchedViews();
+            Iterator<Map.Entry<Object, Boolean>> pendingKeys = pendingPrefetches.entrySet().iterator();
+            if(pendingKeys.hasNext()) {
+                Map.Entry<Object, Boolean> pendingPrefetch = pendingKeys.next();
+                pendingKeys.remove();
+                inflatePrefetchedView(pendingPrefetch.getKey(), pendingPrefetch.getValue());
+            }
+            isPrefetchIdleHandlerAdded = !pendingPrefetches.isEmpty();
+            return isPrefetchIdleHandlerAdded; // one inflation per idle, to avoid blocking the next frame
+        }
+    };
+
     /**
      * Used to configure the instance of the {@link DefaultStateChanger}.
      *
@@ -287,6 +345,9 @@ public final class DefaultStateChanger
         GetPreviousViewStrategy getPreviousViewStrategy = null;
         ContextCreationStrategy contextCreationStrategy = null;
         GetViewChangeHandlerStrategy getViewChangeHandlerStrategy = null;
+        int viewCacheSize = 0;
+        long prefetchTimeToLiveMillis = 10000L;
+        ViewChangeMetrics viewChangeMetrics = null;
 
         private Configurer() {
         }
@@ -411,6 +472,63 @@ public final class DefaultStateChanger
             return this;
         }
 
+        /**
+         * Sets the maximum number of views that are kept after their key is no longer the top key, as long as their key is still in the history.
+         * <p>
+         * When navigating back to a key whose view is kept, the view is re-attached instead of being inflated again, and its state is not restored
+         * by the {@link StatePersistenceStrategy}, because the view still has it. The views of keys that leave the history are discarded.
+         * <p>
+         * The kept views are discarded by {@link DefaultStateChanger#onTrimMemory(int)}. The {@link Navigator} calls it automatically, but when using
+         * {@link com.zhuinden.simplestack.BackstackDelegate}, it should be called from Activity.onTrimMemory().
+         * <p>
+         * By default, no views are kept.
+         *
+         * @param viewCacheSize the maximum number of kept views
+         * @return the configurer
+         */
+        @Nonnull
+        public Configurer setViewCacheSize(int viewCacheSize) {
+            if(viewCacheSize < 0) {
+                throw new IllegalArgumentException("View cache size cannot be negative!");
+            }
+            this.viewCacheSize = viewCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a view prepared by {@link DefaultStateChanger#prefetch(Object)} is kept if it is not used by a view change.
+         * <p>
+         * By default, this is 10 seconds.
+         *
+         * @param prefetchTimeToLiveMillis the time to live of prefetched views in milliseconds
+         * @return the configurer
+         */
+        @Nonnull
+        public Configurer setPrefetchTimeToLiveMillis(long prefetchTimeToLiveMillis) {
+            if(prefetchTimeToLiveMillis < 0) {
+                throw new IllegalArgumentException("Prefetch time to live cannot be negative!");
+            }
+            this.prefetchTimeToLiveMillis = prefetchTimeToLiveMillis;
+            return this;
+        }
+
+        /**
+         * Sets the {@link ViewChangeMetrics}. It receives the measurements of each view change.
+         * <p>
+         * By default, view changes are not measured.
+         *
+         * @param viewChangeMetrics the view change metrics
+         * @return the configurer
+         */
+        @Nonnull
+        public Configurer setViewChangeMetrics(@Nonnull ViewChangeMetrics viewChangeMetrics) {
+            if(viewChangeMetrics == null) {
+                throw new NullPointerException("If set, view change metrics cannot be null!");
+            }
+            this.viewChangeMetrics = viewChangeMetrics;
+            return this;
+        }
+
         /**
          * Creates the {@link DefaultStateChanger} with the specified parameters.
          *
@@ -429,7 +547,10 @@ public final class DefaultStateChanger
                     statePersistenceStrategy,
                     getPreviousViewStrategy,
                     contextCreationStrategy,
-                    getViewChangeHandlerStrategy);
+                    getViewChangeHandlerStrategy,
+                    viewCacheSize,
+                    prefetchTimeToLiveMillis,
+                    viewChangeMetrics);
         }
     }
 
@@ -454,10 +575,10 @@ public final class DefaultStateChanger
      */
     @Nonnull
     public static DefaultStateChanger create(Context baseContext, ViewGroup container) {
-        return new DefaultStateChanger(baseContext, container, null, null, null, null, null, null, null, null);
+        return new DefaultStateChanger(baseContext, container, null, null, null, null, null, null, null, null, 0, 10000L, null);
     }
 
-    DefaultStateChanger(@Nonnull Context baseContext, @Nonnull ViewGroup container, @Nullable StateChanger externalStateChanger, ViewChangeStartListener viewChangeStartListener, @Nullable ViewChangeCompletionListener viewChangeCompletionListener, @Nullable LayoutInflationStrategy layoutInflationStrategy, @Nullable StatePersistenceStrategy statePersistenceStrategy, @Nullable GetPreviousViewStrategy getPreviousViewStrategy, @Nullable ContextCreationStrategy contextCreationStrategy, GetViewChangeHandlerStrategy getViewChangeHandlerStrategy) {
+    DefaultStateChanger(@Nonnull Context baseContext, @Nonnull ViewGroup container, @Nullable StateChanger externalStateChanger, ViewChangeStartListener viewChangeStartListener, @Nullable ViewChangeCompletionListener viewChangeCompletionListener, @Nullable LayoutInflationStrategy layoutInflationStrategy, @Nullable StatePersistenceStrategy statePersistenceStrategy, @Nullable GetPreviousViewStrategy getPreviousViewStrategy, @Nullable ContextCreationStrategy contextCreationStrategy, GetViewChangeHandlerStrategy getViewChangeHandlerStrategy, int viewCacheSize, long prefetchTimeToLiveMillis, @Nullable ViewChangeMetrics viewChangeMetrics) {
         if(baseContext == null) {
             throw new NullPointerException("baseContext cannot be null");
         }
@@ -498,6 +619,154 @@ public final class DefaultStateChanger
             getViewChangeHandlerStrategy = new DefaultGetViewChangeHandlerStrategy();
         }
         this.getViewChangeHandlerStrategy = getViewChangeHandlerStrategy;
+        this.viewCacheSize = viewCacheSize;
+        this.prefetchTimeToLiveMillis = prefetchTimeToLiveMillis;
+        this.viewChangeMetrics = viewChangeMetrics;
+    }
+
+    private long getFrameIntervalNanos() {
+        if(frameIntervalNanos == -1L) {
+            float refreshRate = 60f;
+            WindowManager windowManager = (WindowManager) baseContext.getSystemService(Context.WINDOW_SERVICE);
+            if(windowManager != null && windowManager.getDefaultDisplay().getRefreshRate() > 0f) {
+                refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+            }
+            frameIntervalNanos = (long) (1000000000L / refreshRate);
+        }
+        return frameIntervalNanos;
+    }
+
+    /**
+     * Discards the views kept by the view cache set with {@link Configurer#setViewCacheSize(int)}, and the views prepared by {@link #prefetch(Object)}.
+     * <p>
+     * The {@link Navigator} also calls it when its container is destroyed.
+     */
+    public void clearViewCache() {
+        viewCache.clear();
+        pendingPrefetches.clear();
+        inflatingPrefetches.clear();
+        prefetchedViews.clear();
+        if(isPrefetchIdleHandlerAdded) {
+            isPrefetchIdleHandlerAdded = false;
+            Looper.myQueue().removeIdleHandler(prefetchIdleHandler);
+        }
+    }
+
+    /**
+     * Prepares the view of a key that is likely to be navigated to, while the main thread is idle.
+     * <p>
+     * The view is inflated with the {@link LayoutInflationStrategy}, so if the strategy inflates in the background (such as {@link AsyncLayoutInflationStrategy}), then so does the prefetch.
+     * The prepared view is used by the next view change to this key, unless it is discarded after the time set with {@link Configurer#setPrefetchTimeToLiveMillis(long)}.
+     * <p>
+     * Prefetching is possible only after the initial state change, as the strategies receive the last handled state change.
+     * <p>
+     * The scopes of the key do not exist yet while the view is prepared, so the view must not look up the services of its own scopes during inflation
+     * (for example, in onFinishInflate()); it should look them up once it is attached instead. If the {@link LayoutInflationStrategy} throws, the prefetch is discarded.
+     *
+     * @param key the key
+     */
+    public void prefetch(@Nonnull Object key) {
+        prefetch(key, false);
+    }
+
+    /**
+     * Prepares the view of a key that is likely to be navigated to, while the main thread is idle.
+     * <p>
+     * If the state is restored, then the {@link StatePersistenceStrategy} is not called again when the view is used, so the state of the key should not change in the meantime.
+     *
+     * @param key          the key
+     * @param restoreState whether the state of the view should be restored when it is prepared
+     * @see #prefetch(Object)
+     */
+    public void prefetch(@Nonnull Object key, boolean restoreState) {
+        if(key == null) {
+            throw new NullPointerException("Key cannot be null!");
+        }
+        if(viewCache.containsKey(key) || prefetchedViews.containsKey(key) || inflatingPrefetches.containsKey(key)) {
+            return;
+        }
+        pendingPrefetches.put(key, restoreState);
+        if(!isPrefetchIdleHandlerAdded) {
+            isPrefetchIdleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(prefetchIdleHandler);
+        }
+    }
+
+    private void inflatePrefetchedView(@Nonnull final Object key, final boolean restoreState) {
+        final StateChange stateChange = lastStateChange;
+        if(stateChange == null || key.equals(stateChange.topNewKey())) {
+            return;
+        }
+        inflatingPrefetches.put(key, restoreState);
+        try {
+            Context newContext = contextCreationStrategy.createContext(stateChange.createContext(baseContext, key),
+                    key,
+                    container,
+                    stateChange);
+            layoutInflationStrategy.inflateLayout(stateChange,
+                    key,
+                    newContext,
+                    container,
+                    new LayoutInflationStrategy.Callback() {
+                        @Override
+                        public void layoutInflationComplete(@Nonnull View view) {
+                            if(inflatingPrefetches.remove(key) == null) {
+                                return; // the key was navigated to, or the prefetch was discarded
+                            }
+                            if(restoreState) {
+                                statePersistenceStrategy.restoreViewFromState(key, view);
+                            }
+                            prefetchedViews.put(key, new PrefetchedView(view, restoreState, SystemClock.uptimeMillis()));
+                        }
+                    });
+        } catch(RuntimeException e) { // for example, the view looked up a service of a scope that does not exist yet
+            inflatingPrefetches.remove(key); // the view is inflated again when it is navigated to
+        }
+    }
+
+    private void discardExpiredPrefetchedViews() {
+        long now = SystemClock.uptimeMillis();
+        Iterator<PrefetchedView> iterator = prefetchedViews.values().iterator();
+        while(iterator.hasNext()) {
+            if(now - iterator.next().prefetchedAt > prefetchTimeToLiveMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards the views kept by the view cache when the memory is running low.
+     * <p>
+     * Called by the {@link Navigator} when it uses this state changer. Otherwise, it should be called from Activity.onTrimMemory().
+     *
+     * @param level the trim memory level, see {@link ComponentCallbacks2}
+     */
+    public void onTrimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            clearViewCache();
+        }
+    }
+
+    private void updateViewCache(@Nonnull StateChange stateChange, @Nullable Object previousKey, @Nullable View previousView) {
+        if(viewCacheSize <= 0) {
+            return;
+        }
+        Set<Object> newKeys = new HashSet<>(stateChange.getNewKeys());
+        Iterator<Object> cachedKeys = viewCache.keySet().iterator();
+        while(cachedKeys.hasNext()) {
+            if(!newKeys.contains(cachedKeys.next())) {
+                cachedKeys.remove(); // the key left the history
+            }
+        }
+        if(previousKey != null && previousView != null && previousView.getParent() == null && newKeys.contains(previousKey)) {
+            viewCache.remove(previousKey);
+            viewCache.put(previousKey, previousView);
+        }
+        Iterator<Object> leastRecentKeys = viewCache.keySet().iterator();
+        while(viewCache.size() > viewCacheSize && leastRecentKeys.hasNext()) {
+            leastRecentKeys.next();
+            leastRecentKeys.remove();
+        }
     }
 
     private void finishStateChange(StateChange stateChange, ViewGroup container, View previousView, View newView, final Callback completionCallback) {
@@ -515,10 +784,14 @@ public final class DefaultStateChanger
 
     @Override
     public final void handleStateChange(@Nonnull final StateChange stateChange, @Nonnull final Callback completionCallback) {
+        isExternalStateChangeInProgress = true;
         externalStateChanger.handleStateChange(stateChange, new Callback() {
             @Override
             public void stateChangeComplete() {
+                isExternalStateChangeInProgress = false;
                 if(stateChange.isTopNewKeyEqualToPrevious()) {
+                    lastStateChange = stateChange;
+                    updateViewCache(stateChange, null, null);
                     completionCallback.stateChangeComplete();
                     return;
                 }
@@ -530,6 +803,22 @@ public final class DefaultStateChanger
         });
     }
 
+    /**
+     * Finishes the state change in progress immediately. The external state changer is fast-forwarded if it is {@link StateChanger.Preemptible},
+     * and the running animation is ended if the view change handler is an {@link InterruptibleAnimatorViewChangeHandler}.
+     *
+     * @param stateChange the state change in progress
+     */
+    @Override
+    public void fastForward(@Nonnull StateChange stateChange) {
+        if(isExternalStateChangeInProgress && externalStateChanger instanceof StateChanger.Preemptible) {
+            ((StateChanger.Preemptible) externalStateChanger).fastForward(stateChange);
+        }
+        if(runningViewChangeHandler instanceof InterruptibleAnimatorViewChangeHandler) {
+            ((InterruptibleAnimatorViewChangeHandler) runningViewChangeHandler).end(container);
+        }
+    }
+
     /**
      * Handles the view change using the provided parameters. The direction is specified by the direction in the state change.
      *
@@ -553,60 +842,114 @@ public final class DefaultStateChanger
      */
     public void performViewChange(@Nullable final Object previousKey, @Nonnull final Object newKey, @Nonnull final StateChange stateChange, final int direction, @Nonnull final Callback completionCallback) {
         final View previousView = getPreviousViewStrategy.getPreviousView(container, stateChange, previousKey);
-        if(previousView != null && previousKey != null) {
+        if(previousView != null && previousKey != null && !stateChange.getBackstack().isStateClearedAfterPendingStateChanges(previousKey)) {
             statePersistenceStrategy.persistViewToState(previousKey, previousView);
         }
+        lastStateChange = stateChange;
+        pendingPrefetches.remove(newKey);
+        inflatingPrefetches.remove(newKey);
+        discardExpiredPrefetchedViews();
+        View reusedView = viewCache.remove(newKey);
+        boolean isReusedViewStateRestored = true; // a kept view still has its state
+        PrefetchedView prefetchedView = prefetchedViews.remove(newKey);
+        if(reusedView == null && prefetchedView != null) {
+            reusedView = prefetchedView.view;
+            isReusedViewStateRestored = prefetchedView.isStateRestored;
+        }
+        final View cachedView = reusedView;
+        final boolean isCachedViewStateRestored = isReusedViewStateRestored;
+        final ViewChangeMetricsTracker metricsTracker = viewChangeMetrics == null ? null : new ViewChangeMetricsTracker(viewChangeMetrics,
+                previousKey,
+                newKey,
+                getFrameIntervalNanos());
+        if(lastMetricsTracker != null) {
+            lastMetricsTracker.onNextViewChangeStarted();
+        }
+        lastMetricsTracker = metricsTracker;
+        LayoutInflationStrategy.Callback layoutInflationCallback = new LayoutInflationStrategy.Callback() {
+            @Override
+            public void layoutInflationComplete(@Nonnull final View newView) {
+                if(metricsTracker != null) {
+                    metricsTracker.onInflationCompleted();
+                    metricsTracker.trackFirstDraw(newView);
+                }
+                if(newView != cachedView || !isCachedViewStateRestored) {
+                    if(metricsTracker != null) {
+                        metricsTracker.onStateRestoreStarted();
+                    }
+                    statePersistenceStrategy.restoreViewFromState(newKey, newView);
+                    if(metricsTracker != null) {
+                        metricsTracker.onStateRestoreCompleted();
+                    }
+                }
+                viewChangeStartListener.handleViewChangeStart(stateChange,
+                        container,
+                        previousView,
+                        newView,
+                        new ViewChangeStartListener.Callback() {
+                            @Override
+                            public void startViewChange() {
+                                if(previousView == null) {
+                                    container.addView(newView);
+                                    if(metricsTracker != null) {
+                                        metricsTracker.onViewChangeCompleted();
+                                    }
+                                    updateViewCache(stateChange, null, null);
+                                    finishStateChange(stateChange,
+                                            container,
+                                            previousView,
+                                            newView,
+                                            completionCallback);
+                                } else {
+                                    final ViewChangeHandler viewChangeHandler = getViewChangeHandlerStrategy.getViewChangeHandler(
+                                            stateChange,
+                                            container,
+                                            previousKey,
+                                            newKey,
+                                            previousView, newView, direction);
+                                    runningViewChangeHandler = viewChangeHandler;
+                                    if(metricsTracker != null) {
+                                        metricsTracker.onViewChangeStarted();
+                                    }
+                                    viewChangeHandler.performViewChange(container,
+                                            previousView,
+                                            newView,
+                                            direction,
+                                            new ViewChangeHandler.ViewChangeCallback() {
+                                                @Override
+                                                public void onCompleted() {
+                                                    runningViewChangeHandler = null;
+                                                    if(metricsTracker != null) {
+                                                        metricsTracker.onViewChangeCompleted();
+                                                    }
+                                                    updateViewCache(stateChange, previousKey, previousView);
+                                                    finishStateChange(stateChange,
+                                                            container,
+                                                            previousView,
+                                                            newView,
+                                                            completionCallback);
+                                                }
+                                            });
+                                }
+                            }
+                        });
+            }
+        };
+        if(cachedView != null) {
+            layoutInflationCallback.layoutInflationComplete(cachedView);
+            return;
+        }
         Context newContext = contextCreationStrategy.createContext(stateChange.createContext(baseContext, newKey),
                 newKey,
                 container,
                 stateChange);
+        if(metricsTracker != null) {
+            metricsTracker.onInflationStarted();
+        }
         layoutInflationStrategy.inflateLayout(stateChange,
                 newKey,
                 newContext,
                 container,
-                new LayoutInflationStrategy.Callback() {
-                    @Override
-                    public void layoutInflationComplete(@Nonnull final View newView) {
-                        statePersistenceStrategy.restoreViewFromState(newKey, newView);
-                        viewChangeStartListener.handleViewChangeStart(stateChange,
-                                container,
-                                previousView,
-                                newView,
-                                new ViewChangeStartListener.Callback() {
-                                    @Override
-                                    public void startViewChange() {
-                                        if(previousView == null) {
-                                            container.addView(newView);
-                                            finishStateChange(stateChange,
-                                                    container,
-                                                    previousView,
-                                                    newView,
-                                                    completionCallback);
-                                        } else {
-                                            final ViewChangeHandler viewChangeHandler = getViewChangeHandlerStrategy.getViewChangeHandler(
-                                                    stateChange,
-                                                    container,
-                                                    previousKey,
-                                                    newKey,
-                                                    previousView, newView, direction);
-                                            viewChangeHandler.performViewChange(container,
-                                                    previousView,
-                                                    newView,
-                                                    direction,
-                                                    new ViewChangeHandler.ViewChangeCallback() {
-                                                        @Override
-                                                        public void onCompleted() {
-                                                            finishStateChange(stateChange,
-                                                                    container,
-                                                                    previousView,
-                                                                    newView,
-                                                                    completionCallback);
-                                                        }
-                                                    });
-                                        }
-                                    }
-                                });
-                    }
-                });
+                layoutInflationCallback);
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.annotation.TargetApi;
+import android.app.Fragment;
+import android.app.FragmentManager;
+import android.app.FragmentTransaction;
+import android.os.Build;
+
+import com.zhuinden.simplestack.Backstack;
+import com.zhuinden.simplestack.SavedState;
+import com.zhuinden.simplestack.StateChange;
+import com.zhuinden.simplestack.StateChanger;
+import com.zhuinden.statebundle.StateBundle;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A state changer that shows the fragment of the top key, where all keys implement {@link DefaultFragmentKey}.
+ *
+ * The fragments of the most recent keys below the top are kept detached, up to the specified limit. The fragments of older keys are removed,
+ * and their state is kept in the bundle of the {@link SavedState} of their key (under a key namespaced to this class), so that they are recreated with their state when navigated back to.
+ *
+ * All operations of a state change are executed in a single fragment transaction.
+ */
+@TargetApi(13)
+public class FragmentStateChanger
+        implements StateChanger {
+    private static final String FRAGMENT_STATE = "com.zhuinden.simplestack.navigator.FragmentStateChanger.FRAGMENT_STATE"; // namespaced, as the bundle of the SavedState is also used by the app
+
+    private final Backstack backstack;
+    private final FragmentManager fragmentManager;
+    private final int containerId;
+    private final int maxDetachedFragments;
+
+    /**
+     * Creates a fragment state changer that keeps the fragments of the 3 most recent keys below the top detached.
+     *
+     * @param backstack       the backstack, which stores the state of removed fragments
+     * @param fragmentManager the fragment manager
+     * @param containerId     the id of the container
+     */
+    public FragmentStateChanger(@Nonnull Backstack backstack, @Nonnull FragmentManager fragmentManager, int containerId) {
+        this(backstack, fragmentManager, containerId, 3);
+    }
+
+    /**
+     * Creates a fragment state changer.
+     *
+     * @param backstack            the backstack, which stores the state of removed fragments
+     * @param fragmentManager      the fragment manager
+     * @param containerId          the id of the container
+     * @param maxDetachedFragments the number of most recent keys below the top whose fragments are kept detached
+     */
+    public FragmentStateChanger(@Nonnull Backstack backstack, @Nonnull FragmentManager fragmentManager, int containerId, int maxDetachedFragments) {
+        if(backstack == null) {
+            throw new NullPointerException("Backstack cannot be null!");
+        }
+        if(fragmentManager == null) {
+            throw new NullPointerException("Fragment manager cannot be null!");
+        }
+        if(maxDetachedFragments < 0) {
+            throw new IllegalArgumentException("Max detached fragments cannot be negative!");
+        }
+        this.backstack = backstack;
+        this.fragmentManager = fragmentManager;
+        this.containerId = containerId;
+        this.maxDetachedFragments = maxDetachedFragments;
+    }
+
+    @Override
+    public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+        fragmentManager.executePendingTransactions();
+
+        FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction().disallowAddToBackStack();
+        if(Build.VERSION.SDK_INT >= 26) {
+            fragmentTransaction.setReorderingAllowed(true);
+        }
+        onFragmentTransactionCreated(fragmentTransaction, stateChange);
+
+        List<DefaultFragmentKey> previousKeys = stateChange.getPreviousKeys();
+        List<DefaultFragmentKey> newKeys = stateChange.getNewKeys();
+        for(DefaultFragmentKey previousKey : previousKeys) {
+            if(!newKeys.contains(previousKey)) {
+                Fragment fragment = fragmentManager.findFragmentByTag(previousKey.getFragmentTag());
+                if(fragment != null) {
+                    fragmentTransaction.remove(fragment); // its state is cleared with the key
+                }
+            }
+        }
+
+        int detachedFragments = 0;
+        for(int i = newKeys.size() - 2; i >= 0; i--) { // most recent first
+            DefaultFragmentKey newKey = newKeys.get(i);
+            Fragment fragment = fragmentManager.findFragmentByTag(newKey.getFragmentTag());
+            if(fragment == null || fragment.isRemoving()) {
+                continue;
+            }
+            if(detachedFragments < maxDetachedFragments) {
+                detachedFragments++;
+                if(!fragment.isDetached()) {
+                    fragmentTransaction.detach(fragment);
+                }
+            } else {
+                Fragment.SavedState fragmentState = fragmentManager.saveFragmentInstanceState(fragment);
+                if(fragmentState != null) {
+                    SavedState savedState = backstack.getSavedState(newKey);
+                    if(savedState.getBundle() == null) {
+                        savedState.setBundle(new StateBundle());
+                    }
+                    savedState.getBundle().putParcelable(FRAGMENT_STATE, fragmentState);
+                }
+                fragmentTransaction.remove(fragment);
+            }
+        }
+
+        if(stateChange.isTopNewKeyEqualToPrevious()) { // keys below the top can still be removed
+            fragmentTransaction.commitAllowingStateLoss();
+            completionCallback.stateChangeComplete();
+            return;
+        }
+
+        DefaultFragmentKey topNewKey = stateChange.topNewKey();
+        Fragment fragment = fragmentManager.findFragmentByTag(topNewKey.getFragmentTag());
+        if(fragment != null && !fragment.isRemoving()) {
+            if(fragment.isDetached()) {
+                fragmentTransaction.attach(fragment);
+            }
+        } else {
+            fragment = topNewKey.createFragment();
+            StateBundle bundle = backstack.getSavedState(topNewKey).getBundle();
+            Fragment.SavedState fragmentState = bundle == null ? null : bundle.<Fragment.SavedState>getParcelable(FRAGMENT_STATE);
+            if(fragmentState != null) {
+                bundle.remove(FRAGMENT_STATE);
+                fragment.setInitialSavedState(fragmentState);
+            }
+            fragmentTransaction.add(containerId, fragment, topNewKey.getFragmentTag());
+        }
+        fragmentTransaction.commitAllowingStateLoss();
+        completionCallback.stateChangeComplete();
+    }
+
+    /**
+     * Called before the operations are added to the fragment transaction of the state change. This can be overridden to set animations.
+     *
+     * @param fragmentTransaction the fragment transaction
+     * @param stateChange         the state change
+     */
+    protected void onFragmentTransactionCreated(@Nonnull FragmentTransaction fragmentTransaction, @Nonnull StateChange stateChange) {
+        // override to use specific behavior
+    }
+}
@@ -20,6 +20,7 @@ import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.ContextWrapper;
+import android.os.Bundle;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -30,18 +31,21 @@ import com.zhuinden.simplestack.BackHandlingModel;
 import com.zhuinden.simplestack.Backstack;
 import com.zhuinden.simplestack.DefaultKeyFilter;
 import com.zhuinden.simplestack.DefaultKeyParceler;
-import com.zhuinden.simplestack.DefaultStateClearStrategy;
 import com.zhuinden.simplestack.GlobalServices;
+import com.zhuinden.simplestack.IncrementalStateClearStrategy;
 import com.zhuinden.simplestack.KeyFilter;
 import com.zhuinden.simplestack.KeyParceler;
+import com.zhuinden.simplestack.NavigationJournal;
 import com.zhuinden.simplestack.SavedState;
 import com.zhuinden.simplestack.ScopeKey;
 import com.zhuinden.simplestack.ScopeLookupMode;
 import com.zhuinden.simplestack.ScopedServices;
 import com.zhuinden.simplestack.StateChanger;
+import com.zhuinden.statebundle.StateBundle;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -51,6 +55,8 @@ import javax.annotation.Nullable;
  * Essentially, a replacement for BackstackDelegate.
  *
  * It can be either configured via {@link Navigator#configure()}, or installed with default settings using {@link Navigator#install(Activity, ViewGroup, List)}.
+ *
+ * To avoid the retained fragment, the backstack can be held by a {@link RetainedBackstackHost} instead, see {@link Installer#installRetained(Activity, ViewGroup, List, Bundle, RetainedBackstackHost)}.
  */
 @TargetApi(11)
 public class Navigator {
@@ -66,10 +72,13 @@ public class Navigator {
         BackHandlingModel backHandlingModel = BackHandlingModel.EVENT_BUBBLING;
         KeyFilter keyFilter = new DefaultKeyFilter();
         KeyParceler keyParceler = new DefaultKeyParceler();
-        Backstack.StateClearStrategy stateClearStrategy = new DefaultStateClearStrategy();
+        Backstack.StateClearStrategy stateClearStrategy = new IncrementalStateClearStrategy();
+        NavigationJournal navigationJournal = null;
         ScopedServices scopedServices = null;
         GlobalServices globalServices = null;
         GlobalServices.Factory globalServiceFactory = null;
+        Executor serviceExecutor = null;
+        Executor serviceCallbackExecutor = null;
         boolean isInitializeDeferred = false;
         boolean shouldPersistContainerChild = false;
         List<Backstack.CompletionListener> stateChangeCompletionListeners = new LinkedList<>();
@@ -155,6 +164,53 @@ public class Navigator {
             return this;
         }
 
+        /**
+         * Sets the navigation journal, which records the history into a file, so that it can be restored on cold start even if the saved instance state was lost.
+         * <p>
+         * The journal is cleared when the Activity is finishing.
+         *
+         * @param navigationJournal if set, it cannot be null
+         * @return the installer
+         */
+        @Nonnull
+        public Installer setNavigationJournal(@Nonnull NavigationJournal navigationJournal) {
+            if(navigationJournal == null) {
+                throw new IllegalArgumentException("If set, NavigationJournal cannot be null!");
+            }
+            this.navigationJournal = navigationJournal;
+            return this;
+        }
+
+        /**
+         * Sets the executor used to create services added with {@link com.zhuinden.simplestack.ServiceBinder#addServiceFactory(String, List, com.zhuinden.simplestack.ServiceBinder.ServiceFactory)}.
+         *
+         * @param serviceExecutor if set, it cannot be null
+         * @return the installer
+         */
+        @Nonnull
+        public Installer setServiceExecutor(@Nonnull Executor serviceExecutor) {
+            if(serviceExecutor == null) {
+                throw new IllegalArgumentException("If set, service executor cannot be null!");
+            }
+            this.serviceExecutor = serviceExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the executor used to deliver the lifecycle callbacks of services that implement {@link com.zhuinden.simplestack.ScopedServices.BackgroundRegistered}.
+         *
+         * @param serviceCallbackExecutor if set, it cannot be null
+         * @return the installer
+         */
+        @Nonnull
+        public Installer setServiceCallbackExecutor(@Nonnull Executor serviceCallbackExecutor) {
+            if(serviceCallbackExecutor == null) {
+                throw new IllegalArgumentException("If set, service callback executor cannot be null!");
+            }
+            this.serviceCallbackExecutor = serviceCallbackExecutor;
+            return this;
+        }
+
         /**
          * Sets the scoped services.
          *
@@ -257,6 +313,78 @@ public class Navigator {
             }
             return Navigator.install(this, activity, container, initialKeys);
         }
+
+        /**
+         * Installs the {@link RetainedBackstackHost}, which holds the backstack without adding a retained fragment.
+         *
+         * The activity must implement {@link RetainedBackstackHost.Owner}, and it must return the host from onRetainNonConfigurationInstance().
+         * After a configuration change, the retained host must be passed back to this method.
+         *
+         * @param activity              the activity
+         * @param container             the container
+         * @param initialKeys           the initial keys
+         * @param savedInstanceState    the saved instance state of the activity
+         * @param retainedBackstackHost the host retained across the configuration change, or null
+         * @return the retained backstack host
+         */
+        @TargetApi(14)
+        @Nonnull
+        public RetainedBackstackHost installRetained(@Nonnull Activity activity, @Nonnull ViewGroup container, @Nonnull List<?> initialKeys, @Nullable Bundle savedInstanceState, @Nullable RetainedBackstackHost retainedBackstackHost) {
+            if(activity == null) {
+                throw new IllegalArgumentException("Activity cannot be null!");
+            }
+            if(!(activity instanceof RetainedBackstackHost.Owner)) {
+                throw new IllegalArgumentException("The activity must implement RetainedBackstackHost.Owner!");
+            }
+            if(container == null) {
+                throw new IllegalArgumentException("Container cannot be null!");
+            }
+            if(initialKeys == null || initialKeys.isEmpty()) {
+                throw new IllegalArgumentException("Initial keys cannot be null!");
+            }
+            if(stateChanger == null) {
+                shouldPersistContainerChild = true;
+                stateChanger = DefaultStateChanger.create(activity, container);
+            }
+            if(retainedBackstackHost == null) {
+                retainedBackstackHost = new RetainedBackstackHost(activity.getApplication());
+                retainedBackstackHost.backstack = createBackstack(initialKeys, savedInstanceState);
+            }
+            retainedBackstackHost.attach(this, activity, container); // the host can be found for the activity before the initial state change
+            retainedBackstackHost.initialize(isInitializeDeferred);
+            return retainedBackstackHost;
+        }
+
+        // shared by the BackstackHost and the RetainedBackstackHost
+        Backstack createBackstack(@Nonnull List<?> initialKeys, @Nullable Bundle savedInstanceState) {
+            Backstack backstack = new Backstack();
+            backstack.setBackHandlingModel(backHandlingModel);
+            backstack.setKeyFilter(keyFilter);
+            backstack.setKeyParceler(keyParceler);
+            backstack.setStateClearStrategy(stateClearStrategy);
+            backstack.setNavigationJournal(navigationJournal);
+            if(scopedServices != null) {
+                backstack.setScopedServices(scopedServices);
+            }
+            if(globalServices != null) {
+                backstack.setGlobalServices(globalServices);
+            }
+            if(globalServiceFactory != null) {
+                backstack.setGlobalServices(globalServiceFactory);
+            }
+            backstack.setServiceExecutor(serviceExecutor);
+            backstack.setServiceCallbackExecutor(serviceCallbackExecutor);
+            backstack.setup(initialKeys);
+            for(Backstack.CompletionListener completionListener : stateChangeCompletionListeners) {
+                backstack.addStateChangeCompletionListener(completionListener);
+            }
+            if(savedInstanceState != null) {
+                backstack.fromBundle(savedInstanceState.<StateBundle>getParcelable("NAVIGATOR_STATE_BUNDLE"));
+            } else {
+                backstack.restoreFromJournal();
+            }
+            return backstack;
+        }
     }
 
     /**
@@ -272,7 +400,7 @@ public class Navigator {
     /**
      * Installs the {@link Navigator} with default parameters.
      *
-     * This means that {@link DefaultStateChanger} and DefaultStateClearStrategy are used.
+     * This means that {@link DefaultStateChanger} and IncrementalStateClearStrategy are used.
      *
      * @param activity    the activity which will host the backstack
      * @param container   the container in which custom viewgroups are hosted (to save its child's state in onSaveInstanceState())
@@ -299,15 +427,8 @@ public class Navigator {
             activity.getFragmentManager().beginTransaction().add(backstackHost, "NAVIGATOR_BACKSTACK_HOST").commit();
             activity.getFragmentManager().executePendingTransactions();
         }
+        backstackHost.installer = installer;
         backstackHost.stateChanger = installer.stateChanger;
-        backstackHost.backHandlingModel = installer.backHandlingModel;
-        backstackHost.keyFilter = installer.keyFilter;
-        backstackHost.keyParceler = installer.keyParceler;
-        backstackHost.stateClearStrategy = installer.stateClearStrategy;
-        backstackHost.scopedServices = installer.scopedServices;
-        backstackHost.globalServices = installer.globalServices;
-        backstackHost.globalServiceFactory = installer.globalServiceFactory;
-        backstackHost.stateChangeCompletionListeners = installer.stateChangeCompletionListeners;
         backstackHost.shouldPersistContainerChild = installer.shouldPersistContainerChild;
         backstackHost.container = container;
         backstackHost.initialKeys = initialKeys;
@@ -321,6 +442,11 @@ public class Navigator {
      */
     public static void executeDeferredInitialization(@Nonnull Context context) {
         Activity activity = findActivity(context);
+        RetainedBackstackHost retainedBackstackHost = findRetainedBackstackHost(activity);
+        if(retainedBackstackHost != null) {
+            retainedBackstackHost.initialize(false);
+            return;
+        }
         BackstackHost backstackHost = findBackstackHost(activity);
         backstackHost.initialize(false);
     }
@@ -501,8 +627,7 @@ public class Navigator {
      */
     @Nonnull
     public static Backstack getBackstack(@Nonnull Context context) {
-        BackstackHost backstackHost = getBackstackHost(context);
-        return backstackHost.getBackstack();
+        return findBackstack(findActivity(context));
     }
 
     /**
@@ -513,8 +638,7 @@ public class Navigator {
     public static void persistViewToState(@Nullable View view) {
         if(view != null) {
             Context context = view.getContext();
-            BackstackHost backstackHost = getBackstackHost(context);
-            backstackHost.getBackstack().persistViewToState(view);
+            getBackstack(context).persistViewToState(view);
         }
     }
 
@@ -528,8 +652,7 @@ public class Navigator {
             throw new NullPointerException("You cannot restore state into null view!");
         }
         Context context = view.getContext();
-        BackstackHost backstackHost = getBackstackHost(context);
-        backstackHost.getBackstack().restoreViewFromState(view);
+        getBackstack(context).restoreViewFromState(view);
     }
 
     /**
@@ -547,8 +670,7 @@ public class Navigator {
         if(key == null) {
             throw new NullPointerException("key cannot be null");
         }
-        BackstackHost backstackHost = getBackstackHost(context);
-        return backstackHost.getBackstack().getSavedState(key);
+        return getBackstack(context).getSavedState(key);
     }
 
     /**
@@ -558,13 +680,33 @@ public class Navigator {
      * @return whether navigator is available
      */
     public static boolean isNavigatorAvailable(@Nonnull Activity activity) {
-        return findBackstackHost(activity) != null;
+        return findRetainedBackstackHost(activity) != null || findBackstackHost(activity) != null;
     }
 
     private static BackstackHost findBackstackHost(Activity activity) {
         return (BackstackHost) activity.getFragmentManager().findFragmentByTag("NAVIGATOR_BACKSTACK_HOST");
     }
 
+    @Nullable
+    private static RetainedBackstackHost findRetainedBackstackHost(Activity activity) {
+        RetainedBackstackHost retainedBackstackHost = RetainedBackstackHost.findAttachedHost(activity);
+        if(retainedBackstackHost != null) {
+            return retainedBackstackHost;
+        }
+        if(activity instanceof RetainedBackstackHost.Owner) {
+            return ((RetainedBackstackHost.Owner) activity).getRetainedBackstackHost();
+        }
+        return null;
+    }
+
+    private static Backstack findBackstack(Activity activity) {
+        RetainedBackstackHost retainedBackstackHost = findRetainedBackstackHost(activity);
+        if(retainedBackstackHost != null) {
+            return retainedBackstackHost.getBackstack(); // no fragment lookup
+        }
+        return findBackstackHost(activity).getBackstack();
+    }
+
     /**
      * Attempt to find the Activity in the Context through the chain of its base contexts.
      *
@@ -592,9 +734,4 @@ public class Navigator {
             return findActivity(baseContext);
         }
     }
-
-    private static BackstackHost getBackstackHost(Context context) {
-        Activity activity = findActivity(context);
-        return findBackstackHost(activity);
-    }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.view.ViewGroup;
+
+import com.zhuinden.simplestack.Backstack;
+import com.zhuinden.simplestack.StateChanger;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the {@link Backstack} of the {@link Navigator} without a retained fragment, installed with {@link Navigator.Installer#installRetained(Activity, ViewGroup, java.util.List, Bundle, RetainedBackstackHost)}.
+ *
+ * The Activity must implement {@link Owner}, and return this host from onRetainNonConfigurationInstance() (or onRetainCustomNonConfigurationInstance()),
+ * so that it survives configuration changes. The lifecycle integration is done with {@link Application.ActivityLifecycleCallbacks}.
+ */
+@TargetApi(14)
+public final class RetainedBackstackHost {
+    /**
+     * Must be implemented by the Activity that uses a {@link RetainedBackstackHost}, so that the static methods of {@link Navigator} can find it.
+     *
+     * While the host is attached to the activity (including the initial state change that runs before installRetained() returns), {@link Navigator} finds it without the owner.
+     */
+    public interface Owner {
+        /**
+         * Returns the host returned by {@link Navigator.Installer#installRetained(Activity, ViewGroup, java.util.List, Bundle, RetainedBackstackHost)}.
+         *
+         * @return the retained backstack host
+         */
+        @Nullable
+        RetainedBackstackHost getRetainedBackstackHost();
+    }
+
+    private static final Map<Activity, RetainedBackstackHost> attachedHosts = new WeakHashMap<>(); // accessed on the main thread
+
+    @Nullable
+    static RetainedBackstackHost findAttachedHost(@Nonnull Activity activity) {
+        return attachedHosts.get(activity);
+    }
+
+    private final Application application;
+    Navigator.Installer installer;
+    StateChanger stateChanger;
+    Activity activity;
+    ViewGroup container;
+
+    Backstack backstack;
+
+    private final Application.ActivityLifecycleCallbacks activityLifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityCreated(Activity a, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity a) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity a) {
+            if(a == activity) {
+                backstack.reattachStateChanger();
+            }
+        }
+
+        @Override
+        public void onActivityPaused(Activity a) {
+            if(a == activity) {
+                backstack.detachStateChanger();
+            }
+        }
+
+        @Override
+        public void onActivityStopped(Activity a) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity a, Bundle outState) {
+            if(a == activity) {
+                if(installer.shouldPersistContainerChild) {
+                    Navigator.persistViewToState(container.getChildAt(0));
+                }
+                outState.putParcelable("NAVIGATOR_STATE_BUNDLE", backstack.toBundle());
+            }
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity a) {
+            if(a == activity) {
+                onDestroy(a.isChangingConfigurations());
+            }
+        }
+    };
+
+    private final ComponentCallbacks2 componentCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            backstack.onTrimMemory(level);
+            if(stateChanger instanceof DefaultStateChanger) {
+                ((DefaultStateChanger) stateChanger).onTrimMemory(level);
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+        }
+    };
+
+    RetainedBackstackHost(@Nonnull Application application) {
+        this.application = application;
+        application.registerComponentCallbacks(componentCallbacks);
+    }
+
+    void attach(@Nonnull Navigator.Installer installer, @Nonnull Activity activity, @Nonnull ViewGroup container) {
+        this.installer = installer;
+        this.stateChanger = installer.stateChanger;
+        this.activity = activity;
+        this.container = container;
+        attachedHosts.put(activity, this); // the owner cannot return the host until installRetained() returns
+        application.registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
+    }
+
+    Backstack initialize(boolean isInitializeDeferred) {
+        if(!isInitializeDeferred) {
+            backstack.setStateChanger(stateChanger);
+        }
+        return backstack;
+    }
+
+    private void onDestroy(boolean isChangingConfigurations) {
+        application.unregisterActivityLifecycleCallbacks(activityLifecycleCallbacks);
+        attachedHosts.remove(activity);
+        backstack.executePendingStateChange();
+
+        if(stateChanger instanceof DefaultStateChanger) {
+            ((DefaultStateChanger) stateChanger).clearViewCache(); // the views belong to the destroyed container
+        }
+        stateChanger = null;
+        container = null;
+        activity = null;
+
+        if(!isChangingConfigurations) {
+            application.unregisterComponentCallbacks(componentCallbacks);
+            backstack.finalizeScopes();
+            if(installer.navigationJournal != null) {
+                installer.navigationJournal.clear(); // the activity is finishing, so the history should not be restored
+            }
+        }
+    }
+
+    /**
+     * Returns the backstack held by this host.
+     *
+     * @return the backstack
+     */
+    @Nonnull
+    public Backstack getBackstack() {
+        return backstack;
+    }
+}
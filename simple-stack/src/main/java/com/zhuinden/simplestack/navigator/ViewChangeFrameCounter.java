@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.annotation.TargetApi;
+import android.view.Choreographer;
+
+/**
+ * Counts the rendered and dropped frames of a view change using {@link Choreographer}.
+ *
+ * This class must only be loaded on API 16 and above, so it is only created behind a version check by {@link ViewChangeMetricsTracker}.
+ */
+@TargetApi(16)
+final class ViewChangeFrameCounter
+        implements Choreographer.FrameCallback {
+    private final long frameIntervalNanos;
+
+    private boolean isCounting = false;
+    private long lastFrameTimeNanos = -1L;
+    private int frameCount = 0;
+    private int droppedFrameCount = 0;
+
+    ViewChangeFrameCounter(long frameIntervalNanos) {
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    void start() {
+        isCounting = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop() {
+        if(isCounting) {
+            isCounting = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    int getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if(!isCounting) {
+            return;
+        }
+        if(lastFrameTimeNanos != -1L) {
+            long skippedFrames = (frameTimeNanos - lastFrameTimeNanos) / frameIntervalNanos - 1;
+            if(skippedFrames > 0) {
+                droppedFrameCount += skippedFrames;
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        frameCount++;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
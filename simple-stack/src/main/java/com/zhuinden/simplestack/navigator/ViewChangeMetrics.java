@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Receives the measurements of each view change performed by the {@link DefaultStateChanger}.
+ *
+ * It can be set with {@link DefaultStateChanger.Configurer#setViewChangeMetrics(ViewChangeMetrics)}. If it is not set, then nothing is measured.
+ *
+ * See {@link ViewChangeMetricsAggregator} for percentiles per key type.
+ */
+public interface ViewChangeMetrics {
+    /**
+     * The measurements of a single view change. All durations are in nanoseconds.
+     */
+    final class Sample {
+        private final Object previousKey;
+        private final Object newKey;
+        private final long inflationTimeNanos;
+        private final long stateRestoreTimeNanos;
+        private final long timeToFirstDrawNanos;
+        private final long viewChangeDurationNanos;
+        private final int frameCount;
+        private final int droppedFrameCount;
+
+        Sample(@Nullable Object previousKey, @Nonnull Object newKey, long inflationTimeNanos, long stateRestoreTimeNanos, long timeToFirstDrawNanos, long viewChangeDurationNanos, int frameCount, int droppedFrameCount) {
+            this.previousKey = previousKey;
+            this.newKey = newKey;
+            this.inflationTimeNanos = inflationTimeNanos;
+            this.stateRestoreTimeNanos = stateRestoreTimeNanos;
+            this.timeToFirstDrawNanos = timeToFirstDrawNanos;
+            this.viewChangeDurationNanos = viewChangeDurationNanos;
+            this.frameCount = frameCount;
+            this.droppedFrameCount = droppedFrameCount;
+        }
+
+        /**
+         * The previous key, or null if there was no previous view.
+         *
+         * @return the previous key
+         */
+        @Nullable
+        public Object getPreviousKey() {
+            return previousKey;
+        }
+
+        /**
+         * The new key.
+         *
+         * @return the new key
+         */
+        @Nonnull
+        public Object getNewKey() {
+            return newKey;
+        }
+
+        /**
+         * The time between starting the layout inflation and receiving the new view. It is 0 if a kept or prefetched view was used.
+         *
+         * @return the inflation time
+         */
+        public long getInflationTimeNanos() {
+            return inflationTimeNanos;
+        }
+
+        /**
+         * The time spent in {@link DefaultStateChanger.StatePersistenceStrategy#restoreViewFromState(Object, android.view.View)}.
+         *
+         * @return the state restore time
+         */
+        public long getStateRestoreTimeNanos() {
+            return stateRestoreTimeNanos;
+        }
+
+        /**
+         * The time between the start of the view change and the first draw of the new view.
+         * <p>
+         * It is -1 if the new view was not drawn: either it was not shown when the view change completed, or the next view change started first.
+         *
+         * @return the time to first draw
+         */
+        public long getTimeToFirstDrawNanos() {
+            return timeToFirstDrawNanos;
+        }
+
+        /**
+         * The time the {@link ViewChangeHandler} took to complete the view change, typically the duration of the animation.
+         *
+         * @return the view change duration
+         */
+        public long getViewChangeDurationNanos() {
+            return viewChangeDurationNanos;
+        }
+
+        /**
+         * The number of frames rendered while the {@link ViewChangeHandler} was running.
+         *
+         * @return the frame count
+         */
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        /**
+         * The number of frames that were skipped while the {@link ViewChangeHandler} was running.
+         *
+         * @return the dropped frame count
+         */
+        public int getDroppedFrameCount() {
+            return droppedFrameCount;
+        }
+
+        @Override
+        public String toString() {
+            return "ViewChangeMetrics.Sample{" +
+                    "previousKey=" + previousKey +
+                    ", newKey=" + newKey +
+                    ", inflationTimeNanos=" + inflationTimeNanos +
+                    ", stateRestoreTimeNanos=" + stateRestoreTimeNanos +
+                    ", timeToFirstDrawNanos=" + timeToFirstDrawNanos +
+                    ", viewChangeDurationNanos=" + viewChangeDurationNanos +
+                    ", frameCount=" + frameCount +
+                    ", droppedFrameCount=" + droppedFrameCount +
+                    '}';
+        }
+    }
+
+    /**
+     * Called on the main thread when the view change is complete and the new view has been drawn.
+     * <p>
+     * If the new view is not shown when the view change completes, or the next view change starts before it is drawn, then it is called without waiting for the draw.
+     *
+     * @param sample the measurements of the view change
+     */
+    void onViewChangeMeasured(@Nonnull Sample sample);
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link ViewChangeMetrics} that keeps the most recent samples for each key type (the class of the new key), and reports percentiles of them.
+ *
+ * The samples are recorded on the main thread, but the percentiles can be read from any thread.
+ */
+public class ViewChangeMetricsAggregator
+        implements ViewChangeMetrics {
+    /**
+     * The measured values of {@link ViewChangeMetrics.Sample}.
+     */
+    public enum Metric {
+        INFLATION_TIME,
+        STATE_RESTORE_TIME,
+        TIME_TO_FIRST_DRAW,
+        VIEW_CHANGE_DURATION,
+        DROPPED_FRAMES;
+
+        long valueOf(Sample sample) {
+            switch(this) {
+                case INFLATION_TIME:
+                    return sample.getInflationTimeNanos();
+                case STATE_RESTORE_TIME:
+                    return sample.getStateRestoreTimeNanos();
+                case TIME_TO_FIRST_DRAW:
+                    return sample.getTimeToFirstDrawNanos();
+                case VIEW_CHANGE_DURATION:
+                    return sample.getViewChangeDurationNanos();
+                case DROPPED_FRAMES:
+                    return sample.getDroppedFrameCount();
+                default:
+                    throw new IllegalArgumentException("Unknown metric [" + this + "]");
+            }
+        }
+    }
+
+    private final int maxSamplesPerKeyType;
+    private final Map<Class<?>, ArrayDeque<Sample>> samplesByKeyType = new LinkedHashMap<>();
+
+    /**
+     * Creates an aggregator that keeps the last 100 samples per key type.
+     */
+    public ViewChangeMetricsAggregator() {
+        this(100);
+    }
+
+    /**
+     * Creates an aggregator.
+     *
+     * @param maxSamplesPerKeyType the number of most recent samples kept per key type
+     */
+    public ViewChangeMetricsAggregator(int maxSamplesPerKeyType) {
+        if(maxSamplesPerKeyType <= 0) {
+            throw new IllegalArgumentException("Max samples per key type must be positive!");
+        }
+        this.maxSamplesPerKeyType = maxSamplesPerKeyType;
+    }
+
+    @Override
+    public synchronized void onViewChangeMeasured(@Nonnull Sample sample) {
+        Class<?> keyType = sample.getNewKey().getClass();
+        ArrayDeque<Sample> samples = samplesByKeyType.get(keyType);
+        if(samples == null) {
+            samples = new ArrayDeque<>();
+            samplesByKeyType.put(keyType, samples);
+        }
+        if(samples.size() == maxSamplesPerKeyType) {
+            samples.removeFirst();
+        }
+        samples.addLast(sample);
+    }
+
+    /**
+     * Returns the key types that have samples.
+     *
+     * @return the key types
+     */
+    @Nonnull
+    public synchronized Set<Class<?>> getKeyTypes() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(samplesByKeyType.keySet()));
+    }
+
+    /**
+     * Returns the number of samples kept for the key type.
+     *
+     * @param keyType the key type
+     * @return the sample count
+     */
+    public synchronized int getSampleCount(@Nonnull Class<?> keyType) {
+        ArrayDeque<Sample> samples = samplesByKeyType.get(keyType);
+        return samples == null ? 0 : samples.size();
+    }
+
+    /**
+     * Returns the percentile of the metric among the samples of the key type, using the nearest-rank method.
+     *
+     * @param keyType    the key type
+     * @param metric     the metric
+     * @param percentile the percentile, greater than 0 and at most 100
+     * @return the value at the percentile, or 0 if there are no samples for the key type. Time to first draw is only considered for views that were drawn.
+     */
+    public synchronized long getPercentile(@Nonnull Class<?> keyType, @Nonnull Metric metric, double percentile) {
+        if(keyType == null) {
+            throw new NullPointerException("Key type cannot be null!");
+        }
+        if(metric == null) {
+            throw new NullPointerException("Metric cannot be null!");
+        }
+        if(percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be greater than 0 and at most 100, but was [" + percentile + "]");
+        }
+        ArrayDeque<Sample> samples = samplesByKeyType.get(keyType);
+        if(samples == null || samples.isEmpty()) {
+            return 0;
+        }
+        long[] values = new long[samples.size()];
+        int i = 0;
+        for(Sample sample : samples) {
+            long value = metric.valueOf(sample);
+            if(value >= 0) { // -1 if the view was not drawn
+                values[i++] = value;
+            }
+        }
+        if(i == 0) {
+            return 0;
+        }
+        values = Arrays.copyOf(values, i);
+        Arrays.sort(values);
+        int rank = (int) Math.ceil(percentile / 100 * values.length);
+        return values[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Discards all samples.
+     */
+    public synchronized void clear() {
+        samplesByKeyType.clear();
+    }
+}
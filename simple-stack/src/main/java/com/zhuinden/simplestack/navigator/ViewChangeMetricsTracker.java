@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Measures a single view change of the {@link DefaultStateChanger}, and reports it to the {@link ViewChangeMetrics}.
+ *
+ * Frames are only counted on API 16 and above, where {@link ViewChangeFrameCounter} can be used.
+ */
+final class ViewChangeMetricsTracker {
+    private final ViewChangeMetrics viewChangeMetrics;
+    private final Object previousKey;
+    private final Object newKey;
+    private final long frameIntervalNanos;
+
+    private final long startTime = System.nanoTime();
+
+    private long inflationStartTime = -1L;
+    private long inflationTimeNanos = 0L;
+    private long stateRestoreStartTime = -1L;
+    private long stateRestoreTimeNanos = 0L;
+    private long timeToFirstDrawNanos = -1L;
+    private long viewChangeStartTime = -1L;
+    private long viewChangeDurationNanos = -1L;
+
+    private View newView;
+    private ViewTreeObserver.OnPreDrawListener firstDrawListener;
+
+    private ViewChangeFrameCounter frameCounter;
+
+    private boolean isReported = false;
+
+    ViewChangeMetricsTracker(@Nonnull ViewChangeMetrics viewChangeMetrics, @Nullable Object previousKey, @Nonnull Object newKey, long frameIntervalNanos) {
+        this.viewChangeMetrics = viewChangeMetrics;
+        this.previousKey = previousKey;
+        this.newKey = newKey;
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    void onInflationStarted() {
+        inflationStartTime = System.nanoTime();
+    }
+
+    void onInflationCompleted() {
+        if(inflationStartTime != -1L) {
+            inflationTimeNanos = System.nanoTime() - inflationStartTime;
+        }
+    }
+
+    void onStateRestoreStarted() {
+        stateRestoreStartTime = System.nanoTime();
+    }
+
+    void onStateRestoreCompleted() {
+        stateRestoreTimeNanos = System.nanoTime() - stateRestoreStartTime;
+    }
+
+    void trackFirstDraw(@Nonnull final View newView) {
+        this.newView = newView;
+        this.firstDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                removeFirstDrawListener();
+                timeToFirstDrawNanos = System.nanoTime() - startTime;
+                reportIfComplete();
+                return true;
+            }
+        };
+        newView.getViewTreeObserver().addOnPreDrawListener(firstDrawListener);
+    }
+
+    void onViewChangeStarted() {
+        viewChangeStartTime = System.nanoTime();
+        if(Build.VERSION.SDK_INT >= 16) {
+            frameCounter = new ViewChangeFrameCounter(frameIntervalNanos);
+            frameCounter.start();
+        }
+    }
+
+    void onViewChangeCompleted() {
+        viewChangeDurationNanos = viewChangeStartTime == -1L ? 0L : System.nanoTime() - viewChangeStartTime;
+        if(frameCounter != null) {
+            frameCounter.stop();
+        }
+        if(timeToFirstDrawNanos == -1L && (newView == null || !newView.isShown())) {
+            report(); // a view that is not shown is not drawn
+            return;
+        }
+        reportIfComplete();
+    }
+
+    /**
+     * Reports the view change if it is still waiting for the first draw of the new view, as the next view change has started.
+     */
+    void onNextViewChangeStarted() {
+        if(viewChangeDurationNanos != -1L) {
+            report();
+        }
+    }
+
+    private void removeFirstDrawListener() {
+        if(firstDrawListener == null) {
+            return;
+        }
+        final ViewTreeObserver observer = newView.getViewTreeObserver();
+        if(observer.isAlive()) {
+            observer.removeOnPreDrawListener(firstDrawListener);
+        }
+        firstDrawListener = null;
+    }
+
+    private void reportIfComplete() {
+        if(timeToFirstDrawNanos == -1L || viewChangeDurationNanos == -1L) {
+            return;
+        }
+        report();
+    }
+
+    private void report() {
+        if(isReported) {
+            return;
+        }
+        isReported = true;
+        removeFirstDrawListener();
+        viewChangeMetrics.onViewChangeMeasured(new ViewChangeMetrics.Sample(previousKey,
+                newKey,
+                inflationTimeNanos,
+                stateRestoreTimeNanos,
+                timeToFirstDrawNanos,
+                viewChangeDurationNanos,
+                frameCounter == null ? 0 : frameCounter.getFrameCount(),
+                frameCounter == null ? 0 : frameCounter.getDroppedFrameCount()));
+    }
+}
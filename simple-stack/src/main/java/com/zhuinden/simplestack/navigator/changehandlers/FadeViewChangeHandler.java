@@ -28,7 +28,12 @@ import javax.annotation.Nonnull;
  */
 @TargetApi(11)
 public final class FadeViewChangeHandler
-        extends AnimatorViewChangeHandler {
+        extends InterruptibleAnimatorViewChangeHandler {
+    @Override
+    protected boolean shouldWaitForMeasure() {
+        return false;
+    }
+
     @Override
     protected Animator createAnimator(@Nonnull View previousView, @Nonnull View newView, int direction) {
         AnimatorSet set = new AnimatorSet();
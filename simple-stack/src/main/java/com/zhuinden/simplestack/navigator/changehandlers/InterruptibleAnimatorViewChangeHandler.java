@@ -0,0 +1,226 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator.changehandlers;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.annotation.TargetApi;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.Interpolator;
+
+import com.zhuinden.simplestack.navigator.ViewChangeHandler;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Convenience base class to support view animations using Animator, which can be finished early with {@link #end(ViewGroup)}.
+ *
+ * Both views are rendered in hardware layers while the animation is running.
+ *
+ * The running view change is tracked per container, so the same instance can be shared across keys and containers.
+ *
+ * The {@link com.zhuinden.simplestack.navigator.DefaultStateChanger} ends the running animation when a new navigation preempts the view change.
+ */
+@TargetApi(11)
+public abstract class InterruptibleAnimatorViewChangeHandler
+        implements ViewChangeHandler {
+    private final class RunningViewChange
+            extends AnimatorListenerAdapter {
+        private final ViewGroup container;
+        private final View previousView;
+        private final View newView;
+        private final int direction;
+        private final ViewChangeCallback viewChangeCallback;
+
+        private int previousViewLayerType;
+        private int newViewLayerType;
+
+        private Animator animator;
+        private boolean isCompleted;
+
+        RunningViewChange(ViewGroup container, View previousView, View newView, int direction, ViewChangeCallback viewChangeCallback) {
+            this.container = container;
+            this.previousView = previousView;
+            this.newView = newView;
+            this.direction = direction;
+            this.viewChangeCallback = viewChangeCallback;
+        }
+
+        void start() {
+            if(isCompleted) {
+                return; // ended before the views were measured
+            }
+            previousViewLayerType = previousView.getLayerType();
+            newViewLayerType = newView.getLayerType();
+            previousView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            newView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+            animator = createAnimator(previousView, newView, direction);
+            animator.addListener(this);
+            if(duration != null) {
+                animator.setDuration(duration);
+            }
+            if(interpolator != null) {
+                animator.setInterpolator(interpolator);
+            }
+            if(startDelay != null) {
+                animator.setStartDelay(startDelay);
+            }
+            animator.start();
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            complete();
+        }
+
+        void end() {
+            if(animator != null) {
+                animator.end(); // jumps to the end values, and calls onAnimationEnd
+            }
+            complete();
+        }
+
+        private void complete() {
+            if(isCompleted) {
+                return;
+            }
+            isCompleted = true;
+            if(animator != null) {
+                previousView.setLayerType(previousViewLayerType, null);
+                newView.setLayerType(newViewLayerType, null);
+            }
+            container.removeView(previousView);
+            resetPreviousViewValues(previousView);
+            if(runningViewChanges.get(container) == this) {
+                runningViewChanges.remove(container);
+            }
+            viewChangeCallback.onCompleted();
+        }
+    }
+
+    private final Map<ViewGroup, RunningViewChange> runningViewChanges = new IdentityHashMap<>();
+
+    @Override
+    public void performViewChange(@Nonnull ViewGroup container, @Nonnull View previousView, @Nonnull View newView, int direction, @Nonnull ViewChangeCallback viewChangeCallback) {
+        container.addView(newView);
+        final RunningViewChange viewChange = new RunningViewChange(container, previousView, newView, direction, viewChangeCallback);
+        runningViewChanges.put(container, viewChange);
+        if(!shouldWaitForMeasure()) {
+            viewChange.start();
+            return;
+        }
+        ViewUtils.waitForMeasure(newView, new ViewUtils.OnMeasuredCallback() {
+            @Override
+            public void onMeasured(View view, int width, int height) {
+                viewChange.start();
+            }
+        });
+    }
+
+    /**
+     * Returns if a view change of this handler is in progress in the container.
+     *
+     * @param container the container
+     * @return if a view change is in progress
+     */
+    public boolean isRunning(@Nonnull ViewGroup container) {
+        return runningViewChanges.containsKey(container);
+    }
+
+    /**
+     * Returns the animator of the view change in progress in the container, or null if there is none, or if the animator has not started yet.
+     *
+     * @param container the container
+     * @return the running animator
+     */
+    @Nullable
+    public Animator getRunningAnimator(@Nonnull ViewGroup container) {
+        RunningViewChange viewChange = runningViewChanges.get(container);
+        return viewChange == null ? null : viewChange.animator;
+    }
+
+    /**
+     * Finishes the view change in progress in the container immediately, with the views in their end state.
+     *
+     * @param container the container
+     */
+    public void end(@Nonnull ViewGroup container) {
+        RunningViewChange viewChange = runningViewChanges.get(container);
+        if(viewChange != null) {
+            viewChange.end();
+        }
+    }
+
+    /**
+     * Returns if the animation can start only after the new view is measured. If the animator does not depend on the size of the views, this can return false.
+     *
+     * @return if the animation waits for the measure of the new view
+     */
+    protected boolean shouldWaitForMeasure() {
+        return true;
+    }
+
+    protected abstract Animator createAnimator(@Nonnull View previousView, @Nonnull View newView, int direction);
+
+    // stuff
+    private Long startDelay = null;
+
+    private Interpolator interpolator = null;
+
+    private Long duration = null;
+
+    // fluff
+
+    @Nullable
+    public Long getStartDelay() {
+        return startDelay;
+    }
+
+    public InterruptibleAnimatorViewChangeHandler setStartDelay(@Nullable Long startDelay) {
+        this.startDelay = startDelay;
+        return this;
+    }
+
+    @Nullable
+    public Interpolator getInterpolator() {
+        return interpolator;
+    }
+
+    public InterruptibleAnimatorViewChangeHandler setInterpolator(@Nullable Interpolator interpolator) {
+        this.interpolator = interpolator;
+        return this;
+    }
+
+    @Nullable
+    public Long getDuration() {
+        return duration;
+    }
+
+    public InterruptibleAnimatorViewChangeHandler setDuration(@Nullable Long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    protected void resetPreviousViewValues(View previousView) {
+        // override to use specific behavior
+    }
+}
@@ -28,7 +28,7 @@ import javax.annotation.Nonnull;
  */
 @TargetApi(11)
 public final class SegueViewChangeHandler
-        extends AnimatorViewChangeHandler {
+        extends InterruptibleAnimatorViewChangeHandler {
     @Override
     protected Animator createAnimator(@Nonnull View from, @Nonnull View to, int direction) {
         int fromTranslation = (-1) * direction * from.getWidth();
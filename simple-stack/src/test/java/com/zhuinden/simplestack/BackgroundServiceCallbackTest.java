@@ -0,0 +1,173 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BackgroundServiceCallbackTest {
+    private static class Service
+            implements ScopedServices.Registered, ScopedServices.Activated, ScopedServices.BackgroundRegistered {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch unregistered = new CountDownLatch(1);
+
+        private void record(String event) {
+            events.add(event);
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onServiceRegistered() {
+            try {
+                Thread.sleep(50); // slow registration must still finish before the other callbacks
+            } catch(InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            record("registered");
+        }
+
+        @Override
+        public void onServiceUnregistered() {
+            record("unregistered");
+            unregistered.countDown();
+        }
+
+        @Override
+        public void onServiceActive() {
+            record("active");
+        }
+
+        @Override
+        public void onServiceInactive() {
+            record("inactive");
+        }
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private TestKeyWithScope createKey(final Service service) {
+        return new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("service", service);
+            }
+        };
+    }
+
+    @Test
+    public void callbacksAreDeliveredOnExecutorInOrder() throws InterruptedException {
+        Service service = new Service();
+
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setServiceCallbackExecutor(executor);
+        backstack.setup(History.of(new TestKey("root")));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(createKey(service));
+        backstack.goBack();
+
+        assertThat(service.unregistered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.events).containsExactly("registered", "active", "inactive", "unregistered");
+        assertThat(service.threads).doesNotContain(Thread.currentThread());
+    }
+
+    @Test
+    public void callbacksAreDeliveredSynchronouslyWithoutExecutor() {
+        Service service = new Service();
+
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(new TestKey("root")));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(createKey(service));
+
+        assertThat(service.events).containsExactly("registered", "active");
+        assertThat(service.threads).containsOnly(Thread.currentThread());
+    }
+
+    @Test
+    public void rejectedCallbackDoesNotStallLaterCallbacks() {
+        final AtomicBoolean isRejecting = new AtomicBoolean(true);
+        final List<String> events = new ArrayList<>();
+
+        ScopeManager.SerialExecutor serialExecutor = new ScopeManager.SerialExecutor(new Executor() {
+            @Override
+            public void execute(@Nonnull Runnable runnable) {
+                if(isRejecting.get()) {
+                    throw new RejectedExecutionException();
+                }
+                runnable.run();
+            }
+        });
+
+        try {
+            serialExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    events.add("rejected");
+                }
+            });
+            Assert.fail();
+        } catch(RejectedExecutionException e) {
+            // OK!
+        }
+
+        isRejecting.set(false);
+        serialExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                events.add("accepted");
+            }
+        });
+
+        assertThat(events).containsExactly("accepted");
+    }
+}
@@ -17,6 +17,7 @@ package com.zhuinden.simplestack;
 
 import android.content.Context;
 import android.os.Parcelable;
+import android.util.SparseArray;
 import android.view.View;
 
 import com.zhuinden.simplestack.helpers.ServiceProvider;
@@ -299,6 +300,30 @@ public class BackstackTest {
                 "Success!");
     }
 
+    @Test
+    public void restoreViewFromStateWithoutSavedStateDoesNotCreateSavedState() {
+        TestKey first = new TestKey("first");
+
+        View view = Mockito.mock(View.class);
+        Context context = Mockito.mock(Context.class);
+        Mockito.when(view.getContext()).thenReturn(context);
+        Mockito.when(context.getSystemService(KeyContextWrapper.TAG)).thenReturn(first);
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(first));
+        backstack.setStateChanger(new StateChanger() {
+            @Override
+            public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+                completionCallback.stateChangeComplete();
+            }
+        });
+
+        backstack.restoreViewFromState(view);
+
+        Mockito.verify(view, Mockito.never()).restoreHierarchyState(Mockito.<SparseArray<Parcelable>>any());
+        assertThat(backstack.keyStateMap).doesNotContainKey(first);
+    }
+
     @Test
     public void uninitializedStackGoBackWorks() {
         TestKey first = new TestKey("first");
@@ -1058,4 +1083,125 @@ public class BackstackTest {
             // OK!
         }
     }
+
+    private static class CountingCacheableKeyParceler
+            implements KeyParceler, KeyParceler.Cacheable {
+        int toParcelableCount = 0;
+
+        @Override
+        public Parcelable toParcelable(Object object) {
+            toParcelableCount++;
+            return (Parcelable) object;
+        }
+
+        @Override
+        public Object fromParcelable(Parcelable parcelable) {
+            return parcelable;
+        }
+    }
+
+    @Test
+    public void cacheableKeyParcelerIsCalledOnlyOncePerKeyWhileInHistory() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        CountingCacheableKeyParceler keyParceler = new CountingCacheableKeyParceler();
+
+        Backstack backstack = new Backstack();
+        backstack.setKeyParceler(keyParceler);
+        backstack.setup(History.of(first, second));
+        backstack.setStateChanger(stateChanger);
+        backstack.getSavedState(second);
+
+        backstack.toBundle();
+        assertThat(keyParceler.toParcelableCount).isEqualTo(2);
+
+        backstack.toBundle();
+        assertThat(keyParceler.toParcelableCount).isEqualTo(2);
+
+        backstack.goBack();
+        backstack.goTo(second);
+
+        backstack.toBundle();
+        assertThat(keyParceler.toParcelableCount).isEqualTo(3);
+    }
+
+    @Test
+    public void nonCacheableKeyParcelerIsCalledOnEachSave() {
+        TestKey first = new TestKey("first");
+
+        final AtomicInteger toParcelableCount = new AtomicInteger();
+
+        Backstack backstack = new Backstack();
+        backstack.setKeyParceler(new KeyParceler() {
+            @Override
+            public Parcelable toParcelable(Object object) {
+                toParcelableCount.incrementAndGet();
+                return (Parcelable) object;
+            }
+
+            @Override
+            public Object fromParcelable(Parcelable parcelable) {
+                return parcelable;
+            }
+        });
+        backstack.setup(History.of(first));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.toBundle();
+        backstack.toBundle();
+
+        assertThat(toParcelableCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getKeysInScopeReturnsKeysInHistoryOrder() {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+
+        Object firstKey = new TestKey("firstKey");
+
+        Object key1 = new TestKeyWithExplicitParent("key1") {
+            @Nonnull
+            @Override
+            public List<String> getParentScopes() {
+                return History.of("flow");
+            }
+
+            @Override
+            protected void bindParentServices(ServiceBinder serviceBinder) {
+            }
+
+            @Override
+            protected void bindOwnServices(ServiceBinder serviceBinder) {
+            }
+        };
+
+        Object key2 = new TestKeyWithScope("flow") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+            }
+        };
+
+        backstack.setup(History.of(firstKey, key1, key2));
+        backstack.setStateChanger(new StateChanger() {
+            @Override
+            public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+                completionCallback.stateChangeComplete();
+            }
+        });
+
+        assertThat(backstack.getKeysInScope("flow")).containsExactly(key1, key2);
+        assertThat(backstack.getKeysInScope("key1")).containsExactly(key1);
+        assertThat(backstack.getKeysInScope("blah")).isEmpty();
+
+        backstack.setHistory(History.of(key2, firstKey, key1), StateChange.REPLACE);
+
+        assertThat(backstack.getKeysInScope("flow")).containsExactly(key2, key1);
+
+        backstack.exitScope("flow");
+
+        assertThat(backstack.getHistory()).containsExactly(key2);
+        assertThat(backstack.getKeysInScope("key1")).isEmpty();
+    }
 }
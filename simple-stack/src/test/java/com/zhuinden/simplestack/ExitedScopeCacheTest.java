@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE) // the expiry of scopes is scheduled with a Handler
+public class ExitedScopeCacheTest {
+    private static class Service
+            implements ScopedServices.Registered, ScopedServices.Activated {
+        List<String> events = new ArrayList<>();
+
+        @Override
+        public void onServiceRegistered() {
+            events.add("registered");
+        }
+
+        @Override
+        public void onServiceUnregistered() {
+            events.add("unregistered");
+        }
+
+        @Override
+        public void onServiceActive() {
+            events.add("active");
+        }
+
+        @Override
+        public void onServiceInactive() {
+            events.add("inactive");
+        }
+    }
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private final Map<String, List<Service>> boundServices = new LinkedHashMap<>();
+
+    private final TestKey root = new TestKey("root");
+
+    private TestKeyWithScope createKey(final String scopeTag) {
+        return new TestKeyWithScope(scopeTag) {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                Service service = new Service();
+                if(!boundServices.containsKey(scopeTag)) {
+                    boundServices.put(scopeTag, new ArrayList<Service>());
+                }
+                boundServices.get(scopeTag).add(service);
+                serviceBinder.addService("service", service);
+            }
+        };
+    }
+
+    private Backstack createBackstack(int maxScopes, long maxAgeMillis) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setExitedScopeCache(maxScopes, maxAgeMillis);
+        backstack.setup(History.of(root));
+        backstack.setStateChanger(stateChanger);
+        return backstack;
+    }
+
+    @Test
+    public void reEnteredScopeIsAdopted() {
+        Backstack backstack = createBackstack(2, Long.MAX_VALUE);
+        TestKeyWithScope a = createKey("a");
+
+        backstack.goTo(a);
+        backstack.goBack();
+
+        Service service = boundServices.get("a").get(0);
+        assertThat(service.events).containsExactly("registered", "active", "inactive");
+        assertThat(backstack.hasScope("a")).isFalse();
+        assertThat(backstack.scopeManager.saveStates().containsKey("a")).isFalse();
+
+        backstack.goTo(createKey("a"));
+
+        assertThat(boundServices.get("a")).hasSize(1);
+        assertThat(service.events).containsExactly("registered", "active", "inactive", "active");
+        assertThat(backstack.<Service>lookupService("service")).isSameAs(service);
+    }
+
+    @Test
+    public void leastRecentlyExitedScopeIsEvictedWhenCacheIsFull() {
+        Backstack backstack = createBackstack(1, Long.MAX_VALUE);
+
+        backstack.goTo(createKey("a"));
+        backstack.goBack();
+        backstack.goTo(createKey("b"));
+        backstack.goBack();
+
+        assertThat(boundServices.get("a").get(0).events).containsExactly("registered", "active", "inactive", "unregistered");
+        assertThat(boundServices.get("b").get(0).events).containsExactly("registered", "active", "inactive");
+
+        backstack.goTo(createKey("a"));
+        assertThat(boundServices.get("a")).hasSize(2);
+    }
+
+    @Test
+    public void expiredScopeIsEvicted() {
+        Backstack backstack = createBackstack(2, 0L);
+
+        backstack.goTo(createKey("a"));
+        backstack.goBack();
+
+        assertThat(boundServices.get("a").get(0).events).containsExactly("registered", "active", "inactive", "unregistered");
+    }
+
+    @Test
+    public void exitedScopesAreEvictedWhenScopesAreFinalized() {
+        Backstack backstack = createBackstack(2, Long.MAX_VALUE);
+
+        backstack.goTo(createKey("a"));
+        backstack.goBack();
+        backstack.finalizeScopes();
+
+        assertThat(boundServices.get("a").get(0).events).containsExactly("registered", "active", "inactive", "unregistered");
+    }
+}
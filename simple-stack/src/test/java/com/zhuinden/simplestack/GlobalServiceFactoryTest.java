@@ -0,0 +1,223 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GlobalServiceFactoryTest {
+    private static class Service {
+        final Thread createdOnThread = Thread.currentThread();
+        final List<Object> dependencies = new ArrayList<>();
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static ServiceBinder.ServiceFactory<Service> factory(final List<String> createdServices, final String serviceTag, final CountDownLatch createdLatch) {
+        return new ServiceBinder.ServiceFactory<Service>() {
+            @Nonnull
+            @Override
+            public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                Service service = new Service();
+                for(String dependency : Arrays.asList("database", "api")) {
+                    try {
+                        service.dependencies.add(dependencies.get(dependency));
+                    } catch(IllegalArgumentException e) {
+                        // not declared
+                    }
+                }
+                createdServices.add(serviceTag);
+                createdLatch.countDown();
+                return service;
+            }
+        };
+    }
+
+    private Backstack createBackstack(GlobalServices globalServices) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setGlobalServices(globalServices);
+        backstack.setup(History.of(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+            }
+        }));
+        backstack.setStateChanger(stateChanger);
+        return backstack;
+    }
+
+    @Test
+    public void servicesAreCreatedInParallelOnBuild() throws InterruptedException {
+        List<String> createdServices = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch createdLatch = new CountDownLatch(3);
+        Object api = new Object();
+
+        GlobalServices globalServices = GlobalServices.builder()
+            .addService("api", api)
+            .addServiceFactory("repository", Arrays.asList("database", "api"), factory(createdServices, "repository", createdLatch))
+            .addServiceFactory("database", Collections.<String>emptyList(), factory(createdServices, "database", createdLatch))
+            .addServiceFactory("analytics", Collections.<String>emptyList(), factory(createdServices, "analytics", createdLatch))
+            .setInitializationExecutor(executor)
+            .build();
+
+        assertThat(createdLatch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(createdServices.indexOf("database")).isLessThan(createdServices.indexOf("repository"));
+
+        Backstack backstack = createBackstack(globalServices);
+
+        Service repository = backstack.lookupService("repository");
+        Service database = backstack.lookupService("database");
+
+        assertThat(repository.createdOnThread).isNotSameAs(Thread.currentThread());
+        assertThat(repository.dependencies).containsExactly(database, api);
+        assertThat(createdServices).hasSize(3);
+    }
+
+    @Test
+    public void servicesAreCreatedOnLookupWithoutExecutor() {
+        List<String> createdServices = new ArrayList<>();
+        CountDownLatch createdLatch = new CountDownLatch(3);
+
+        Backstack backstack = createBackstack(GlobalServices.builder()
+                                                  .addService("api", new Object())
+                                                  .addServiceFactory("repository", Arrays.asList("database", "api"), factory(createdServices, "repository", createdLatch))
+                                                  .addServiceFactory("database", Collections.<String>emptyList(), factory(createdServices, "database", createdLatch))
+                                                  .addServiceFactory("analytics", Collections.<String>emptyList(), factory(createdServices, "analytics", createdLatch))
+                                                  .build());
+
+        assertThat(createdServices).isEmpty();
+
+        Service repository = backstack.lookupService("repository");
+
+        assertThat(repository.createdOnThread).isSameAs(Thread.currentThread());
+        assertThat(createdServices).containsExactly("database", "repository");
+        assertThat(repository.dependencies.get(0)).isSameAs(backstack.lookupService("database"));
+        assertThat(createdServices).containsExactly("database", "repository");
+    }
+
+    @Test
+    public void servicesAreCreatedOnTheCurrentThreadIfTheExecutorRejectsThem() {
+        List<String> createdServices = new ArrayList<>();
+        CountDownLatch createdLatch = new CountDownLatch(2);
+        executor.shutdown();
+
+        GlobalServices globalServices = GlobalServices.builder()
+            .addServiceFactory("repository", Collections.singletonList("database"), factory(createdServices, "repository", createdLatch))
+            .addServiceFactory("database", Collections.<String>emptyList(), factory(createdServices, "database", createdLatch))
+            .setInitializationExecutor(executor)
+            .build();
+
+        assertThat(createdServices).containsExactly("database", "repository");
+
+        Backstack backstack = createBackstack(globalServices);
+
+        Service repository = backstack.lookupService("repository");
+
+        assertThat(repository.createdOnThread).isSameAs(Thread.currentThread());
+        assertThat(repository.dependencies).containsExactly(backstack.lookupService("database"));
+    }
+
+    @Test
+    public void missingDependencyThrowsOnBuild() {
+        try {
+            GlobalServices.builder()
+                .addServiceFactory("repository", Collections.singletonList("database"), factory(new ArrayList<String>(), "repository", new CountDownLatch(1)))
+                .build();
+            Assert.fail();
+        } catch(IllegalArgumentException e) {
+            // OK!
+        }
+    }
+
+    @Test
+    public void circularDependencyThrowsOnBuild() {
+        try {
+            GlobalServices.builder()
+                .addServiceFactory("a", Collections.singletonList("b"), factory(new ArrayList<String>(), "a", new CountDownLatch(1)))
+                .addServiceFactory("b", Collections.singletonList("a"), factory(new ArrayList<String>(), "b", new CountDownLatch(1)))
+                .build();
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            assertThat(e.getMessage()).contains("circular");
+        }
+    }
+
+    @Test
+    public void servicesKeepTheirRegistrationOrder() {
+        List<String> createdServices = new ArrayList<>();
+        Object api = new Object();
+
+        GlobalServices globalServices = GlobalServices.builder()
+            .addServiceFactory("database", Collections.<String>emptyList(), factory(createdServices, "database", new CountDownLatch(1)))
+            .addService("api", api)
+            .build();
+
+        globalServices.getService("database");
+
+        List<String> serviceTags = new ArrayList<>();
+        for(Map.Entry<String, Object> entry : globalServices.services()) {
+            serviceTags.add(entry.getKey());
+        }
+        assertThat(serviceTags).containsExactly("database", "api");
+    }
+
+    @Test
+    public void globalServicesBuiltFromTheSameBuilderCreateTheirOwnServices() throws InterruptedException {
+        List<String> createdServices = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch createdLatch = new CountDownLatch(2);
+
+        GlobalServices.Builder builder = GlobalServices.builder()
+            .addServiceFactory("database", Collections.<String>emptyList(), factory(createdServices, "database", createdLatch))
+            .setInitializationExecutor(executor);
+
+        GlobalServices first = builder.build();
+        GlobalServices second = builder.build();
+
+        assertThat(createdLatch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(first.<Object>getService("database")).isNotSameAs(second.getService("database"));
+        assertThat(createdServices).containsExactly("database", "database");
+    }
+}
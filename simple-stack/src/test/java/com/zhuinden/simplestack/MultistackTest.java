@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.statebundle.StateBundle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultistackTest {
+    private static class RecordingStateChanger
+            implements StateChanger {
+        final List<StateChange> stateChanges = new ArrayList<>();
+
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            stateChanges.add(stateChange);
+            completionCallback.stateChangeComplete();
+        }
+    }
+
+    private final TestKey first = new TestKey("first");
+    private final TestKey second = new TestKey("second");
+    private final TestKey third = new TestKey("third");
+
+    private Multistack createMultistack() {
+        Multistack multistack = new Multistack();
+        multistack.add("first", History.of(first));
+        multistack.add("second", History.of(second));
+        multistack.add("third", History.of(third));
+        return multistack;
+    }
+
+    @Test
+    public void stacksAreCreatedOnFirstSelection() {
+        Multistack multistack = createMultistack();
+        RecordingStateChanger stateChanger = new RecordingStateChanger();
+        multistack.setStateChanger(stateChanger);
+
+        assertThat(multistack.isCreated("first")).isTrue();
+        assertThat(multistack.isCreated("second")).isFalse();
+        assertThat(multistack.isCreated("third")).isFalse();
+
+        multistack.setSelectedStack("second");
+
+        assertThat(multistack.isCreated("second")).isTrue();
+        assertThat(multistack.isCreated("third")).isFalse();
+        assertThat(stateChanger.stateChanges).hasSize(2);
+        assertThat(stateChanger.stateChanges.get(1).topNewKey()).isEqualTo(second);
+    }
+
+    @Test
+    public void onlySelectedStackHasStateChanger() {
+        Multistack multistack = createMultistack();
+        multistack.setStateChanger(new RecordingStateChanger());
+
+        multistack.setSelectedStack("second");
+
+        multistack.get("first").goTo(new TestKey("detail"));
+        assertThat(multistack.get("first").getHistory()).containsExactly(first); // enqueued until selected
+
+        multistack.setSelectedStack("first");
+        assertThat(multistack.get("first").getHistory()).containsExactly(first, new TestKey("detail"));
+    }
+
+    @Test
+    public void trimmedStacksAreRecreatedFromTheirState() {
+        Multistack multistack = createMultistack();
+        multistack.setStateChanger(new RecordingStateChanger());
+
+        multistack.getSelectedStack().goTo(new TestKey("detail"));
+        multistack.setSelectedStack("second");
+        multistack.trimInactiveStacks();
+
+        assertThat(multistack.isCreated("first")).isFalse();
+        assertThat(multistack.isCreated("second")).isTrue();
+
+        multistack.setSelectedStack("first");
+        assertThat(multistack.getSelectedStack().getHistory()).containsExactly(first, new TestKey("detail"));
+    }
+
+    @Test
+    public void stateIsRestoredForStacksThatAreNotCreated() {
+        Multistack multistack = createMultistack();
+        multistack.setStateChanger(new RecordingStateChanger());
+        multistack.setSelectedStack("second");
+        multistack.getSelectedStack().goTo(new TestKey("detail"));
+
+        StateBundle bundle = multistack.toBundle();
+
+        Multistack restoredMultistack = createMultistack();
+        restoredMultistack.fromBundle(bundle);
+        restoredMultistack.setStateChanger(new RecordingStateChanger());
+
+        assertThat(restoredMultistack.getSelectedIdentifier()).isEqualTo("second");
+        assertThat(restoredMultistack.isCreated("first")).isFalse();
+        assertThat(restoredMultistack.getSelectedStack().getHistory()).containsExactly(second, new TestKey("detail"));
+    }
+
+    @Test
+    public void globalServicesAreRegisteredOnceAndShared() {
+        final List<String> events = new ArrayList<>();
+        Object service = new ScopedServices.Registered() {
+            @Override
+            public void onServiceRegistered() {
+                events.add("registered");
+            }
+
+            @Override
+            public void onServiceUnregistered() {
+                events.add("unregistered");
+            }
+        };
+
+        Multistack multistack = createMultistack();
+        multistack.setGlobalServices(GlobalServices.builder().addService("service", service).build());
+        multistack.setStateChanger(new RecordingStateChanger());
+        multistack.setSelectedStack("second");
+
+        assertThat(multistack.get("first").lookupService("service")).isSameAs(service);
+        assertThat(multistack.get("second").lookupService("service")).isSameAs(service);
+        assertThat(events).containsExactly("registered");
+
+        multistack.finalizeScopes();
+        assertThat(events).containsExactly("registered", "unregistered");
+    }
+}
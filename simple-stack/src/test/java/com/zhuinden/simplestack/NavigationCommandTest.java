@@ -0,0 +1,219 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.TestKey;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class NavigationCommandTest {
+    private final List<Runnable> scheduledRunnables = new ArrayList<>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public synchronized void execute(@Nonnull Runnable runnable) {
+            scheduledRunnables.add(runnable);
+        }
+    };
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private Backstack backstack;
+
+    @Before
+    public void setUp() {
+        backstack = new Backstack();
+        backstack.setNavigationCommandExecutor(executor);
+        backstack.setup(History.of(new TestKey("root")));
+        backstack.setStateChanger(stateChanger);
+    }
+
+    private void runScheduled() {
+        List<Runnable> runnables;
+        synchronized(executor) {
+            runnables = new ArrayList<>(scheduledRunnables);
+            scheduledRunnables.clear();
+        }
+        for(Runnable runnable : runnables) {
+            runnable.run();
+        }
+    }
+
+    private static NavigationCommand goTo(final Object key) {
+        return new NavigationCommand() {
+            @Override
+            public void execute(@Nonnull Backstack backstack) {
+                backstack.goTo(key);
+            }
+        };
+    }
+
+    @Test
+    public void commandsPostedFromOtherThreadsAreExecutedInOneBatch() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            final TestKey key = new TestKey("key" + i);
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    backstack.post(goTo(key));
+                }
+            }));
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(scheduledRunnables).hasSize(1);
+        assertThat(backstack.getHistory()).hasSize(1);
+
+        runScheduled();
+
+        assertThat(backstack.getHistory()).hasSize(5);
+        assertThat(scheduledRunnables).isEmpty();
+    }
+
+    @Test
+    public void commandsWithSameCoalescingTagAreCoalescedWithinBatch() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+        TestKey other = new TestKey("other");
+
+        backstack.post("result", goTo(first));
+        backstack.post(goTo(other));
+        backstack.post("result", goTo(second));
+
+        runScheduled();
+
+        assertThat(backstack.getHistory()).containsExactly(new TestKey("root"), other, second);
+
+        backstack.post("result", goTo(first));
+        runScheduled();
+
+        assertThat(backstack.getHistory()).containsExactly(new TestKey("root"), other, second, first);
+    }
+
+    @Test
+    public void commandsPostedDuringDrainAreExecutedInNextBatch() {
+        final TestKey nested = new TestKey("nested");
+
+        backstack.post(new NavigationCommand() {
+            @Override
+            public void execute(@Nonnull Backstack backstack) {
+                backstack.post(goTo(nested));
+            }
+        });
+
+        runScheduled();
+        assertThat(backstack.getHistory()).doesNotContain(nested);
+
+        runScheduled();
+        assertThat(backstack.getHistory()).contains(nested);
+    }
+
+    @Test
+    public void drainOnWrongThreadDoesNotStopLaterDrains() throws InterruptedException {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        backstack.post(goTo(first));
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runScheduled();
+                } catch(Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(error.get()).isInstanceOf(IllegalStateException.class);
+
+        backstack.post(goTo(second));
+        assertThat(scheduledRunnables).hasSize(1);
+
+        runScheduled();
+        assertThat(backstack.getHistory()).containsExactly(new TestKey("root"), first, second);
+    }
+
+    @Test
+    public void defaultExecutorPostsToMainThread() {
+        TestKey key = new TestKey("key");
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(new TestKey("root")));
+        backstack.setStateChanger(stateChanger);
+
+        ShadowLooper.pauseMainLooper();
+        backstack.post(goTo(key));
+        assertThat(backstack.getHistory()).doesNotContain(key);
+
+        ShadowLooper.unPauseMainLooper();
+        assertThat(backstack.getHistory()).contains(key);
+    }
+
+    @Test
+    public void defaultExecutorCannotBeUsedWhenBackstackIsNotOnMainThread() throws InterruptedException {
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Backstack backstack = new Backstack();
+                backstack.setup(History.of(new TestKey("root")));
+                try {
+                    backstack.post(goTo(new TestKey("key")));
+                    Assert.fail();
+                } catch(Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(error.get()).isInstanceOf(IllegalStateException.class);
+    }
+}
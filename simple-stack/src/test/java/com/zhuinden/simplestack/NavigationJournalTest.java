@@ -0,0 +1,335 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.os.Parcelable;
+
+import com.zhuinden.simplestack.helpers.TestKey;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NavigationJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class TestKeyCodec
+            implements NavigationJournal.Codec {
+        @Nonnull
+        @Override
+        public byte[] encode(@Nonnull Parcelable parcelable) {
+            return ((TestKey) parcelable).name.getBytes(UTF_8);
+        }
+
+        @Nonnull
+        @Override
+        public Parcelable decode(@Nonnull byte[] bytes) {
+            return new TestKey(new String(bytes, UTF_8));
+        }
+    }
+
+    private final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(@Nonnull Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private NavigationJournal createJournal(int compactionThreshold) {
+        return new NavigationJournal(new File(temporaryFolder.getRoot(), "navigation.journal"), compactionThreshold, new TestKeyCodec(), directExecutor);
+    }
+
+    private Backstack createBackstack(NavigationJournal journal, List<?> initialKeys) {
+        Backstack backstack = new Backstack();
+        backstack.setNavigationJournal(journal);
+        backstack.setup(initialKeys);
+        return backstack;
+    }
+
+    @Test
+    public void completedStateChangesAreRestoredFromTheJournal() {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+        TestKey c = new TestKey("c");
+        TestKey d = new TestKey("d");
+
+        Backstack backstack = createBackstack(createJournal(32), History.of(a));
+        assertThat(backstack.restoreFromJournal()).isFalse();
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(b);
+        backstack.goTo(c);
+        backstack.goBack();
+        backstack.goTo(d);
+
+        Backstack restoredBackstack = createBackstack(createJournal(32), History.of(a));
+        assertThat(restoredBackstack.restoreFromJournal()).isTrue();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a, b, d);
+    }
+
+    @Test
+    public void journalIsCompactedIntoSnapshot() {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+
+        NavigationJournal journal = createJournal(2);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(b);
+        backstack.goBack();
+        long sizeBeforeCompaction = journal.getFile().length();
+        backstack.goTo(b);
+        long sizeAfterCompaction = journal.getFile().length();
+
+        assertThat(sizeAfterCompaction).isLessThan(sizeBeforeCompaction);
+
+        Backstack restoredBackstack = createBackstack(createJournal(2), History.of(a));
+        restoredBackstack.restoreFromJournal();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a, b);
+    }
+
+    @Test
+    public void incompleteLastRecordIsIgnored()
+            throws IOException {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+        TestKey c = new TestKey("c");
+
+        NavigationJournal journal = createJournal(32);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(b);
+        long sizeBeforeLastRecord = journal.getFile().length();
+        backstack.goTo(c);
+
+        RandomAccessFile file = new RandomAccessFile(journal.getFile(), "rw");
+        file.setLength(sizeBeforeLastRecord + 3);
+        file.close();
+
+        Backstack restoredBackstack = createBackstack(createJournal(32), History.of(a));
+        restoredBackstack.restoreFromJournal();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a, b);
+    }
+
+    @Test
+    public void journalThatCannotBeDecodedIsDeletedAndNotRestored() {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+
+        NavigationJournal journal = createJournal(32);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+        backstack.goTo(b);
+
+        NavigationJournal staleJournal = new NavigationJournal(journal.getFile(), 32, new NavigationJournal.Codec() {
+            @Nonnull
+            @Override
+            public byte[] encode(@Nonnull Parcelable parcelable) {
+                return new TestKeyCodec().encode(parcelable);
+            }
+
+            @Nonnull
+            @Override
+            public Parcelable decode(@Nonnull byte[] bytes) {
+                throw new IllegalStateException("The key class was renamed");
+            }
+        }, directExecutor);
+        Backstack restoredBackstack = createBackstack(staleJournal, History.of(a));
+        assertThat(restoredBackstack.restoreFromJournal()).isFalse();
+        assertThat(journal.getFile().exists()).isFalse();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a);
+    }
+
+    @Test
+    public void corruptJournalIsDeletedAndNotRestored()
+            throws IOException {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+
+        NavigationJournal journal = createJournal(32);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+        backstack.goTo(b);
+
+        RandomAccessFile file = new RandomAccessFile(journal.getFile(), "rw");
+        file.seek(13); // the length of the first key of the snapshot
+        file.writeInt(-1);
+        file.close();
+
+        Backstack restoredBackstack = createBackstack(createJournal(32), History.of(a));
+        assertThat(restoredBackstack.restoreFromJournal()).isFalse();
+        assertThat(journal.getFile().exists()).isFalse();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a);
+    }
+
+    @Test
+    public void clearedJournalIsNotRestored() {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+
+        NavigationJournal journal = createJournal(32);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+        backstack.goTo(b);
+
+        journal.clear();
+
+        Backstack restoredBackstack = createBackstack(createJournal(32), History.of(a));
+        assertThat(restoredBackstack.restoreFromJournal()).isFalse();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a);
+    }
+
+    @Test
+    public void corruptKeyLengthIsNotAllocated()
+            throws IOException {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+
+        NavigationJournal journal = createJournal(32);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+        long sizeBeforeDelta = journal.getFile().length();
+        backstack.goTo(b);
+
+        RandomAccessFile file = new RandomAccessFile(journal.getFile(), "rw");
+        file.seek(sizeBeforeDelta + 9); // the length of the first added key of the delta
+        file.writeInt(Integer.MAX_VALUE);
+        file.close();
+
+        Backstack restoredBackstack = createBackstack(createJournal(32), History.of(a));
+        restoredBackstack.restoreFromJournal();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a);
+    }
+
+    @Test
+    public void journalIsDisabledAndDeletedWhenEncodingThrows() {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+        final TestKey unencodable = new TestKey("unencodable");
+
+        NavigationJournal journal = new NavigationJournal(new File(temporaryFolder.getRoot(), "navigation.journal"), 32, new NavigationJournal.Codec() {
+            @Nonnull
+            @Override
+            public byte[] encode(@Nonnull Parcelable parcelable) {
+                if(unencodable.equals(parcelable)) {
+                    throw new IllegalStateException("The key cannot be encoded");
+                }
+                return new TestKeyCodec().encode(parcelable);
+            }
+
+            @Nonnull
+            @Override
+            public Parcelable decode(@Nonnull byte[] bytes) {
+                return new TestKeyCodec().decode(bytes);
+            }
+        }, directExecutor);
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+        assertThat(journal.getFile().exists()).isTrue();
+
+        backstack.goTo(unencodable);
+
+        assertThat(journal.getFile().exists()).isFalse();
+        assertThat(backstack.getHistory()).containsExactly(a, unencodable);
+
+        backstack.goTo(b); // the state change queue is not stalled
+
+        assertThat(backstack.getHistory()).containsExactly(a, unencodable, b);
+        assertThat(journal.getFile().exists()).isFalse();
+    }
+
+    @Test
+    public void journalIsWrittenOnTheWriterExecutor() {
+        TestKey a = new TestKey("a");
+        TestKey b = new TestKey("b");
+
+        final List<Runnable> pendingWrites = new ArrayList<>();
+        NavigationJournal journal = new NavigationJournal(new File(temporaryFolder.getRoot(), "navigation.journal"), 32, new TestKeyCodec(), new Executor() {
+            @Override
+            public void execute(@Nonnull Runnable runnable) {
+                pendingWrites.add(runnable);
+            }
+        });
+        Backstack backstack = createBackstack(journal, History.of(a));
+        backstack.setStateChanger(stateChanger);
+        backstack.goTo(b);
+
+        assertThat(pendingWrites).hasSize(2);
+        assertThat(journal.getFile().exists()).isFalse();
+
+        for(Runnable runnable : pendingWrites) {
+            runnable.run();
+        }
+
+        Backstack restoredBackstack = createBackstack(createJournal(32), History.of(a));
+        restoredBackstack.restoreFromJournal();
+        restoredBackstack.setStateChanger(stateChanger);
+
+        assertThat(restoredBackstack.getHistory()).containsExactly(a, b);
+    }
+
+    @Test
+    public void restoreFromJournalAfterInitialStateChangeThrows() {
+        Backstack backstack = createBackstack(createJournal(32), History.of(new TestKey("a")));
+        backstack.setStateChanger(stateChanger);
+
+        try {
+            backstack.restoreFromJournal();
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            // OK!
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreemptibleStateChangerTest {
+    private static class AnimatingStateChanger
+            implements StateChanger.Preemptible {
+        final List<StateChange> fastForwardedStateChanges = new ArrayList<>();
+
+        StateChange stateChange;
+        Callback callback;
+
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            if(stateChange.getPreviousKeys().isEmpty()) {
+                completionCallback.stateChangeComplete();
+                return;
+            }
+            this.stateChange = stateChange;
+            this.callback = completionCallback; // animation in progress
+        }
+
+        @Override
+        public void fastForward(@Nonnull StateChange stateChange) {
+            assertThat(stateChange).isSameAs(this.stateChange);
+            fastForwardedStateChanges.add(stateChange);
+            finishAnimation();
+        }
+
+        void finishAnimation() {
+            Callback callback = this.callback;
+            this.stateChange = null;
+            this.callback = null;
+            callback.stateChangeComplete();
+        }
+    }
+
+    private final TestKey first = new TestKey("first");
+    private final TestKey second = new TestKey("second");
+    private final TestKey third = new TestKey("third");
+
+    @Test
+    public void goBackDuringStateChangeFastForwardsAndStartsImmediately() {
+        AnimatingStateChanger stateChanger = new AnimatingStateChanger();
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(first));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(second);
+        assertThat(backstack.isStateChangePending()).isTrue();
+
+        assertThat(backstack.goBack()).isTrue();
+
+        assertThat(stateChanger.fastForwardedStateChanges).hasSize(1);
+        assertThat(stateChanger.stateChange.getPreviousKeys()).containsExactly(first, second);
+        assertThat(stateChanger.stateChange.getNewKeys()).containsExactly(first);
+
+        stateChanger.finishAnimation();
+        assertThat(backstack.getHistory()).containsExactly(first);
+    }
+
+    @Test
+    public void navigationAfterTerminalBackIsNotConsumedWhenPreempted() {
+        AnimatingStateChanger stateChanger = new AnimatingStateChanger();
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(first, second));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goBack();
+        backstack.goTo(third); // would be consumed without preemption
+
+        assertThat(stateChanger.stateChange.getNewKeys()).containsExactly(first, third);
+        stateChanger.finishAnimation();
+        assertThat(backstack.getHistory()).containsExactly(first, third);
+    }
+
+    @Test
+    public void scopesAreActivatedConsistentlyWhenPreempted() {
+        final List<String> events = new ArrayList<>();
+        AnimatingStateChanger stateChanger = new AnimatingStateChanger();
+
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(first));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("service", new ScopedServices.Activated() {
+                    @Override
+                    public void onServiceActive() {
+                        events.add("active");
+                    }
+
+                    @Override
+                    public void onServiceInactive() {
+                        events.add("inactive");
+                    }
+                });
+            }
+        });
+        backstack.goBack();
+
+        assertThat(events).containsExactly("active");
+        stateChanger.finishAnimation();
+        assertThat(events).containsExactly("active", "inactive");
+        assertThat(backstack.hasScope("scope")).isFalse();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.content.ComponentCallbacks2;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE) // the expiry of scopes is scheduled with a Handler
+public class PrewarmTest {
+    private static class Service
+            implements ScopedServices.Registered, ScopedServices.Activated {
+        List<String> events = new ArrayList<>();
+
+        @Override
+        public void onServiceRegistered() {
+            events.add("registered");
+        }
+
+        @Override
+        public void onServiceUnregistered() {
+            events.add("unregistered");
+        }
+
+        @Override
+        public void onServiceActive() {
+            events.add("active");
+        }
+
+        @Override
+        public void onServiceInactive() {
+            events.add("inactive");
+        }
+    }
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private final List<Service> boundServices = new ArrayList<>();
+
+    private final TestKeyWithScope next = new TestKeyWithScope("next") {
+        @Override
+        public void bindServices(ServiceBinder serviceBinder) {
+            Service service = new Service();
+            boundServices.add(service);
+            serviceBinder.addService("service", service);
+        }
+    };
+
+    private Backstack createBackstack() {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(new TestKey("first")));
+        return backstack;
+    }
+
+    @Test
+    public void prewarmedScopeIsAdoptedOnNavigation() {
+        Backstack backstack = createBackstack();
+        backstack.setStateChanger(stateChanger);
+
+        backstack.prewarm(next);
+
+        assertThat(boundServices).hasSize(1);
+        assertThat(boundServices.get(0).events).isEmpty();
+        assertThat(backstack.hasScope("next")).isFalse();
+        assertThat(backstack.canFindService("service")).isFalse();
+
+        backstack.goTo(next);
+
+        assertThat(boundServices).hasSize(1);
+        assertThat(boundServices.get(0).events).containsExactly("registered", "active");
+        assertThat(backstack.<Service>lookupService("service")).isSameAs(boundServices.get(0));
+    }
+
+    @Test
+    public void prewarmedScopeIsDiscardedAfterTimeout() {
+        Backstack backstack = createBackstack();
+        backstack.setPrewarmTimeout(0L);
+        backstack.setStateChanger(stateChanger);
+
+        backstack.prewarm(next);
+        backstack.goTo(next);
+
+        assertThat(boundServices).hasSize(2);
+        assertThat(boundServices.get(0).events).isEmpty();
+        assertThat(backstack.<Service>lookupService("service")).isSameAs(boundServices.get(1));
+    }
+
+    @Test
+    public void prewarmedScopeIsDiscardedOnTrimMemory() {
+        Backstack backstack = createBackstack();
+        backstack.setStateChanger(stateChanger);
+
+        backstack.prewarm(next);
+        assertThat(backstack.scopeManager.isScopePrewarmed("next")).isTrue();
+
+        backstack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertThat(backstack.scopeManager.isScopePrewarmed("next")).isFalse();
+
+        backstack.goTo(next);
+        assertThat(boundServices).hasSize(2);
+    }
+
+    @Test
+    public void prewarmBeforeInitialStateChangeHasNoEffect() {
+        Backstack backstack = createBackstack();
+
+        backstack.prewarm(next);
+
+        assertThat(boundServices).isEmpty();
+    }
+}
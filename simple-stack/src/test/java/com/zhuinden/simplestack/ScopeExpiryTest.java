@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class ScopeExpiryTest {
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private final TestKeyWithScope next = new TestKeyWithScope("next") {
+        @Override
+        public void bindServices(ServiceBinder serviceBinder) {
+            serviceBinder.addService("service", new Object());
+        }
+    };
+
+    private Backstack createBackstack() {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(new TestKey("first")));
+        return backstack;
+    }
+
+    private static void waitAndRunDelayedTasks(long millis)
+            throws InterruptedException {
+        Thread.sleep(millis); // the expiry is measured in real time, the delayed tasks run on the scheduler's time
+        ShadowLooper.idleMainLooper(millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void prewarmedScopeIsDiscardedAfterTimeoutWithoutNavigation()
+            throws InterruptedException {
+        Backstack backstack = createBackstack();
+        backstack.setPrewarmTimeout(50L);
+        backstack.setStateChanger(stateChanger);
+
+        backstack.prewarm(next);
+        assertThat(backstack.scopeManager.isScopePrewarmed("next")).isTrue();
+
+        waitAndRunDelayedTasks(60L);
+
+        assertThat(backstack.scopeManager.isScopePrewarmed("next")).isFalse();
+    }
+
+    @Test
+    public void exitedScopeIsEvictedAfterMaximumAgeWithoutNavigation()
+            throws InterruptedException {
+        final List<String> events = new ArrayList<>();
+
+        Backstack backstack = createBackstack();
+        backstack.setExitedScopeCache(2, 50L);
+        backstack.setStateChanger(stateChanger);
+
+        backstack.goTo(new TestKeyWithScope("exited") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("service", new ScopedServices.Registered() {
+                    @Override
+                    public void onServiceRegistered() {
+                        events.add("registered");
+                    }
+
+                    @Override
+                    public void onServiceUnregistered() {
+                        events.add("unregistered");
+                    }
+                });
+            }
+        });
+        backstack.goBack();
+        assertThat(backstack.scopeManager.isScopeExited("exited")).isTrue();
+        assertThat(events).containsExactly("registered");
+
+        waitAndRunDelayedTasks(60L);
+
+        assertThat(backstack.scopeManager.isScopeExited("exited")).isFalse();
+        assertThat(events).containsExactly("registered", "unregistered");
+    }
+
+    @Test
+    public void expiryIsNotScheduledAfterFinalize() {
+        Backstack backstack = createBackstack();
+        backstack.setPrewarmTimeout(50L);
+        backstack.setStateChanger(stateChanger);
+
+        backstack.prewarm(next);
+        backstack.finalizeScopes();
+
+        assertThat(ShadowLooper.getShadowMainLooper().getScheduler().size()).isEqualTo(0);
+    }
+}
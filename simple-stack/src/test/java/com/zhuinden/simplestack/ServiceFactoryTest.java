@@ -0,0 +1,256 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceFactoryTest {
+    private static class Service
+            implements ScopedServices.Registered {
+        private final String name;
+        private final List<String> registeredServices;
+
+        final Thread createdOnThread = Thread.currentThread();
+        final List<Object> dependencies = new ArrayList<>();
+
+        Service(String name, List<String> registeredServices) {
+            this.name = name;
+            this.registeredServices = registeredServices;
+        }
+
+        @Override
+        public void onServiceRegistered() {
+            registeredServices.add(name);
+        }
+
+        @Override
+        public void onServiceUnregistered() {
+        }
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Backstack createBackstack(TestKeyWithScope key) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setServiceExecutor(executor);
+        backstack.setup(History.of(key));
+        return backstack;
+    }
+
+    @Test
+    public void independentServicesAreCreatedConcurrentlyAndRegisteredInOrder() {
+        final List<String> registeredServices = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+
+        final ServiceBinder.ServiceFactory<Service> independentFactory = new ServiceBinder.ServiceFactory<Service>() {
+            @Nonnull
+            @Override
+            public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                bothStarted.countDown();
+                try {
+                    assertThat(bothStarted.await(5, TimeUnit.SECONDS)).isTrue(); // would time out if created serially
+                } catch(InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return new Service("independent", registeredServices);
+            }
+        };
+
+        Backstack backstack = createBackstack(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addServiceFactory("dependent", Arrays.asList("first", "second"), new ServiceBinder.ServiceFactory<Service>() {
+                    @Nonnull
+                    @Override
+                    public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                        Service service = new Service("dependent", registeredServices);
+                        service.dependencies.add(dependencies.get("first"));
+                        service.dependencies.add(dependencies.get("second"));
+                        return service;
+                    }
+                });
+                serviceBinder.addServiceFactory("first", Collections.<String>emptyList(), independentFactory);
+                serviceBinder.addServiceFactory("second", Collections.<String>emptyList(), independentFactory);
+            }
+        });
+        backstack.setStateChanger(stateChanger);
+
+        Service first = backstack.getService("scope", "first");
+        Service second = backstack.getService("scope", "second");
+        Service dependent = backstack.getService("scope", "dependent");
+
+        assertThat(first.createdOnThread).isNotSameAs(Thread.currentThread());
+        assertThat(second.createdOnThread).isNotSameAs(Thread.currentThread());
+        assertThat(dependent.dependencies).containsExactly(first, second);
+        assertThat(registeredServices).containsExactly("dependent", "independent", "independent");
+    }
+
+    @Test
+    public void slowServiceDoesNotDelayServicesThatDoNotDependOnIt() {
+        final List<String> registeredServices = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch dependentCreated = new CountDownLatch(1);
+
+        Backstack backstack = createBackstack(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addServiceFactory("slow", Collections.<String>emptyList(), new ServiceBinder.ServiceFactory<Service>() {
+                    @Nonnull
+                    @Override
+                    public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                        try {
+                            assertThat(dependentCreated.await(5, TimeUnit.SECONDS)).isTrue(); // would time out if created in waves
+                        } catch(InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return new Service("slow", registeredServices);
+                    }
+                });
+                serviceBinder.addServiceFactory("fast", Collections.<String>emptyList(), new ServiceBinder.ServiceFactory<Service>() {
+                    @Nonnull
+                    @Override
+                    public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                        return new Service("fast", registeredServices);
+                    }
+                });
+                serviceBinder.addServiceFactory("dependent", Collections.singletonList("fast"), new ServiceBinder.ServiceFactory<Service>() {
+                    @Nonnull
+                    @Override
+                    public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                        Service service = new Service("dependent", registeredServices);
+                        service.dependencies.add(dependencies.get("fast"));
+                        dependentCreated.countDown();
+                        return service;
+                    }
+                });
+            }
+        });
+        backstack.setStateChanger(stateChanger);
+
+        Service dependent = backstack.getService("scope", "dependent");
+
+        assertThat(dependent.dependencies).containsExactly(backstack.getService("scope", "fast"));
+        assertThat(registeredServices).containsExactly("slow", "fast", "dependent");
+    }
+
+    @Test
+    public void servicesAreCreatedOnCurrentThreadWithoutExecutor() {
+        final List<String> registeredServices = new ArrayList<>();
+
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("plain", new Service("plain", registeredServices));
+                serviceBinder.addServiceFactory("service", Collections.singletonList("plain"), new ServiceBinder.ServiceFactory<Service>() {
+                    @Nonnull
+                    @Override
+                    public Service create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                        Service service = new Service("service", registeredServices);
+                        service.dependencies.add(dependencies.get("plain"));
+                        return service;
+                    }
+                });
+            }
+        }));
+        backstack.setStateChanger(stateChanger);
+
+        Service service = backstack.getService("scope", "service");
+        assertThat(service.createdOnThread).isSameAs(Thread.currentThread());
+        assertThat(service.dependencies).containsExactly(backstack.getService("scope", "plain"));
+        assertThat(registeredServices).containsExactly("plain", "service");
+    }
+
+    @Test
+    public void missingDependencyThrows() {
+        Backstack backstack = createBackstack(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addServiceFactory("service", Collections.singletonList("missing"), new ServiceBinder.ServiceFactory<Object>() {
+                    @Nonnull
+                    @Override
+                    public Object create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                        return new Object();
+                    }
+                });
+            }
+        });
+
+        try {
+            backstack.setStateChanger(stateChanger);
+            Assert.fail();
+        } catch(IllegalArgumentException e) {
+            // OK!
+        }
+    }
+
+    @Test
+    public void circularDependencyThrows() {
+        final ServiceBinder.ServiceFactory<Object> serviceFactory = new ServiceBinder.ServiceFactory<Object>() {
+            @Nonnull
+            @Override
+            public Object create(@Nonnull ServiceBinder.Dependencies dependencies) {
+                return new Object();
+            }
+        };
+
+        Backstack backstack = createBackstack(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addServiceFactory("a", Collections.singletonList("b"), serviceFactory);
+                serviceBinder.addServiceFactory("b", Collections.singletonList("a"), serviceFactory);
+            }
+        });
+
+        try {
+            backstack.setStateChanger(stateChanger);
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            assertThat(e.getMessage()).contains("circular");
+        }
+    }
+}
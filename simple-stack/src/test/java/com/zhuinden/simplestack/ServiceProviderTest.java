@@ -0,0 +1,280 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+import com.zhuinden.statebundle.StateBundle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceProviderTest {
+    private static class Service
+            implements Bundleable, ScopedServices.Registered, ScopedServices.Activated {
+        List<String> events = new ArrayList<>();
+
+        int value = 0;
+
+        @Nonnull
+        @Override
+        public StateBundle toBundle() {
+            StateBundle stateBundle = new StateBundle();
+            stateBundle.putInt("value", value);
+            return stateBundle;
+        }
+
+        @Override
+        public void fromBundle(@Nullable StateBundle bundle) {
+            if(bundle != null) {
+                value = bundle.getInt("value");
+                events.add("fromBundle");
+            }
+        }
+
+        @Override
+        public void onServiceRegistered() {
+            events.add("registered");
+        }
+
+        @Override
+        public void onServiceUnregistered() {
+            events.add("unregistered");
+        }
+
+        @Override
+        public void onServiceActive() {
+            events.add("active");
+        }
+
+        @Override
+        public void onServiceInactive() {
+            events.add("inactive");
+        }
+    }
+
+    private static class CountingProvider
+            implements Provider<Service> {
+        List<Service> createdServices = new ArrayList<>();
+
+        @Nonnull
+        @Override
+        public Service get() {
+            Service service = new Service();
+            createdServices.add(service);
+            return service;
+        }
+    }
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private TestKeyWithScope createKey(String name, final CountingProvider provider) {
+        return new TestKeyWithScope(name) {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addProvider("service", provider);
+            }
+        };
+    }
+
+    private Backstack createBackstack(Object... keys) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(keys));
+        return backstack;
+    }
+
+    @Test
+    public void serviceIsCreatedOnFirstLookupAndReceivesCallbacks() {
+        CountingProvider provider = new CountingProvider();
+
+        Backstack backstack = createBackstack(createKey("scope", provider));
+        backstack.setStateChanger(stateChanger);
+
+        assertThat(provider.createdServices).isEmpty();
+        assertThat(backstack.canFindService("service")).isTrue();
+        assertThat(backstack.hasService("scope", "service")).isTrue();
+        assertThat(provider.createdServices).isEmpty();
+
+        Service service = backstack.lookupService("service");
+
+        assertThat(provider.createdServices).containsExactly(service);
+        assertThat(service.events).containsExactly("registered", "active");
+        assertThat(backstack.<Service>getService("scope", "service")).isSameAs(service);
+        assertThat(provider.createdServices).hasSize(1);
+
+        backstack.finalizeScopes();
+
+        assertThat(service.events).containsExactly("registered", "active", "inactive", "unregistered");
+    }
+
+    @Test
+    public void serviceCreatedInInactiveScopeIsActivatedWithItsScope() {
+        CountingProvider provider = new CountingProvider();
+        TestKey other = new TestKey("other");
+        TestKeyWithScope lazyKey = createKey("scope", provider);
+
+        Backstack backstack = createBackstack(lazyKey, new TestKeyWithScope("top") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+            }
+        });
+        backstack.setStateChanger(stateChanger);
+
+        Service service = backstack.getService("scope", "service");
+        assertThat(service.events).containsExactly("registered");
+
+        backstack.goBack();
+        assertThat(service.events).containsExactly("registered", "active");
+
+        backstack.replaceTop(other, StateChange.REPLACE);
+        assertThat(service.events).containsExactly("registered", "active", "inactive", "unregistered");
+    }
+
+    @Test
+    public void serviceThatWasNeverCreatedIsNotNotifiedAndKeepsRestoredState() {
+        CountingProvider provider = new CountingProvider();
+
+        Backstack backstack = createBackstack(createKey("scope", provider));
+        backstack.setStateChanger(stateChanger);
+        Service service = backstack.lookupService("service");
+        service.value = 5;
+        StateBundle stateBundle = backstack.toBundle();
+
+        CountingProvider restoredProvider = new CountingProvider();
+        Backstack restoredBackstack = createBackstack(createKey("scope", restoredProvider));
+        restoredBackstack.fromBundle(stateBundle);
+        restoredBackstack.setStateChanger(stateChanger);
+
+        StateBundle resavedStateBundle = restoredBackstack.toBundle(); // the state of the service must survive even if it was not created
+        assertThat(restoredProvider.createdServices).isEmpty();
+
+        CountingProvider reRestoredProvider = new CountingProvider();
+        Backstack reRestoredBackstack = createBackstack(createKey("scope", reRestoredProvider));
+        reRestoredBackstack.fromBundle(resavedStateBundle);
+        reRestoredBackstack.setStateChanger(stateChanger);
+
+        Service restoredService = reRestoredBackstack.lookupService("service");
+        assertThat(restoredService.value).isEqualTo(5);
+        assertThat(restoredService.events).containsExactly("fromBundle", "registered", "active");
+    }
+
+    @Test
+    public void globalServiceIsCreatedOnFirstLookup() {
+        CountingProvider provider = new CountingProvider();
+
+        Backstack backstack = new Backstack();
+        backstack.setGlobalServices(GlobalServices.builder()
+                                        .addProvider("global", provider)
+                                        .build());
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+            }
+        }));
+        backstack.setStateChanger(stateChanger);
+
+        assertThat(provider.createdServices).isEmpty();
+
+        Service service = backstack.lookupService("global");
+        assertThat(service.events).containsExactly("registered", "active");
+    }
+
+    @Test
+    public void globalServicesBuiltFromTheSameBuilderCreateTheirOwnServices() {
+        CountingProvider provider = new CountingProvider();
+        GlobalServices.Builder builder = GlobalServices.builder().addProvider("global", provider);
+
+        Backstack[] backstacks = new Backstack[2];
+        for(int i = 0; i < backstacks.length; i++) {
+            Backstack backstack = new Backstack();
+            backstack.setGlobalServices(builder.build());
+            backstack.setScopedServices(new ServiceProvider());
+            backstack.setup(History.of(new TestKeyWithScope("scope") {
+                @Override
+                public void bindServices(ServiceBinder serviceBinder) {
+                }
+            }));
+            backstack.setStateChanger(stateChanger);
+            backstacks[i] = backstack;
+        }
+
+        Service firstService = backstacks[0].lookupService("global");
+        Service secondService = backstacks[1].lookupService("global");
+
+        assertThat(provider.createdServices).containsExactly(firstService, secondService);
+        assertThat(firstService.events).containsExactly("registered", "active");
+        assertThat(secondService.events).containsExactly("registered", "active");
+    }
+
+    @Test
+    public void servicesAreOnlyCopiedAgainWhenAServiceIsCreated() {
+        CountingProvider provider = new CountingProvider();
+        GlobalServices globalServices = GlobalServices.builder()
+            .addService("eager", new Object())
+            .addProvider("lazy", provider)
+            .build();
+
+        Set<Map.Entry<String, Object>> services = globalServices.services();
+        assertThat(services).hasSize(1);
+        assertThat(globalServices.services()).isSameAs(services);
+
+        globalServices.getService("lazy");
+
+        assertThat(globalServices.services()).hasSize(2);
+    }
+
+    @Test
+    public void providerThatLooksUpItsOwnServiceThrows() {
+        Backstack backstack = createBackstack(new TestKeyWithScope("scope") {
+            @Override
+            public void bindServices(final ServiceBinder serviceBinder) {
+                serviceBinder.addProvider("service", new Provider<Object>() {
+                    @Nonnull
+                    @Override
+                    public Object get() {
+                        return serviceBinder.lookupService("service");
+                    }
+                });
+            }
+        });
+        backstack.setStateChanger(stateChanger);
+
+        try {
+            backstack.lookupService("service");
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            // OK!
+        }
+    }
+}
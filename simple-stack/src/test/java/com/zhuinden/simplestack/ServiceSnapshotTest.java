@@ -0,0 +1,179 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceSnapshotTest {
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private TestKeyWithScope createKey(String scopeTag, final String serviceTag, final Object service) {
+        return new TestKeyWithScope(scopeTag) {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService(serviceTag, service);
+            }
+        };
+    }
+
+    private Backstack createBackstack(Object... keys) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(keys));
+        return backstack;
+    }
+
+    @Test
+    public void snapshotIsPublishedAfterStateChangeAndCanBeReadFromAnyThread() throws InterruptedException {
+        final Object rootService = new Object();
+        final Object topService = new Object();
+
+        final Backstack backstack = createBackstack(createKey("root", "service", rootService));
+        assertThat(backstack.getServiceSnapshot().canFindService("service")).isFalse();
+
+        backstack.setStateChanger(stateChanger);
+        backstack.goTo(createKey("top", "service", topService));
+
+        final AtomicReference<Object> lookedUpService = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lookedUpService.set(backstack.getServiceSnapshot().lookupService("service"));
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(lookedUpService.get()).isSameAs(topService);
+
+        ServiceSnapshot snapshot = backstack.getServiceSnapshot();
+        assertThat(snapshot.getScopeTags()).startsWith("top", "root");
+        assertThat(snapshot.<Object>lookupFromScope("root", "service")).isSameAs(rootService);
+        assertThat(snapshot.<Object>getService("top", "service")).isSameAs(topService);
+
+        backstack.goBack();
+
+        assertThat(backstack.getServiceSnapshot().<Object>lookupService("service")).isSameAs(rootService);
+        assertThat(backstack.getServiceSnapshot().hasService("top", "service")).isFalse();
+        assertThat(snapshot.<Object>lookupService("service")).isSameAs(topService); // previous snapshots do not change
+    }
+
+    @Test
+    public void servicesFromProvidersAreIncludedOnceCreated() {
+        final Object shadowedService = new Object();
+
+        Backstack backstack = createBackstack(createKey("root", "service", shadowedService), new TestKeyWithScope("top") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addProvider("service", new Provider<Object>() {
+                    @Nonnull
+                    @Override
+                    public Object get() {
+                        return new Object();
+                    }
+                });
+            }
+        });
+        backstack.setStateChanger(stateChanger);
+
+        assertThat(backstack.getServiceSnapshot().canFindService("service")).isFalse();
+        assertThat(backstack.getServiceSnapshot().hasService("top", "service")).isFalse();
+
+        Object service = backstack.lookupService("service");
+
+        assertThat(backstack.getServiceSnapshot().<Object>lookupService("service")).isSameAs(service);
+    }
+
+    @Test
+    public void aliasesAreIncluded() {
+        final Object service = new Object();
+        final Object aliasedService = new Object();
+        final Object shadowingService = new Object();
+
+        Backstack backstack = createBackstack(new TestKeyWithScope("root") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("service", service);
+                serviceBinder.addAlias("alias", service);
+            }
+        }, new TestKeyWithScope("top") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addAlias("topAlias", aliasedService);
+                serviceBinder.addAlias("shadowed", aliasedService);
+                serviceBinder.addService("shadowed", shadowingService);
+            }
+        });
+        backstack.setStateChanger(stateChanger);
+
+        ServiceSnapshot snapshot = backstack.getServiceSnapshot();
+
+        assertThat(snapshot.hasService("root", "alias")).isTrue();
+        assertThat(snapshot.<Object>getService("root", "alias")).isSameAs(backstack.getService("root", "alias"));
+        assertThat(snapshot.<Object>lookupService("alias")).isSameAs(service);
+        assertThat(snapshot.<Object>lookupFromScope("top", "alias")).isSameAs(service);
+        assertThat(snapshot.<Object>lookupService("topAlias")).isSameAs(aliasedService);
+        assertThat(snapshot.<Object>lookupService("shadowed")).isSameAs(backstack.lookupService("shadowed"));
+        assertThat(snapshot.canFindFromScope("root", "topAlias")).isFalse();
+    }
+
+    @Test
+    public void parentServicesAreLookedUpFromParentSnapshot() {
+        Object parentService = new Object();
+
+        Backstack parent = createBackstack(createKey("parent", "parentService", parentService));
+        parent.setStateChanger(stateChanger);
+
+        Backstack child = new Backstack();
+        child.setScopedServices(new ServiceProvider());
+        child.setParentServices(parent);
+        child.setup(History.of(new TestKey("child")));
+
+        assertThat(child.getServiceSnapshot().<Object>lookupService("parentService")).isSameAs(parentService);
+    }
+
+    @Test
+    public void finalizedScopesPublishEmptySnapshot() {
+        Backstack backstack = createBackstack(createKey("root", "service", new Object()));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.finalizeScopes();
+
+        assertThat(backstack.getServiceSnapshot().getScopeTags()).isEmpty();
+        try {
+            backstack.getServiceSnapshot().lookupService("service");
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            // OK!
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SharedServiceHierarchyTest {
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private TestKeyWithScope createKey(String scopeTag, final String serviceTag, final Object service) {
+        return new TestKeyWithScope(scopeTag) {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService(serviceTag, service);
+            }
+        };
+    }
+
+    private Backstack createBackstack(Object... keys) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(keys));
+        backstack.setStateChanger(stateChanger);
+        return backstack;
+    }
+
+    private Backstack createChild(Backstack parent, String parentScopeTag, Object... keys) {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setParentServices(parent, parentScopeTag);
+        backstack.setSharedServiceHierarchy(true);
+        backstack.setup(History.of(keys));
+        backstack.setStateChanger(stateChanger);
+        return backstack;
+    }
+
+    @Test
+    public void servicesAreLookedUpAcrossTheWholeHierarchy() {
+        Object grandParentService = new Object();
+        Object parentService = new Object();
+        Object childService = new Object();
+        Object shadowedService = new Object();
+
+        Backstack grandParent = createBackstack(createKey("grandParent", "grandParentService", grandParentService));
+        Backstack parent = createChild(grandParent, null, createKey("parent", "parentService", parentService));
+        Backstack child = createChild(parent, "parent", createKey("child", "childService", childService));
+        child.goTo(createKey("top", "parentService", shadowedService));
+
+        assertThat(child.<Object>lookupService("childService")).isSameAs(childService);
+        assertThat(child.<Object>lookupService("parentService")).isSameAs(shadowedService);
+        assertThat(child.<Object>lookupService("grandParentService")).isSameAs(grandParentService);
+        assertThat(child.<Object>lookupFromScope("child", "parentService")).isSameAs(parentService);
+        assertThat(child.canFindService("grandParentService")).isTrue();
+        assertThat(child.canFindFromScope("child", "grandParentService")).isTrue();
+        assertThat(child.canFindService("missingService")).isFalse();
+
+        try {
+            child.lookupService("missingService");
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            assertThat(e.getMessage()).contains("missingService");
+        }
+    }
+
+    @Test
+    public void cachedResultsAreInvalidatedWhenAnyStackInTheHierarchyChanges() {
+        Object firstService = new Object();
+        Object secondService = new Object();
+
+        Backstack parent = createBackstack(new TestKey("parent"));
+        Backstack child = createChild(parent, null, new TestKey("child"));
+
+        assertThat(child.canFindService("service")).isFalse();
+
+        parent.goTo(createKey("parentTop", "service", firstService));
+
+        assertThat(child.canFindService("service")).isTrue();
+        assertThat(child.<Object>lookupService("service")).isSameAs(firstService);
+
+        child.goTo(createKey("childTop", "service", secondService));
+
+        assertThat(child.<Object>lookupService("service")).isSameAs(secondService);
+
+        child.goBack();
+        parent.goBack();
+
+        assertThat(child.canFindService("service")).isFalse();
+    }
+
+    @Test
+    public void resultsMatchTheDefaultParentLookup() {
+        Object parentService = new Object();
+        Object childService = new Object();
+
+        Backstack parent = createBackstack(createKey("parent", "parentService", parentService));
+        Backstack sharedChild = createChild(parent, "parent", createKey("child", "childService", childService));
+
+        Backstack child = new Backstack();
+        child.setScopedServices(new ServiceProvider());
+        child.setParentServices(parent, "parent");
+        child.setup(History.of(createKey("child", "childService", childService)));
+        child.setStateChanger(stateChanger);
+
+        for(String serviceTag : new String[]{"parentService", "childService", "missingService"}) {
+            assertThat(sharedChild.canFindService(serviceTag)).isEqualTo(child.canFindService(serviceTag));
+            assertThat(sharedChild.canFindFromScope("child", serviceTag)).isEqualTo(child.canFindFromScope("child", serviceTag));
+            if(child.canFindService(serviceTag)) {
+                assertThat(sharedChild.<Object>lookupService(serviceTag)).isSameAs(child.lookupService(serviceTag));
+            }
+        }
+    }
+
+    @Test
+    public void lookupFromRegistrationCallbackDoesNotCacheStaleResults() {
+        final Object laterService = new Object();
+        final List<Boolean> resultsInCallback = new ArrayList<>();
+        final List<Object> resultsInStateChange = new ArrayList<>();
+
+        Backstack parent = createBackstack(new TestKey("parent"));
+        final Backstack child = new Backstack();
+        child.setScopedServices(new ServiceProvider());
+        child.setParentServices(parent, null);
+        child.setSharedServiceHierarchy(true);
+        child.setup(History.of(new TestKey("child")));
+        child.setStateChanger(new StateChanger() {
+            @Override
+            public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+                if(child.canFindService("laterService")) { // the scopes of the new keys are already built
+                    resultsInStateChange.add(child.lookupService("laterService"));
+                }
+                completionCallback.stateChangeComplete();
+            }
+        });
+
+        TestKeyWithScope firstKey = new TestKeyWithScope("first") {
+            @Override
+            public void bindServices(final ServiceBinder serviceBinder) {
+                serviceBinder.addService("registeredService", new ScopedServices.Registered() {
+                    @Override
+                    public void onServiceRegistered() {
+                        resultsInCallback.add(serviceBinder.getBackstack().canFindService("laterService"));
+                    }
+
+                    @Override
+                    public void onServiceUnregistered() {
+                    }
+                });
+            }
+        };
+        child.setHistory(History.of(new TestKey("child"), firstKey, createKey("second", "laterService", laterService)), StateChange.FORWARD);
+
+        assertThat(resultsInCallback).containsExactly(false); // the scope of the second key is not built yet
+        assertThat(resultsInStateChange).containsExactly(laterService);
+    }
+
+    @Test
+    public void sharedServiceHierarchyCannotBeSetAfterSetup() {
+        Backstack backstack = createBackstack(new TestKey("root"));
+
+        try {
+            backstack.setSharedServiceHierarchy(true);
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            // OK!
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import com.zhuinden.simplestack.helpers.TestKey;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StateClearStrategyTest {
+    private final List<StateChanger.Callback> callbacks = new ArrayList<>();
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    StateChanger pendingStateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            callbacks.add(completionCallback);
+        }
+    };
+
+    private final TestKey a = new TestKey("a");
+    private final TestKey b = new TestKey("b");
+    private final TestKey c = new TestKey("c");
+    private final TestKey d = new TestKey("d");
+
+    @Test
+    public void defaultStrategyClearsStatesOfRemovedKeys() {
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(a, b, c));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.getSavedState(a);
+        backstack.getSavedState(b);
+        backstack.getSavedState(c);
+
+        backstack.goBack();
+
+        assertThat(backstack.keyStateMap.keySet()).containsOnly(a, b);
+    }
+
+    @Test
+    public void defaultStrategyClearsStatesOfKeysThatWereNeverInHistory() {
+        TestKey x = new TestKey("x");
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(a, b));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.getSavedState(a);
+        backstack.getSavedState(b);
+        backstack.getSavedState(x);
+
+        backstack.goTo(c); // there are as many states as keys in the history
+
+        assertThat(backstack.keyStateMap.keySet()).containsOnly(a, b);
+    }
+
+    @Test
+    public void subclassOfDefaultStrategyThatOverridesOnlyTheNonIncrementalMethodIsCalled() {
+        final List<StateChange> stateChanges = new ArrayList<>();
+
+        Backstack backstack = new Backstack();
+        backstack.setStateClearStrategy(new DefaultStateClearStrategy() {
+            @Override
+            public void clearStatesNotIn(@Nonnull Map<Object, SavedState> keyStateMap, @Nonnull StateChange stateChange) {
+                stateChanges.add(stateChange);
+            }
+        });
+        backstack.setup(History.of(a, b));
+        backstack.setStateChanger(stateChanger);
+        backstack.getSavedState(b);
+
+        backstack.goBack();
+
+        assertThat(stateChanges).hasSize(2);
+        assertThat(backstack.keyStateMap.keySet()).containsOnly(b);
+    }
+
+    @Test
+    public void subclassOfDefaultStrategyWithoutOverridesClearsStatesNotInHistory() {
+        TestKey x = new TestKey("x");
+
+        Backstack backstack = new Backstack();
+        backstack.setStateClearStrategy(new DefaultStateClearStrategy() {
+        });
+        backstack.setup(History.of(a, b, c));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.getSavedState(a);
+        backstack.getSavedState(b);
+        backstack.getSavedState(c);
+        backstack.getSavedState(x);
+
+        backstack.goBack();
+
+        assertThat(backstack.keyStateMap.keySet()).containsOnly(a, b);
+    }
+
+    @Test
+    public void statesOfKeysRemovedAcrossQueuedStateChangesAreCleared() {
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(a));
+        backstack.setStateChanger(pendingStateChanger);
+        callbacks.remove(0).stateChangeComplete();
+        backstack.getSavedState(a);
+
+        backstack.setHistory(History.of(a, b, c), StateChange.FORWARD);
+        backstack.setHistory(History.of(a, d), StateChange.REPLACE);
+
+        callbacks.remove(0).stateChangeComplete();
+        backstack.getSavedState(b);
+        backstack.getSavedState(c);
+
+        callbacks.remove(0).stateChangeComplete();
+        assertThat(backstack.keyStateMap.keySet()).containsOnly(a);
+    }
+
+    @Test
+    public void statesOfKeysReaddedByQueuedStateChangeAreKept() {
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(a, b, c));
+        backstack.setStateChanger(pendingStateChanger);
+        callbacks.remove(0).stateChangeComplete();
+        backstack.getSavedState(a);
+        backstack.getSavedState(b);
+        backstack.getSavedState(c);
+
+        backstack.setHistory(History.of(a), StateChange.BACKWARD);
+        backstack.setHistory(History.of(a, c, d), StateChange.FORWARD);
+
+        callbacks.remove(0).stateChangeComplete();
+        callbacks.remove(0).stateChangeComplete();
+
+        assertThat(backstack.keyStateMap.keySet()).containsOnly(a, c);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.os.Parcelable;
+import android.util.SparseArray;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+import com.zhuinden.statebundle.StateBundle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StateSizeProfilerTest {
+    // the parcelled size is not available on the JVM without Robolectric, so sizes are faked.
+    private static class FakeMeasurer
+            implements StateSizeProfiler.Measurer {
+        @Override
+        public int measure(@Nonnull Parcelable parcelable) {
+            if(parcelable instanceof TestKey) {
+                return ((TestKey) parcelable).name.length();
+            }
+            if(parcelable instanceof StateBundle) {
+                return 100 * ((StateBundle) parcelable).size();
+            }
+            return 1;
+        }
+
+        @Override
+        public int measure(@Nonnull SparseArray<Parcelable> viewHierarchyState) {
+            return 10 * viewHierarchyState.size();
+        }
+    }
+
+    private static class Service
+            implements Bundleable {
+        @Nonnull
+        @Override
+        public StateBundle toBundle() {
+            StateBundle stateBundle = new StateBundle();
+            stateBundle.putInt("a", 1);
+            stateBundle.putInt("b", 2);
+            return stateBundle;
+        }
+
+        @Override
+        public void fromBundle(@Nullable StateBundle bundle) {
+        }
+    }
+
+    private static class CollectingCallback
+            implements StateSizeProfiler.Callback {
+        List<StateSizeProfiler.Report> reports = new ArrayList<>();
+
+        @Override
+        public void onStateMeasured(@Nonnull StateSizeProfiler.Report report) {
+            reports.add(report);
+        }
+    }
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private final TestKey first = new TestKey("first");
+
+    private final TestKeyWithScope second = new TestKeyWithScope("second") {
+        @Override
+        public void bindServices(ServiceBinder serviceBinder) {
+            serviceBinder.addService("service", new Service());
+        }
+    };
+
+    private Backstack createBackstack() {
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(first, second));
+        backstack.setStateChanger(stateChanger);
+        backstack.getSavedState(second).getBundle().putInt("x", 1);
+        return backstack;
+    }
+
+    private List<StateSizeProfiler.Entry> findEntries(StateSizeProfiler.Report report, StateSizeProfiler.EntryType type) {
+        List<StateSizeProfiler.Entry> entries = new ArrayList<>();
+        for(StateSizeProfiler.Entry entry : report.getEntries()) {
+            if(entry.getType() == type) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void toBundleReportsSizeOfEachPartOfTheState() {
+        CollectingCallback callback = new CollectingCallback();
+
+        Backstack backstack = createBackstack();
+        backstack.setStateSizeProfiler(StateSizeProfiler.builder()
+                                           .setCallback(callback)
+                                           .setMeasurer(new FakeMeasurer())
+                                           .build());
+        backstack.toBundle();
+
+        assertThat(callback.reports).hasSize(1);
+        StateSizeProfiler.Report report = callback.reports.get(0);
+
+        List<StateSizeProfiler.Entry> historyKeys = findEntries(report, StateSizeProfiler.EntryType.HISTORY_KEY);
+        assertThat(historyKeys).hasSize(2);
+        assertThat(historyKeys.get(0).getKey()).isSameAs(first);
+        assertThat(historyKeys.get(0).getSize()).isEqualTo(5);
+        assertThat(historyKeys.get(1).getKey()).isSameAs(second);
+        assertThat(historyKeys.get(1).getSize()).isEqualTo(6);
+
+        List<StateSizeProfiler.Entry> bundles = findEntries(report, StateSizeProfiler.EntryType.BUNDLE);
+        assertThat(bundles).hasSize(1);
+        assertThat(bundles.get(0).getKey()).isSameAs(second);
+        assertThat(bundles.get(0).getSize()).isEqualTo(100);
+
+        List<StateSizeProfiler.Entry> services = findEntries(report, StateSizeProfiler.EntryType.SERVICE);
+        assertThat(services).hasSize(1);
+        assertThat(services.get(0).getScopeTag()).isEqualTo("second");
+        assertThat(services.get(0).getTag()).isEqualTo("service");
+        assertThat(services.get(0).getSize()).isEqualTo(200);
+
+        assertThat(findEntries(report, StateSizeProfiler.EntryType.SCOPE)).hasSize(1);
+        assertThat(report.isOverBudget()).isFalse();
+    }
+
+    @Test
+    public void retainedObjectsAreMeasured() {
+        CollectingCallback callback = new CollectingCallback();
+
+        Backstack backstack = createBackstack();
+        backstack.addRetainedObject("retained", new Service());
+        backstack.setStateSizeProfiler(StateSizeProfiler.builder()
+                                           .setCallback(callback)
+                                           .setMeasurer(new FakeMeasurer())
+                                           .build());
+        backstack.toBundle();
+
+        List<StateSizeProfiler.Entry> retainedObjects = findEntries(callback.reports.get(0), StateSizeProfiler.EntryType.RETAINED_OBJECT);
+        assertThat(retainedObjects).hasSize(1);
+        assertThat(retainedObjects.get(0).getTag()).isEqualTo("retained");
+        assertThat(retainedObjects.get(0).getSize()).isEqualTo(200);
+    }
+
+    @Test
+    public void exceedingEntryBudgetWithWarnPolicyMarksReport() {
+        CollectingCallback callback = new CollectingCallback();
+
+        Backstack backstack = createBackstack();
+        backstack.setStateSizeProfiler(StateSizeProfiler.builder()
+                                           .setCallback(callback)
+                                           .setMeasurer(new FakeMeasurer())
+                                           .setEntryBudget(150)
+                                           .build());
+        backstack.toBundle();
+
+        StateSizeProfiler.Report report = callback.reports.get(0);
+        assertThat(report.isOverBudget()).isTrue();
+        assertThat(report.getEntriesOverBudget()).isNotEmpty();
+        for(StateSizeProfiler.Entry entry : report.getEntriesOverBudget()) {
+            assertThat(entry.getSize()).isGreaterThan(150);
+        }
+    }
+
+    @Test
+    public void exceedingTotalBudgetWithFailPolicyThrows() {
+        CollectingCallback callback = new CollectingCallback();
+
+        Backstack backstack = createBackstack();
+        backstack.setStateSizeProfiler(StateSizeProfiler.builder()
+                                           .setCallback(callback)
+                                           .setMeasurer(new FakeMeasurer())
+                                           .setTotalBudget(1)
+                                           .setBudgetPolicy(StateSizeProfiler.BudgetPolicy.FAIL)
+                                           .build());
+        try {
+            backstack.toBundle();
+            Assert.fail();
+        } catch(StateSizeProfiler.StateBudgetExceededException e) {
+            assertThat(e.getReport()).isSameAs(callback.reports.get(0));
+        }
+    }
+}
@@ -16,6 +16,14 @@
 
 package com.zhuinden.simplestack;
 
+import com.zhuinden.simplestack.navigator.AsyncLayoutInflationStrategyTest;
+import com.zhuinden.simplestack.navigator.DefaultStateChangerTest;
+import com.zhuinden.simplestack.navigator.FragmentStateChangerTest;
+import com.zhuinden.simplestack.navigator.InterruptibleAnimatorViewChangeHandlerTest;
+import com.zhuinden.simplestack.navigator.RetainedBackstackHostTest;
+import com.zhuinden.simplestack.navigator.ViewChangeMetricsAggregatorTest;
+import com.zhuinden.simplestack.navigator.ViewChangeMetricsTrackerTest;
+
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -41,6 +49,29 @@ import org.junit.runners.Suite;
     ScopingBackEventDispatchTest.class,
     CollectionHelperTest.class,
     BackstackAheadOfTimeBackModelTest.class,
+    NavigationJournalTest.class,
+    StateSizeProfilerTest.class,
+    StateClearStrategyTest.class,
+    TrimMemoryTest.class,
+    ServiceProviderTest.class,
+    ServiceFactoryTest.class,
+    PrewarmTest.class,
+    ExitedScopeCacheTest.class,
+    ServiceSnapshotTest.class,
+    NavigationCommandTest.class,
+    BackgroundServiceCallbackTest.class,
+    GlobalServiceFactoryTest.class,
+    PreemptibleStateChangerTest.class,
+    ViewChangeMetricsAggregatorTest.class,
+    MultistackTest.class,
+    SharedServiceHierarchyTest.class,
+    ScopeExpiryTest.class,
+    DefaultStateChangerTest.class,
+    AsyncLayoutInflationStrategyTest.class,
+    InterruptibleAnimatorViewChangeHandlerTest.class,
+    ViewChangeMetricsTrackerTest.class,
+    RetainedBackstackHostTest.class,
+    FragmentStateChangerTest.class,
 })
 public class TestSuite {
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack;
+
+import android.content.ComponentCallbacks2;
+import android.os.Parcelable;
+import android.util.SparseArray;
+
+import com.zhuinden.simplestack.helpers.ServiceProvider;
+import com.zhuinden.simplestack.helpers.TestKey;
+import com.zhuinden.simplestack.helpers.TestKeyWithScope;
+import com.zhuinden.statebundle.StateBundle;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrimMemoryTest {
+    // Parcel is not available on the JVM without Robolectric, so the compacted state is kept in a list.
+    private static class FakeStateCompactor
+            implements StateCompactor {
+        private final List<Object> compactedStates = new ArrayList<>();
+
+        private byte[] store(Object state) {
+            compactedStates.add(state);
+            return ByteBuffer.allocate(4).putInt(compactedStates.size() - 1).array();
+        }
+
+        private Object load(byte[] bytes) {
+            return compactedStates.get(ByteBuffer.wrap(bytes).getInt());
+        }
+
+        @Nonnull
+        @Override
+        public byte[] compact(@Nonnull StateBundle bundle) {
+            StateBundle copy = new StateBundle();
+            copy.putAll(bundle);
+            return store(copy);
+        }
+
+        @Nonnull
+        @Override
+        public StateBundle expandBundle(@Nonnull byte[] bytes) {
+            return (StateBundle) load(bytes);
+        }
+    }
+
+    private static class TrimmableService
+            implements ScopedServices.Trimmable {
+        List<Integer> levels = new ArrayList<>();
+
+        @Override
+        public void onTrimMemory(int level) {
+            levels.add(level);
+        }
+    }
+
+    private static class RetainedObject
+            implements Bundleable {
+        int value;
+
+        @Nonnull
+        @Override
+        public StateBundle toBundle() {
+            StateBundle stateBundle = new StateBundle();
+            stateBundle.putInt("value", value);
+            return stateBundle;
+        }
+
+        @Override
+        public void fromBundle(@Nullable StateBundle bundle) {
+            if(bundle != null) {
+                value = bundle.getInt("value");
+            }
+        }
+    }
+
+    StateChanger stateChanger = new StateChanger() {
+        @Override
+        public void handleStateChange(@Nonnull StateChange stateChange, @Nonnull Callback completionCallback) {
+            completionCallback.stateChangeComplete();
+        }
+    };
+
+    private final TestKey first = new TestKey("first");
+    private final TestKey second = new TestKey("second");
+
+    private SparseArray<Parcelable> createViewHierarchyState() {
+        SparseArray<Parcelable> viewHierarchyState = new SparseArray<>();
+        viewHierarchyState.put(1, new TestKey("view"));
+        return viewHierarchyState;
+    }
+
+    @Test
+    public void viewHierarchyStatesOfNonTopKeysAreDiscarded() {
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(first, second));
+        backstack.setStateChanger(stateChanger);
+
+        SparseArray<Parcelable> firstState = createViewHierarchyState();
+        SparseArray<Parcelable> secondState = createViewHierarchyState();
+        StateBundle firstBundle = new StateBundle();
+        backstack.getSavedState(first).setViewHierarchyState(firstState);
+        backstack.getSavedState(first).setBundle(firstBundle);
+        backstack.getSavedState(second).setViewHierarchyState(secondState);
+
+        backstack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+
+        assertThat(backstack.getSavedState(first).getViewHierarchyState()).isSameAs(firstState);
+
+        backstack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertThat(backstack.getSavedState(first).getViewHierarchyState()).isNotSameAs(firstState);
+        assertThat(backstack.getSavedState(first).getViewHierarchyState().size()).isEqualTo(0);
+        assertThat(backstack.getSavedState(first).getBundle()).isSameAs(firstBundle);
+        assertThat(backstack.getSavedState(second).getViewHierarchyState()).isSameAs(secondState);
+    }
+
+    @Test
+    public void onlyInactiveTrimmableServicesAreNotified() {
+        final TrimmableService inactiveService = new TrimmableService();
+        final TrimmableService activeService = new TrimmableService();
+
+        Backstack backstack = new Backstack();
+        backstack.setScopedServices(new ServiceProvider());
+        backstack.setup(History.of(new TestKeyWithScope("inactive") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("service", inactiveService);
+            }
+        }, new TestKeyWithScope("active") {
+            @Override
+            public void bindServices(ServiceBinder serviceBinder) {
+                serviceBinder.addService("service", activeService);
+            }
+        }));
+        backstack.setStateChanger(stateChanger);
+
+        backstack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        assertThat(inactiveService.levels).containsExactly(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertThat(activeService.levels).isEmpty();
+    }
+
+    @Test
+    public void restoredRetainedObjectStatesAreCompactedAndRestoredWhenReAdded() {
+        RetainedObject retainedObject = new RetainedObject();
+        retainedObject.value = 7;
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(first));
+        backstack.setStateChanger(stateChanger);
+        backstack.addRetainedObject("retained", retainedObject);
+        StateBundle stateBundle = backstack.toBundle();
+
+        FakeStateCompactor stateCompactor = new FakeStateCompactor();
+        Backstack restoredBackstack = new Backstack();
+        restoredBackstack.stateCompactor = stateCompactor;
+        restoredBackstack.setup(History.of(first));
+        restoredBackstack.fromBundle(stateBundle);
+        restoredBackstack.setStateChanger(stateChanger);
+
+        restoredBackstack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertThat(stateCompactor.compactedStates).hasSize(1);
+
+        RetainedObject restoredObject = new RetainedObject();
+        restoredBackstack.addRetainedObject("retained", restoredObject);
+
+        assertThat(restoredObject.value).isEqualTo(7);
+    }
+
+    @Test
+    public void restoredRetainedObjectStatesAreKeptIfTheyCannotBeCompacted() {
+        RetainedObject retainedObject = new RetainedObject();
+        retainedObject.value = 7;
+
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(first));
+        backstack.setStateChanger(stateChanger);
+        backstack.addRetainedObject("retained", retainedObject);
+        StateBundle stateBundle = backstack.toBundle();
+
+        Backstack restoredBackstack = new Backstack();
+        restoredBackstack.stateCompactor = new FakeStateCompactor() {
+            @Nonnull
+            @Override
+            public byte[] compact(@Nonnull StateBundle bundle) {
+                throw new RuntimeException("Tried to marshall a Parcel that contained Binder objects.");
+            }
+        };
+        restoredBackstack.setup(History.of(first));
+        restoredBackstack.fromBundle(stateBundle);
+        restoredBackstack.setStateChanger(stateChanger);
+
+        restoredBackstack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        RetainedObject restoredObject = new RetainedObject();
+        restoredBackstack.addRetainedObject("retained", restoredObject);
+
+        assertThat(restoredObject.value).isEqualTo(7);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class AsyncLayoutInflationStrategyTest {
+    private static class LayoutKey
+            implements DefaultViewKey {
+        @Override
+        public int layout() {
+            return android.R.layout.simple_list_item_1;
+        }
+
+        @Nonnull
+        @Override
+        public ViewChangeHandler viewChangeHandler() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class RecordingContainer
+            extends FrameLayout {
+        final List<Thread> accessedFromThreads = new ArrayList<>();
+
+        RecordingContainer(Context context) {
+            super(context);
+        }
+
+        @Override
+        public LayoutParams generateLayoutParams(AttributeSet attrs) {
+            accessedFromThreads.add(Thread.currentThread());
+            return super.generateLayoutParams(attrs);
+        }
+    }
+
+    private final List<Runnable> backgroundTasks = new ArrayList<>();
+
+    private final Executor backgroundExecutor = new Executor() {
+        @Override
+        public void execute(@Nonnull Runnable runnable) {
+            backgroundTasks.add(runnable);
+        }
+    };
+
+    private final List<View> inflatedViews = new ArrayList<>();
+
+    private final DefaultStateChanger.LayoutInflationStrategy.Callback callback = new DefaultStateChanger.LayoutInflationStrategy.Callback() {
+        @Override
+        public void layoutInflationComplete(@Nonnull View view) {
+            inflatedViews.add(view);
+        }
+    };
+
+    private Context context;
+    private RecordingContainer container;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        container = new RecordingContainer(context);
+    }
+
+    private void runBackgroundTasks() throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(Runnable task : backgroundTasks) {
+                    task.run();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        backgroundTasks.clear();
+    }
+
+    @Test
+    public void viewIsInflatedInTheBackgroundWithoutAccessingTheContainer() throws InterruptedException {
+        AsyncLayoutInflationStrategy strategy = new AsyncLayoutInflationStrategy(backgroundExecutor);
+
+        ShadowLooper.pauseMainLooper();
+        strategy.inflateLayout(null, new LayoutKey(), context, container, callback);
+        runBackgroundTasks();
+
+        assertThat(inflatedViews).isEmpty();
+
+        ShadowLooper.unPauseMainLooper();
+
+        assertThat(inflatedViews).hasSize(1);
+        View view = inflatedViews.get(0);
+        assertThat(view.getParent()).isNull();
+        assertThat(view.getLayoutParams().width).isEqualTo(ViewGroup.LayoutParams.MATCH_PARENT);
+        assertThat(container.accessedFromThreads).isEmpty();
+
+        container.addView(view);
+        assertThat(view.getLayoutParams()).isInstanceOf(FrameLayout.LayoutParams.class);
+    }
+
+    @Test
+    public void cancelledInflationIsNotDelivered() throws InterruptedException {
+        AsyncLayoutInflationStrategy strategy = new AsyncLayoutInflationStrategy(backgroundExecutor);
+
+        ShadowLooper.pauseMainLooper();
+        strategy.inflateLayout(null, new LayoutKey(), context, container, callback);
+        runBackgroundTasks();
+        strategy.cancelPendingInflations();
+        ShadowLooper.unPauseMainLooper();
+
+        assertThat(inflatedViews).isEmpty();
+
+        strategy.inflateLayout(null, new LayoutKey(), context, container, callback);
+        runBackgroundTasks();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(inflatedViews).hasSize(1);
+    }
+
+    @Test
+    public void synchronousLayoutIsInflatedIntoTheContainerOnTheMainThread() {
+        AsyncLayoutInflationStrategy strategy = new AsyncLayoutInflationStrategy(backgroundExecutor, new AsyncLayoutInflationStrategy.SynchronousInflationPredicate() {
+            @Override
+            public boolean shouldInflateSynchronously(@Nonnull Object key) {
+                return true;
+            }
+        }, null);
+
+        strategy.inflateLayout(null, new LayoutKey(), context, container, callback);
+
+        assertThat(backgroundTasks).isEmpty();
+        assertThat(inflatedViews).hasSize(1);
+        assertThat(container.accessedFromThreads).containsExactly(Thread.currentThread());
+    }
+}
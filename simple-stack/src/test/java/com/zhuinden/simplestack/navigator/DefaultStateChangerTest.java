@@ -0,0 +1,366 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.app.Activity;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.zhuinden.simplestack.Backstack;
+import com.zhuinden.simplestack.History;
+import com.zhuinden.simplestack.SavedState;
+import com.zhuinden.simplestack.StateChange;
+import com.zhuinden.simplestack.helpers.TestKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class DefaultStateChangerTest {
+    private final List<Object> inflatedKeys = new ArrayList<>();
+
+    private Object brokenKey = null;
+
+    private final DefaultStateChanger.LayoutInflationStrategy layoutInflationStrategy = new DefaultStateChanger.LayoutInflationStrategy() {
+        @Override
+        public void inflateLayout(@Nonnull StateChange stateChange, @Nonnull Object key, @Nonnull Context context, @Nonnull ViewGroup container, @Nonnull Callback callback) {
+            if(key.equals(brokenKey)) {
+                throw new IllegalStateException("The service [service] does not exist in any accessible scopes");
+            }
+            inflatedKeys.add(key);
+            View view = new View(context);
+            view.setTag(key);
+            callback.layoutInflationComplete(view);
+        }
+    };
+
+    private final DefaultStateChanger.GetViewChangeHandlerStrategy immediateViewChange = new DefaultStateChanger.GetViewChangeHandlerStrategy() {
+        @Nonnull
+        @Override
+        public ViewChangeHandler getViewChangeHandler(@Nonnull StateChange stateChange, @Nonnull ViewGroup container, @Nonnull Object previousKey, @Nonnull Object newKey, @Nonnull View previousView, @Nonnull View newView, int direction) {
+            return new ViewChangeHandler() {
+                @Override
+                public void performViewChange(@Nonnull ViewGroup container, @Nonnull View previousView, @Nonnull View newView, int direction, @Nonnull ViewChangeCallback viewChangeCallback) {
+                    container.removeView(previousView);
+                    container.addView(newView);
+                    viewChangeCallback.onCompleted();
+                }
+            };
+        }
+    };
+
+    private final DefaultStateChanger.StatePersistenceStrategy noOpStatePersistence = new DefaultStateChanger.StatePersistenceStrategy() {
+        @Override
+        public void persistViewToState(@Nonnull Object previousKey, @Nonnull View previousView) {
+        }
+
+        @Override
+        public void restoreViewFromState(@Nonnull Object newKey, @Nonnull View newView) {
+        }
+    };
+
+    private final List<Object> persistedKeys = new ArrayList<>();
+
+    private final DefaultStateChanger.StatePersistenceStrategy recordingStatePersistence = new DefaultStateChanger.StatePersistenceStrategy() {
+        @Override
+        public void persistViewToState(@Nonnull Object previousKey, @Nonnull View previousView) {
+            persistedKeys.add(previousKey);
+        }
+
+        @Override
+        public void restoreViewFromState(@Nonnull Object newKey, @Nonnull View newView) {
+        }
+    };
+
+    private final List<ViewChangeHandler.ViewChangeCallback> pendingViewChanges = new ArrayList<>();
+
+    private final DefaultStateChanger.GetViewChangeHandlerStrategy deferredViewChange = new DefaultStateChanger.GetViewChangeHandlerStrategy() {
+        @Nonnull
+        @Override
+        public ViewChangeHandler getViewChangeHandler(@Nonnull StateChange stateChange, @Nonnull ViewGroup container, @Nonnull Object previousKey, @Nonnull Object newKey, @Nonnull View previousView, @Nonnull View newView, int direction) {
+            return new ViewChangeHandler() {
+                @Override
+                public void performViewChange(@Nonnull ViewGroup container, @Nonnull View previousView, @Nonnull View newView, int direction, @Nonnull ViewChangeCallback viewChangeCallback) {
+                    container.removeView(previousView);
+                    container.addView(newView);
+                    pendingViewChanges.add(viewChangeCallback);
+                }
+            };
+        }
+    };
+
+    private final List<ViewChangeMetrics.Sample> metricsSamples = new ArrayList<>();
+
+    private final ViewChangeMetrics viewChangeMetrics = new ViewChangeMetrics() {
+        @Override
+        public void onViewChangeMeasured(@Nonnull Sample sample) {
+            metricsSamples.add(sample);
+        }
+    };
+
+    private Context context;
+    private FrameLayout container;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        container = new FrameLayout(context);
+    }
+
+    private DefaultStateChanger.Configurer configure() {
+        return DefaultStateChanger.configure()
+            .setLayoutInflationStrategy(layoutInflationStrategy)
+            .setGetViewChangeHandlerStrategy(immediateViewChange)
+            .setStatePersistenceStrategy(noOpStatePersistence);
+    }
+
+    private static List<MessageQueue.IdleHandler> getIdleHandlers() {
+        return ReflectionHelpers.getField(Looper.myQueue(), "mIdleHandlers");
+    }
+
+    private static void runIdleHandlers() {
+        List<MessageQueue.IdleHandler> idleHandlers = getIdleHandlers();
+        for(MessageQueue.IdleHandler idleHandler : new ArrayList<>(idleHandlers)) {
+            if(!idleHandler.queueIdle()) {
+                idleHandlers.remove(idleHandler);
+            }
+        }
+    }
+
+    private Backstack createBackstack(DefaultStateChanger stateChanger, Object... keys) {
+        return createBackstack(new Backstack(), stateChanger, keys);
+    }
+
+    private Backstack createBackstack(Backstack backstack, DefaultStateChanger stateChanger, Object... keys) {
+        backstack.setup(History.of(keys));
+        backstack.setStateChanger(stateChanger);
+        return backstack;
+    }
+
+    @Test
+    public void keptViewIsReusedWhenNavigatingBack() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        Backstack backstack = createBackstack(configure().setViewCacheSize(1).create(context, container), first);
+        View firstView = container.getChildAt(0);
+
+        backstack.goTo(second);
+        backstack.goBack();
+
+        assertThat(container.getChildAt(0)).isSameAs(firstView);
+        assertThat(inflatedKeys).containsExactly(first, second);
+    }
+
+    @Test
+    public void keptViewsAreDiscardedOnTrimMemory() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        DefaultStateChanger stateChanger = configure().setViewCacheSize(1).create(context, container);
+        Backstack backstack = createBackstack(stateChanger, first);
+
+        backstack.goTo(second);
+        stateChanger.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        backstack.goBack();
+
+        assertThat(inflatedKeys).containsExactly(first, second, first);
+    }
+
+    @Test
+    public void backstackHostForwardsTrimMemoryToStateChanger() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        DefaultStateChanger stateChanger = configure().setViewCacheSize(1).create(context, container);
+        Backstack backstack = createBackstack(stateChanger, first);
+        backstack.goTo(second);
+
+        BackstackHost backstackHost = new BackstackHost();
+        backstackHost.stateChanger = stateChanger;
+        backstackHost.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        backstack.goBack();
+
+        assertThat(inflatedKeys).containsExactly(first, second, first);
+    }
+
+    @Test
+    public void prefetchedViewIsUsedByNextViewChange() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        DefaultStateChanger stateChanger = configure().create(context, container);
+        Backstack backstack = createBackstack(stateChanger, first);
+
+        stateChanger.prefetch(second);
+        assertThat(inflatedKeys).containsExactly(first);
+
+        runIdleHandlers();
+        assertThat(inflatedKeys).containsExactly(first, second);
+        assertThat(getIdleHandlers()).isEmpty();
+
+        backstack.goTo(second);
+
+        assertThat(inflatedKeys).containsExactly(first, second);
+        assertThat(container.getChildAt(0).getTag()).isEqualTo(second);
+    }
+
+    @Test
+    public void idleHandlerIsRemovedWhenTheCacheIsCleared() {
+        DefaultStateChanger stateChanger = configure().create(context, container);
+        createBackstack(stateChanger, new TestKey("first"));
+
+        stateChanger.prefetch(new TestKey("second"));
+        assertThat(getIdleHandlers()).hasSize(1);
+
+        stateChanger.clearViewCache();
+
+        assertThat(getIdleHandlers()).isEmpty();
+    }
+
+    @Test
+    public void prefetchThatThrowsIsDiscarded() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+        brokenKey = second;
+
+        DefaultStateChanger stateChanger = configure().create(context, container);
+        Backstack backstack = createBackstack(stateChanger, first);
+
+        stateChanger.prefetch(second);
+        runIdleHandlers();
+
+        brokenKey = null;
+        backstack.goTo(second);
+
+        assertThat(inflatedKeys).containsExactly(first, second);
+        assertThat(container.getChildAt(0).getTag()).isEqualTo(second);
+    }
+
+    @Test
+    public void stateOfRemovedKeyIsNotPersisted() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+        TestKey third = new TestKey("third");
+
+        Backstack backstack = createBackstack(configure().setStatePersistenceStrategy(recordingStatePersistence).create(context, container), first);
+
+        backstack.goTo(second);
+        backstack.replaceTop(third, StateChange.FORWARD);
+
+        assertThat(persistedKeys).containsExactly(first);
+    }
+
+    @Test
+    public void stateOfRemovedKeyIsPersistedWithCustomStateClearStrategy() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        Backstack backstack = new Backstack();
+        backstack.setStateClearStrategy(new Backstack.StateClearStrategy() {
+            @Override
+            public void clearStatesNotIn(@Nonnull Map<Object, SavedState> keyStateMap, @Nonnull StateChange stateChange) {
+                // the states are kept
+            }
+        });
+        createBackstack(backstack, configure().setStatePersistenceStrategy(recordingStatePersistence).create(context, container), first);
+
+        backstack.replaceTop(second, StateChange.FORWARD);
+
+        assertThat(persistedKeys).containsExactly(first);
+    }
+
+    @Test
+    public void stateOfKeyReaddedByQueuedStateChangeIsPersisted() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+        TestKey third = new TestKey("third");
+
+        Backstack backstack = createBackstack(configure()
+                .setStatePersistenceStrategy(recordingStatePersistence)
+                .setGetViewChangeHandlerStrategy(deferredViewChange)
+                .create(context, container), first);
+
+        backstack.goTo(second);
+        backstack.setHistory(History.of(third), StateChange.REPLACE);
+        backstack.setHistory(History.of(second), StateChange.REPLACE);
+
+        pendingViewChanges.remove(0).onCompleted();
+
+        assertThat(persistedKeys).containsExactly(first, second);
+    }
+
+    @Test
+    public void viewChangeMetricsAreReportedWhenContainerIsNotShown() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+
+        ShadowLooper.pauseMainLooper(); // the frames are counted with Choreographer callbacks
+        Backstack backstack = createBackstack(configure().setViewChangeMetrics(viewChangeMetrics).create(context, container), first);
+        backstack.goTo(second);
+
+        assertThat(metricsSamples).hasSize(2);
+        assertThat(metricsSamples.get(1).getPreviousKey()).isSameAs(first);
+        assertThat(metricsSamples.get(1).getNewKey()).isSameAs(second);
+        assertThat(metricsSamples.get(1).getTimeToFirstDrawNanos()).isEqualTo(-1L);
+    }
+
+    @Test
+    public void viewChangeMetricsWaitForFirstDrawOrNextViewChange() {
+        TestKey first = new TestKey("first");
+        TestKey second = new TestKey("second");
+        TestKey third = new TestKey("third");
+        Robolectric.setupActivity(Activity.class).setContentView(container);
+        ShadowLooper.pauseMainLooper(); // the frames are counted with Choreographer callbacks
+
+        Backstack backstack = createBackstack(configure().setViewChangeMetrics(viewChangeMetrics).create(context, container), first);
+        assertThat(metricsSamples).isEmpty();
+
+        container.getViewTreeObserver().dispatchOnPreDraw();
+        assertThat(metricsSamples).hasSize(1);
+        assertThat(metricsSamples.get(0).getTimeToFirstDrawNanos()).isGreaterThanOrEqualTo(0L);
+
+        backstack.goTo(second);
+        assertThat(metricsSamples).hasSize(1);
+
+        backstack.goTo(third);
+        assertThat(metricsSamples).hasSize(2);
+        assertThat(metricsSamples.get(1).getNewKey()).isSameAs(second);
+        assertThat(metricsSamples.get(1).getTimeToFirstDrawNanos()).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.app.FragmentManager;
+import android.app.FragmentTransaction;
+import android.os.Bundle;
+import android.widget.FrameLayout;
+
+import com.zhuinden.simplestack.Backstack;
+import com.zhuinden.simplestack.History;
+import com.zhuinden.simplestack.StateChange;
+import com.zhuinden.statebundle.StateBundle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class FragmentStateChangerTest {
+    private static final int CONTAINER_ID = 1234;
+
+    public static class CounterFragment
+            extends Fragment {
+        int counter = 0;
+
+        @Override
+        public void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+            if(savedInstanceState != null) {
+                counter = savedInstanceState.getInt("counter");
+            }
+        }
+
+        @Override
+        public void onSaveInstanceState(Bundle outState) {
+            super.onSaveInstanceState(outState);
+            outState.putInt("counter", counter);
+        }
+    }
+
+    private static class FragmentKey
+            implements DefaultFragmentKey {
+        private final String name;
+
+        FragmentKey(String name) {
+            this.name = name;
+        }
+
+        @Nonnull
+        @Override
+        public String getFragmentTag() {
+            return name;
+        }
+
+        @Nonnull
+        @Override
+        public Fragment createFragment() {
+            return new CounterFragment();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FragmentKey && name.equals(((FragmentKey) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    private final List<FragmentTransaction> fragmentTransactions = new ArrayList<>();
+
+    private FragmentManager fragmentManager;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout container = new FrameLayout(activity);
+        container.setId(CONTAINER_ID);
+        activity.setContentView(container);
+        fragmentManager = activity.getFragmentManager();
+    }
+
+    private Backstack createBackstack(int maxDetachedFragments, Object... keys) {
+        Backstack backstack = new Backstack();
+        backstack.setup(History.of(keys));
+        backstack.setStateChanger(new FragmentStateChanger(backstack, fragmentManager, CONTAINER_ID, maxDetachedFragments) {
+            @Override
+            protected void onFragmentTransactionCreated(@Nonnull FragmentTransaction fragmentTransaction, @Nonnull StateChange stateChange) {
+                fragmentTransactions.add(fragmentTransaction);
+            }
+        });
+        fragmentManager.executePendingTransactions();
+        return backstack;
+    }
+
+    private CounterFragment findFragment(FragmentKey key) {
+        return (CounterFragment) fragmentManager.findFragmentByTag(key.getFragmentTag());
+    }
+
+    @Test
+    public void fragmentsBeyondTheDetachedLimitAreRemoved() {
+        FragmentKey first = new FragmentKey("first");
+        FragmentKey second = new FragmentKey("second");
+        FragmentKey third = new FragmentKey("third");
+
+        Backstack backstack = createBackstack(1, first);
+        backstack.goTo(second);
+        fragmentManager.executePendingTransactions();
+        assertThat(findFragment(first).isDetached()).isTrue();
+
+        backstack.goTo(third);
+        fragmentManager.executePendingTransactions();
+
+        assertThat(findFragment(first)).isNull();
+        assertThat(findFragment(second).isDetached()).isTrue();
+        assertThat(findFragment(third).isAdded()).isTrue();
+        assertThat(findFragment(third).isDetached()).isFalse();
+    }
+
+    @Test
+    public void removedFragmentIsRecreatedFromItsSavedState() {
+        FragmentKey first = new FragmentKey("first");
+        FragmentKey second = new FragmentKey("second");
+        FragmentKey third = new FragmentKey("third");
+
+        Backstack backstack = createBackstack(1, first);
+        CounterFragment firstFragment = findFragment(first);
+        firstFragment.counter = 5;
+        backstack.goTo(second);
+        backstack.goTo(third);
+        fragmentManager.executePendingTransactions();
+
+        StateBundle bundle = backstack.getSavedState(first).getBundle();
+        assertThat(bundle.keySet()).containsExactly("com.zhuinden.simplestack.navigator.FragmentStateChanger.FRAGMENT_STATE");
+
+        backstack.goBack();
+        backstack.goBack();
+        fragmentManager.executePendingTransactions();
+
+        CounterFragment recreatedFragment = findFragment(first);
+        assertThat(recreatedFragment).isNotSameAs(firstFragment);
+        assertThat(recreatedFragment.counter).isEqualTo(5);
+        assertThat(bundle.keySet()).isEmpty();
+    }
+
+    @Test
+    public void appStateInTheSavedStateBundleIsKept() {
+        FragmentKey first = new FragmentKey("first");
+        FragmentKey second = new FragmentKey("second");
+
+        Backstack backstack = createBackstack(0, first);
+        StateBundle bundle = new StateBundle();
+        bundle.putString("FRAGMENT_STATE", "app state");
+        backstack.getSavedState(first).setBundle(bundle);
+
+        backstack.goTo(second);
+        backstack.goBack();
+        fragmentManager.executePendingTransactions();
+
+        assertThat(backstack.getSavedState(first).getBundle().getString("FRAGMENT_STATE")).isEqualTo("app state");
+    }
+
+    @Test
+    public void fragmentOfRemovedMiddleKeyIsRemoved() {
+        FragmentKey first = new FragmentKey("first");
+        FragmentKey second = new FragmentKey("second");
+        FragmentKey third = new FragmentKey("third");
+
+        Backstack backstack = createBackstack(3, first);
+        backstack.goTo(second);
+        backstack.goTo(third);
+        fragmentManager.executePendingTransactions();
+        CounterFragment thirdFragment = findFragment(third);
+        assertThat(findFragment(second).isDetached()).isTrue();
+
+        backstack.setHistory(History.of(first, third), StateChange.REPLACE);
+        fragmentManager.executePendingTransactions();
+
+        assertThat(findFragment(second)).isNull();
+        assertThat(findFragment(first).isDetached()).isTrue();
+        assertThat(findFragment(third)).isSameAs(thirdFragment);
+        assertThat(thirdFragment.isDetached()).isFalse();
+    }
+
+    @Test
+    public void stateChangeIsExecutedInSingleTransaction() {
+        FragmentKey first = new FragmentKey("first");
+        FragmentKey second = new FragmentKey("second");
+        FragmentKey third = new FragmentKey("third");
+
+        Backstack backstack = createBackstack(1, first);
+        backstack.goTo(second);
+        fragmentManager.executePendingTransactions();
+        fragmentTransactions.clear();
+
+        ShadowLooper.pauseMainLooper(); // the transaction is committed asynchronously
+        backstack.goTo(third);
+
+        assertThat(fragmentTransactions).hasSize(1);
+        assertThat(findFragment(third)).isNull(); // nothing is executed before the transaction is
+
+        fragmentManager.executePendingTransactions();
+
+        assertThat(findFragment(first)).isNull();
+        assertThat(findFragment(second).isDetached()).isTrue();
+        assertThat(findFragment(third).isAdded()).isTrue();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.zhuinden.simplestack.StateChange;
+import com.zhuinden.simplestack.navigator.changehandlers.FadeViewChangeHandler;
+import com.zhuinden.simplestack.navigator.changehandlers.InterruptibleAnimatorViewChangeHandler;
+import com.zhuinden.simplestack.navigator.changehandlers.SegueViewChangeHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class InterruptibleAnimatorViewChangeHandlerTest {
+    private final List<FrameLayout> completedContainers = new ArrayList<>();
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        ShadowLooper.pauseMainLooper(); // the animations are only finished with end()
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    private FrameLayout createContainer(View previousView) {
+        FrameLayout container = new FrameLayout(context);
+        container.addView(previousView);
+        return container;
+    }
+
+    private void performViewChange(InterruptibleAnimatorViewChangeHandler viewChangeHandler, final FrameLayout container, View previousView, View newView) {
+        viewChangeHandler.performViewChange(container, previousView, newView, StateChange.FORWARD, new ViewChangeHandler.ViewChangeCallback() {
+            @Override
+            public void onCompleted() {
+                completedContainers.add(container);
+            }
+        });
+    }
+
+    @Test
+    public void fadeStartsWithoutWaitingForMeasure() {
+        View previousView = new View(context);
+        View newView = new View(context);
+        FrameLayout container = createContainer(previousView);
+        FadeViewChangeHandler viewChangeHandler = new FadeViewChangeHandler();
+
+        performViewChange(viewChangeHandler, container, previousView, newView);
+
+        assertThat(viewChangeHandler.isRunning(container)).isTrue();
+        assertThat(viewChangeHandler.getRunningAnimator(container)).isNotNull();
+        assertThat(newView.getLayerType()).isEqualTo(View.LAYER_TYPE_HARDWARE);
+    }
+
+    @Test
+    public void segueWaitsForMeasure() {
+        View previousView = new View(context);
+        View newView = new View(context);
+        FrameLayout container = createContainer(previousView);
+        SegueViewChangeHandler viewChangeHandler = new SegueViewChangeHandler();
+
+        performViewChange(viewChangeHandler, container, previousView, newView);
+
+        assertThat(viewChangeHandler.isRunning(container)).isTrue();
+        assertThat(viewChangeHandler.getRunningAnimator(container)).isNull();
+
+        viewChangeHandler.end(container);
+
+        assertThat(viewChangeHandler.isRunning(container)).isFalse();
+        assertThat(completedContainers).containsExactly(container);
+        assertThat(container.getChildCount()).isEqualTo(1);
+        assertThat(container.getChildAt(0)).isSameAs(newView);
+    }
+
+    @Test
+    public void endFinishesViewChangeAndResetsViews() {
+        View previousView = new View(context);
+        View newView = new View(context);
+        FrameLayout container = createContainer(previousView);
+        FadeViewChangeHandler viewChangeHandler = new FadeViewChangeHandler();
+
+        performViewChange(viewChangeHandler, container, previousView, newView);
+        viewChangeHandler.end(container);
+
+        assertThat(completedContainers).containsExactly(container);
+        assertThat(viewChangeHandler.isRunning(container)).isFalse();
+        assertThat(container.getChildCount()).isEqualTo(1);
+        assertThat(container.getChildAt(0)).isSameAs(newView);
+        assertThat(previousView.getAlpha()).isEqualTo(1f);
+        assertThat(newView.getAlpha()).isEqualTo(1f);
+        assertThat(previousView.getLayerType()).isEqualTo(View.LAYER_TYPE_NONE);
+        assertThat(newView.getLayerType()).isEqualTo(View.LAYER_TYPE_NONE);
+    }
+
+    @Test
+    public void sharedHandlerTracksViewChangesPerContainer() {
+        View firstPreviousView = new View(context);
+        View firstNewView = new View(context);
+        FrameLayout firstContainer = createContainer(firstPreviousView);
+        View secondPreviousView = new View(context);
+        View secondNewView = new View(context);
+        FrameLayout secondContainer = createContainer(secondPreviousView);
+        FadeViewChangeHandler viewChangeHandler = new FadeViewChangeHandler();
+
+        performViewChange(viewChangeHandler, firstContainer, firstPreviousView, firstNewView);
+        performViewChange(viewChangeHandler, secondContainer, secondPreviousView, secondNewView);
+
+        viewChangeHandler.end(firstContainer);
+
+        assertThat(completedContainers).containsExactly(firstContainer);
+        assertThat(viewChangeHandler.isRunning(firstContainer)).isFalse();
+        assertThat(viewChangeHandler.isRunning(secondContainer)).isTrue();
+        assertThat(secondContainer.getChildCount()).isEqualTo(2);
+
+        viewChangeHandler.end(secondContainer);
+
+        assertThat(completedContainers).containsExactly(firstContainer, secondContainer);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.widget.FrameLayout;
+
+import com.zhuinden.simplestack.Backstack;
+import com.zhuinden.simplestack.History;
+import com.zhuinden.simplestack.navigator.changehandlers.NoOpViewChangeHandler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class RetainedBackstackHostTest {
+    public static class LayoutKey
+            implements DefaultViewKey, Parcelable {
+        private final String name;
+
+        LayoutKey(String name) {
+            this.name = name;
+        }
+
+        private LayoutKey(Parcel in) {
+            name = in.readString();
+        }
+
+        public static final Creator<LayoutKey> CREATOR = new Creator<LayoutKey>() {
+            @Override
+            public LayoutKey createFromParcel(Parcel in) {
+                return new LayoutKey(in);
+            }
+
+            @Override
+            public LayoutKey[] newArray(int size) {
+                return new LayoutKey[size];
+            }
+        };
+
+        @Override
+        public int layout() {
+            return android.R.layout.simple_list_item_1;
+        }
+
+        @Nonnull
+        @Override
+        public ViewChangeHandler viewChangeHandler() {
+            return new NoOpViewChangeHandler();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LayoutKey && name.equals(((LayoutKey) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            dest.writeString(name);
+        }
+    }
+
+    public static class OwnerActivity
+            extends Activity
+            implements RetainedBackstackHost.Owner {
+        RetainedBackstackHost retainedBackstackHost;
+        FrameLayout container;
+
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+            container = new FrameLayout(this);
+            setContentView(container);
+            retainedBackstackHost = Navigator.configure()
+                    .installRetained(this,
+                            container,
+                            History.of(new LayoutKey("first")),
+                            savedInstanceState,
+                            (RetainedBackstackHost) getLastNonConfigurationInstance());
+        }
+
+        @Override
+        public Object onRetainNonConfigurationInstance() {
+            return retainedBackstackHost;
+        }
+
+        @Override
+        public RetainedBackstackHost getRetainedBackstackHost() {
+            return retainedBackstackHost;
+        }
+    }
+
+    @Test
+    public void initialStateChangeFindsTheBackstackBeforeInstallReturns() {
+        OwnerActivity activity = Robolectric.buildActivity(OwnerActivity.class).setup().get();
+
+        assertThat(activity.container.getChildCount()).isEqualTo(1);
+        assertThat(Navigator.isNavigatorAvailable(activity)).isTrue();
+        assertThat(Navigator.getBackstack(activity)).isSameAs(activity.retainedBackstackHost.getBackstack());
+        assertThat(Navigator.getBackstack(activity).getHistory()).containsExactly(new LayoutKey("first"));
+    }
+
+    @Test
+    public void backstackIsRetainedAcrossConfigurationChange() {
+        ActivityController<OwnerActivity> controller = Robolectric.buildActivity(OwnerActivity.class).setup();
+        Backstack backstack = Navigator.getBackstack(controller.get());
+        backstack.goTo(new LayoutKey("second"));
+
+        controller.recreate();
+        OwnerActivity activity = controller.get();
+
+        assertThat(activity.retainedBackstackHost.getBackstack()).isSameAs(backstack);
+        assertThat(Navigator.getBackstack(activity)).isSameAs(backstack);
+        assertThat(backstack.getHistory()).containsExactly(new LayoutKey("first"), new LayoutKey("second"));
+        assertThat(activity.container.getChildCount()).isEqualTo(1);
+        assertThat(Backstack.<LayoutKey>getKey(activity.container.getChildAt(0).getContext())).isEqualTo(new LayoutKey("second"));
+    }
+}
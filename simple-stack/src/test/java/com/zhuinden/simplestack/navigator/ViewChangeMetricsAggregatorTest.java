@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import com.zhuinden.simplestack.helpers.TestKey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ViewChangeMetricsAggregatorTest {
+    private static class OtherKey {
+    }
+
+    private static ViewChangeMetrics.Sample sample(Object newKey, long inflationTimeNanos, int droppedFrameCount) {
+        return new ViewChangeMetrics.Sample(null, newKey, inflationTimeNanos, 0L, 0L, 0L, 10, droppedFrameCount);
+    }
+
+    @Test
+    public void percentilesAreReportedPerKeyType() {
+        ViewChangeMetricsAggregator aggregator = new ViewChangeMetricsAggregator();
+        for(int i = 1; i <= 100; i++) {
+            aggregator.onViewChangeMeasured(sample(new TestKey("key" + i), i, i % 10));
+        }
+        aggregator.onViewChangeMeasured(sample(new OtherKey(), 1000L, 5));
+
+        assertThat(aggregator.getKeyTypes()).containsExactly(TestKey.class, OtherKey.class);
+        assertThat(aggregator.getSampleCount(TestKey.class)).isEqualTo(100);
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.INFLATION_TIME, 50)).isEqualTo(50L);
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.INFLATION_TIME, 99)).isEqualTo(99L);
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.DROPPED_FRAMES, 100)).isEqualTo(9L);
+        assertThat(aggregator.getPercentile(OtherKey.class, ViewChangeMetricsAggregator.Metric.INFLATION_TIME, 50)).isEqualTo(1000L);
+    }
+
+    @Test
+    public void onlyMostRecentSamplesAreKept() {
+        ViewChangeMetricsAggregator aggregator = new ViewChangeMetricsAggregator(2);
+        aggregator.onViewChangeMeasured(sample(new TestKey("first"), 100L, 0));
+        aggregator.onViewChangeMeasured(sample(new TestKey("second"), 2L, 0));
+        aggregator.onViewChangeMeasured(sample(new TestKey("third"), 3L, 0));
+
+        assertThat(aggregator.getSampleCount(TestKey.class)).isEqualTo(2);
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.INFLATION_TIME, 100)).isEqualTo(3L);
+    }
+
+    @Test
+    public void invalidPercentileThrows() {
+        ViewChangeMetricsAggregator aggregator = new ViewChangeMetricsAggregator();
+        try {
+            aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.INFLATION_TIME, 0);
+            Assert.fail();
+        } catch(IllegalArgumentException e) {
+            // OK!
+        }
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.INFLATION_TIME, 50)).isEqualTo(0L);
+    }
+
+    @Test
+    public void viewsThatWereNotDrawnAreIgnoredForTimeToFirstDraw() {
+        ViewChangeMetricsAggregator aggregator = new ViewChangeMetricsAggregator();
+        TestKey key = new TestKey("key");
+        aggregator.onViewChangeMeasured(new ViewChangeMetrics.Sample(null, key, 0L, 0L, -1L, 0L, 0, 0));
+
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.TIME_TO_FIRST_DRAW, 50)).isEqualTo(0L);
+
+        aggregator.onViewChangeMeasured(new ViewChangeMetrics.Sample(null, key, 0L, 0L, 200L, 0L, 0, 0));
+        aggregator.onViewChangeMeasured(new ViewChangeMetrics.Sample(null, key, 0L, 0L, -1L, 0L, 0, 0));
+
+        assertThat(aggregator.getPercentile(TestKey.class, ViewChangeMetricsAggregator.Metric.TIME_TO_FIRST_DRAW, 1)).isEqualTo(200L);
+    }
+}
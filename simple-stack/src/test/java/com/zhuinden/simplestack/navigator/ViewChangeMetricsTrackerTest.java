@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 Gabor Varadi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zhuinden.simplestack.navigator;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.zhuinden.simplestack.helpers.TestKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, manifest = Config.NONE)
+public class ViewChangeMetricsTrackerTest {
+    private static final long FRAME_INTERVAL_NANOS = 16666666L;
+
+    private final List<ViewChangeMetrics.Sample> samples = new ArrayList<>();
+
+    private final ViewChangeMetrics viewChangeMetrics = new ViewChangeMetrics() {
+        @Override
+        public void onViewChangeMeasured(@Nonnull Sample sample) {
+            samples.add(sample);
+        }
+    };
+
+    private Activity activity;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.setupActivity(Activity.class);
+        ShadowLooper.pauseMainLooper(); // the frames are counted with Choreographer callbacks
+    }
+
+    private ViewChangeMetricsTracker createTracker(Object newKey) {
+        return new ViewChangeMetricsTracker(viewChangeMetrics, null, newKey, FRAME_INTERVAL_NANOS);
+    }
+
+    private View addShownView() {
+        FrameLayout container = new FrameLayout(activity);
+        activity.setContentView(container);
+        View view = new View(activity);
+        container.addView(view);
+        return view;
+    }
+
+    @Test
+    public void sampleIsReportedAfterViewChangeAndFirstDraw() {
+        TestKey key = new TestKey("key");
+        ViewChangeMetricsTracker tracker = createTracker(key);
+        View newView = addShownView();
+
+        tracker.trackFirstDraw(newView);
+        tracker.onViewChangeStarted();
+        tracker.onViewChangeCompleted();
+
+        assertThat(samples).isEmpty();
+
+        newView.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertThat(samples).hasSize(1);
+        assertThat(samples.get(0).getNewKey()).isSameAs(key);
+        assertThat(samples.get(0).getTimeToFirstDrawNanos()).isGreaterThanOrEqualTo(0L);
+        assertThat(samples.get(0).getViewChangeDurationNanos()).isGreaterThanOrEqualTo(0L);
+
+        newView.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertThat(samples).hasSize(1);
+    }
+
+    @Test
+    public void sampleIsReportedWithoutDrawIfViewIsNotShown() {
+        ViewChangeMetricsTracker tracker = createTracker(new TestKey("key"));
+        View newView = new View(activity);
+
+        tracker.trackFirstDraw(newView);
+        tracker.onViewChangeStarted();
+        tracker.onViewChangeCompleted();
+
+        assertThat(samples).hasSize(1);
+        assertThat(samples.get(0).getTimeToFirstDrawNanos()).isEqualTo(-1L);
+    }
+
+    @Test
+    public void sampleIsReportedWithoutDrawWhenNextViewChangeStarts() {
+        ViewChangeMetricsTracker tracker = createTracker(new TestKey("key"));
+        View newView = addShownView();
+
+        tracker.trackFirstDraw(newView);
+        tracker.onNextViewChangeStarted(); // not completed yet
+        assertThat(samples).isEmpty();
+
+        tracker.onViewChangeStarted();
+        tracker.onViewChangeCompleted();
+        tracker.onNextViewChangeStarted();
+
+        assertThat(samples).hasSize(1);
+        assertThat(samples.get(0).getTimeToFirstDrawNanos()).isEqualTo(-1L);
+
+        newView.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertThat(samples).hasSize(1);
+    }
+
+    @Test
+    public void frameCounterCountsDroppedFrames() {
+        ViewChangeFrameCounter frameCounter = new ViewChangeFrameCounter(FRAME_INTERVAL_NANOS);
+
+        frameCounter.start();
+        frameCounter.doFrame(0L);
+        frameCounter.doFrame(FRAME_INTERVAL_NANOS);
+        frameCounter.doFrame(FRAME_INTERVAL_NANOS * 4);
+        frameCounter.stop();
+        frameCounter.doFrame(FRAME_INTERVAL_NANOS * 5);
+
+        assertThat(frameCounter.getFrameCount()).isEqualTo(3);
+        assertThat(frameCounter.getDroppedFrameCount()).isEqualTo(2);
+    }
+}